@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.api;
+
+import java.util.Arrays;
+
+/**
+ * Stand-in for the SDK class of the same name, with only what the benchmarked
+ * plugin code uses
+ */
+public class UgiEpc
+{
+  public static final int MAX_EPC_LENGTH = 27;
+
+  private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+  private final byte[] bytes;
+
+  public UgiEpc(byte[] bytes) {
+    this.bytes = bytes.clone();
+  }
+
+  public UgiEpc(String s) {
+    bytes = new byte[s.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) Integer.parseInt(s.substring(i*2, i*2 + 2), 16);
+    }
+  }
+
+  public byte[] toBytes() {
+    return bytes.clone();
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(bytes);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return (o instanceof UgiEpc) && Arrays.equals(bytes, ((UgiEpc) o).bytes);
+  }
+
+  @Override
+  public String toString() {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[i*2] = DIGITS[(bytes[i] >> 4) & 0xf];
+      chars[i*2 + 1] = DIGITS[bytes[i] & 0xf];
+    }
+    return new String(chars);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.api;
+
+import java.util.Date;
+
+/**
+ * Stand-in for the SDK class of the same name, with only what the benchmarked
+ * plugin code uses
+ */
+public class UgiInventory
+{
+  private volatile boolean paused;
+
+  public UgiInventory() {
+  }
+
+  public boolean isPaused() {
+    return paused;
+  }
+
+  public void pauseInventory() {
+    paused = true;
+  }
+
+  public void resumeInventory() {
+    paused = false;
+  }
+
+  public interface StopInventoryCompletion {
+    void exec();
+  }
+
+  public void stopInventory(StopInventoryCompletion completion) {
+    paused = false;
+  }
+
+  public static final int NO_PASSWORD = 0;
+
+  public enum TagAccessReturnValues {
+    OK,
+    WRONG_PASSWORD,
+    PASSWORD_REQUIRED,
+    MEMORY_OVERRUN,
+    TAG_NOT_FOUND,
+    GENERAL_ERROR
+  }
+
+  public interface TagAccessCompletion {
+    void exec(UgiTag tag, TagAccessReturnValues result);
+  }
+
+  public interface TagReadCompletion {
+    void exec(UgiTag tag, byte[] data, TagAccessReturnValues result);
+  }
+
+  // tag access does nothing here, override to simulate a reader
+
+  public void programTag(UgiEpc oldEpc, UgiEpc newEpc, int password, TagAccessCompletion completion) {
+  }
+
+  public void writeTag(UgiEpc epc, UgiRfidConfiguration.MemoryBank memoryBank, int offset, byte[] data, byte[] previousData,
+                       int password, TagAccessCompletion completion) {
+  }
+
+  public void lockUnlockTag(UgiEpc epc, int maskAndAction, int password, TagAccessCompletion completion) {
+  }
+
+  public void readTag(UgiEpc epc, UgiRfidConfiguration.MemoryBank memoryBank, int offset, int minNumBytes, int maxNumBytes,
+                      TagReadCompletion completion) {
+  }
+
+  public static class DetailedPerReadData {
+    private final long timestamp;
+    private final int frequency;
+    private final double rssiI;
+    private final double rssiQ;
+    private final int readData1;
+    private final int readData2;
+
+    public DetailedPerReadData(long timestamp, int frequency, double rssiI, double rssiQ, int readData1, int readData2) {
+      this.timestamp = timestamp;
+      this.frequency = frequency;
+      this.rssiI = rssiI;
+      this.rssiQ = rssiQ;
+      this.readData1 = readData1;
+      this.readData2 = readData2;
+    }
+
+    public Date getTimestamp() {
+      return new Date(timestamp);
+    }
+
+    public int getFrequency() {
+      return frequency;
+    }
+
+    public double getRssiI() {
+      return rssiI;
+    }
+
+    public double getRssiQ() {
+      return rssiQ;
+    }
+
+    public int getReadData1() {
+      return readData1;
+    }
+
+    public int getReadData2() {
+      return readData2;
+    }
+  }
+}
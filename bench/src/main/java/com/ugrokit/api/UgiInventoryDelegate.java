@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.api;
+
+/**
+ * Stand-in for the SDK interface of the same name
+ */
+public interface UgiInventoryDelegate
+{
+  interface InventoryDidStartListener {
+    void inventoryDidStart();
+  }
+
+  interface InventoryDidStopListener {
+    int UGI_INVENTORY_COMPLETED_OK = 0;
+    int UGI_INVENTORY_COMPLETED_ERROR_SENDING = 98;
+    int UGI_INVENTORY_COMPLETED_LOST_CONNECTION = 99;
+    int UGI_INVENTORY_COMPLETED_BATTERY_TOO_LOW = 7;
+    int UGI_INVENTORY_COMPLETED_TEMPERATURE_TOO_HIGH = 8;
+
+    void inventoryDidStop(int completedResult);
+  }
+
+  interface InventoryTagChangedListener {
+    void inventoryTagChanged(UgiTag tag, boolean firstFind);
+  }
+
+  interface InventoryTagFoundListener {
+    void inventoryTagFound(UgiTag tag, UgiInventory.DetailedPerReadData[] details);
+  }
+
+  interface InventoryTagSubsequentFindsListener {
+    void inventoryTagSubsequentFinds(UgiTag tag, int count, UgiInventory.DetailedPerReadData[] details);
+  }
+
+  interface InventoryHistoryIntervalListener {
+    void inventoryHistoryInterval();
+  }
+}
@@ -0,0 +1,447 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.api;
+
+/**
+ * Stand-in for the SDK class of the same name, with only what the benchmarked
+ * plugin code uses. The presets have plausible values, not the SDK's.
+ */
+public class UgiRfidConfiguration
+{
+  public enum SoundTypes {
+    NONE, GEIGER_COUNTER, FIRST_FIND, FIRST_FIND_AND_LAST;
+
+    public int getInternalCode() {
+      return ordinal();
+    }
+  }
+
+  public enum MemoryBank {
+    Reserved, Epc, Tid, User;
+
+    public int getInternalCode() {
+      return ordinal();
+    }
+  }
+
+  private static final String[] NAMES = { "Locate distance", "Inventory short range", "Inventory distance",
+                                          "Locate short range", "Locate very short range" };
+
+  public static final UgiRfidConfiguration LOCATE_DISTANCE = preset(30, 8, SoundTypes.GEIGER_COUNTER);
+  public static final UgiRfidConfiguration INVENTORY_SHORT_RANGE = preset(20, 5, SoundTypes.FIRST_FIND);
+  public static final UgiRfidConfiguration INVENTORY_DISTANCE = preset(30, 5, SoundTypes.FIRST_FIND);
+  public static final UgiRfidConfiguration LOCATE_SHORT_RANGE = preset(20, 8, SoundTypes.GEIGER_COUNTER);
+  public static final UgiRfidConfiguration LOCATE_VERY_SHORT_RANGE = preset(10, 8, SoundTypes.GEIGER_COUNTER);
+
+  private static UgiRfidConfiguration preset(double powerLevel, int initialQValue, SoundTypes soundType) {
+    return new Builder().withInitialPowerLevel(powerLevel).withMinPowerLevel(powerLevel - 10).withMaxPowerLevel(powerLevel)
+                        .withInitialQValue(initialQValue).withMinQValue(3).withMaxQValue(10).withSession(2)
+                        .withRoundsWithNoFindsToToggleAB(4).withSensitivity(-80).withPowerLevelWrite(30).withSensitivityWrite(-70)
+                        .withContinual(true).withReportRssi(true).withSoundType(soundType).withVolume(0.5)
+                        .withHistoryIntervalMSec(500).withHistoryDepth(20).build();
+  }
+
+  public static String getNameForInventoryType(int inventoryType) {
+    return NAMES[inventoryType - 1];
+  }
+
+  private final Builder b;
+
+  private UgiRfidConfiguration(Builder b) {
+    this.b = b;
+  }
+
+  public double getInitialPowerLevel() {
+    return b.initialPowerLevel;
+  }
+
+  public double getMinPowerLevel() {
+    return b.minPowerLevel;
+  }
+
+  public double getMaxPowerLevel() {
+    return b.maxPowerLevel;
+  }
+
+  public int getInitialQValue() {
+    return b.initialQValue;
+  }
+
+  public int getMinQValue() {
+    return b.minQValue;
+  }
+
+  public int getMaxQValue() {
+    return b.maxQValue;
+  }
+
+  public int getSession() {
+    return b.session;
+  }
+
+  public int getRoundsWithNoFindsToToggleAB() {
+    return b.roundsWithNoFindsToToggleAB;
+  }
+
+  public int getSensitivity() {
+    return b.sensitivity;
+  }
+
+  public double getPowerLevelWrite() {
+    return b.powerLevelWrite;
+  }
+
+  public int getSensitivityWrite() {
+    return b.sensitivityWrite;
+  }
+
+  public boolean getSetListenBeforeTalk() {
+    return b.setListenBeforeTalk;
+  }
+
+  public boolean getListenBeforeTalk() {
+    return b.listenBeforeTalk;
+  }
+
+  public int getMaxRoundsPerSecond() {
+    return b.maxRoundsPerSecond;
+  }
+
+  public int getMinTidBytes() {
+    return b.minTidBytes;
+  }
+
+  public int getMaxTidBytes() {
+    return b.maxTidBytes;
+  }
+
+  public int getMinUserBytes() {
+    return b.minUserBytes;
+  }
+
+  public int getMaxUserBytes() {
+    return b.maxUserBytes;
+  }
+
+  public int getMinReservedBytes() {
+    return b.minReservedBytes;
+  }
+
+  public int getMaxReservedBytes() {
+    return b.maxReservedBytes;
+  }
+
+  public boolean wantsContinual() {
+    return b.continual;
+  }
+
+  public boolean wantsReportRssi() {
+    return b.reportRssi;
+  }
+
+  public boolean wantsDetailedPerReadData() {
+    return b.detailedPerReadData;
+  }
+
+  public boolean wantsReportSubsequentFinds() {
+    return b.reportSubsequentFinds;
+  }
+
+  public SoundTypes getSoundType() {
+    return b.soundType;
+  }
+
+  public double getVolume() {
+    return b.volume;
+  }
+
+  public int getHistoryIntervalMSec() {
+    return b.historyIntervalMSec;
+  }
+
+  public int getHistoryDepth() {
+    return b.historyDepth;
+  }
+
+  public byte[] getSelectMask() {
+    return b.selectMask;
+  }
+
+  public int getSelectMaskBitLength() {
+    return b.selectMaskBitLength;
+  }
+
+  public int getSelectOffset() {
+    return b.selectOffset;
+  }
+
+  public MemoryBank getSelectBank() {
+    return b.selectBank;
+  }
+
+  public int getDetailedPerReadNumReads() {
+    return b.detailedPerReadNumReads;
+  }
+
+  public MemoryBank getDetailedPerReadMemoryBank1() {
+    return b.detailedPerReadMemoryBank1;
+  }
+
+  public int getDetailedPerReadWordOffset1() {
+    return b.detailedPerReadWordOffset1;
+  }
+
+  public MemoryBank getDetailedPerReadMemoryBank2() {
+    return b.detailedPerReadMemoryBank2;
+  }
+
+  public int getDetailedPerReadWordOffset2() {
+    return b.detailedPerReadWordOffset2;
+  }
+
+  public static class Builder {
+    private double initialPowerLevel;
+    private double minPowerLevel;
+    private double maxPowerLevel;
+    private int initialQValue;
+    private int minQValue;
+    private int maxQValue;
+    private int session;
+    private int roundsWithNoFindsToToggleAB;
+    private int sensitivity;
+    private double powerLevelWrite;
+    private int sensitivityWrite;
+    private boolean setListenBeforeTalk;
+    private boolean listenBeforeTalk;
+    private int maxRoundsPerSecond;
+    private int minTidBytes;
+    private int maxTidBytes;
+    private int minUserBytes;
+    private int maxUserBytes;
+    private int minReservedBytes;
+    private int maxReservedBytes;
+    private boolean continual;
+    private boolean reportRssi;
+    private boolean detailedPerReadData;
+    private boolean reportSubsequentFinds;
+    private SoundTypes soundType = SoundTypes.NONE;
+    private double volume;
+    private int historyIntervalMSec;
+    private int historyDepth;
+    private byte[] selectMask;
+    private int selectMaskBitLength;
+    private int selectOffset;
+    private MemoryBank selectBank = MemoryBank.Epc;
+    private int detailedPerReadNumReads;
+    private MemoryBank detailedPerReadMemoryBank1 = MemoryBank.Epc;
+    private int detailedPerReadWordOffset1;
+    private MemoryBank detailedPerReadMemoryBank2 = MemoryBank.Epc;
+    private int detailedPerReadWordOffset2;
+
+    public Builder() {
+    }
+
+    public UgiRfidConfiguration build() {
+      return new UgiRfidConfiguration(this);
+    }
+
+    public Builder withInitialPowerLevel(double initialPowerLevel) {
+      this.initialPowerLevel = initialPowerLevel;
+      return this;
+    }
+
+    public Builder withMinPowerLevel(double minPowerLevel) {
+      this.minPowerLevel = minPowerLevel;
+      return this;
+    }
+
+    public Builder withMaxPowerLevel(double maxPowerLevel) {
+      this.maxPowerLevel = maxPowerLevel;
+      return this;
+    }
+
+    public Builder withInitialQValue(int initialQValue) {
+      this.initialQValue = initialQValue;
+      return this;
+    }
+
+    public Builder withMinQValue(int minQValue) {
+      this.minQValue = minQValue;
+      return this;
+    }
+
+    public Builder withMaxQValue(int maxQValue) {
+      this.maxQValue = maxQValue;
+      return this;
+    }
+
+    public Builder withSession(int session) {
+      this.session = session;
+      return this;
+    }
+
+    public Builder withRoundsWithNoFindsToToggleAB(int roundsWithNoFindsToToggleAB) {
+      this.roundsWithNoFindsToToggleAB = roundsWithNoFindsToToggleAB;
+      return this;
+    }
+
+    public Builder withSensitivity(int sensitivity) {
+      this.sensitivity = sensitivity;
+      return this;
+    }
+
+    public Builder withPowerLevelWrite(double powerLevelWrite) {
+      this.powerLevelWrite = powerLevelWrite;
+      return this;
+    }
+
+    public Builder withSensitivityWrite(int sensitivityWrite) {
+      this.sensitivityWrite = sensitivityWrite;
+      return this;
+    }
+
+    public Builder withSetListenBeforeTalk(boolean setListenBeforeTalk) {
+      this.setListenBeforeTalk = setListenBeforeTalk;
+      return this;
+    }
+
+    public Builder withListenBeforeTalk(boolean listenBeforeTalk) {
+      this.listenBeforeTalk = listenBeforeTalk;
+      return this;
+    }
+
+    public Builder withMaxRoundsPerSecond(int maxRoundsPerSecond) {
+      this.maxRoundsPerSecond = maxRoundsPerSecond;
+      return this;
+    }
+
+    public Builder withMinTidBytes(int minTidBytes) {
+      this.minTidBytes = minTidBytes;
+      return this;
+    }
+
+    public Builder withMaxTidBytes(int maxTidBytes) {
+      this.maxTidBytes = maxTidBytes;
+      return this;
+    }
+
+    public Builder withMinUserBytes(int minUserBytes) {
+      this.minUserBytes = minUserBytes;
+      return this;
+    }
+
+    public Builder withMaxUserBytes(int maxUserBytes) {
+      this.maxUserBytes = maxUserBytes;
+      return this;
+    }
+
+    public Builder withMinReservedBytes(int minReservedBytes) {
+      this.minReservedBytes = minReservedBytes;
+      return this;
+    }
+
+    public Builder withMaxReservedBytes(int maxReservedBytes) {
+      this.maxReservedBytes = maxReservedBytes;
+      return this;
+    }
+
+    public Builder withContinual(boolean continual) {
+      this.continual = continual;
+      return this;
+    }
+
+    public Builder withReportRssi(boolean reportRssi) {
+      this.reportRssi = reportRssi;
+      return this;
+    }
+
+    public Builder withDetailedPerReadData(boolean detailedPerReadData) {
+      this.detailedPerReadData = detailedPerReadData;
+      return this;
+    }
+
+    public Builder withReportSubsequentFinds(boolean reportSubsequentFinds) {
+      this.reportSubsequentFinds = reportSubsequentFinds;
+      return this;
+    }
+
+    public Builder withSoundType(SoundTypes soundType) {
+      this.soundType = soundType;
+      return this;
+    }
+
+    public Builder withVolume(double volume) {
+      this.volume = volume;
+      return this;
+    }
+
+    public Builder withHistoryIntervalMSec(int historyIntervalMSec) {
+      this.historyIntervalMSec = historyIntervalMSec;
+      return this;
+    }
+
+    public Builder withHistoryDepth(int historyDepth) {
+      this.historyDepth = historyDepth;
+      return this;
+    }
+
+    public Builder withSelectMask(byte[] selectMask) {
+      this.selectMask = selectMask;
+      return this;
+    }
+
+    public Builder withSelectMaskBitLength(int selectMaskBitLength) {
+      this.selectMaskBitLength = selectMaskBitLength;
+      return this;
+    }
+
+    public Builder withSelectOffset(int selectOffset) {
+      this.selectOffset = selectOffset;
+      return this;
+    }
+
+    public Builder withSelectBank(MemoryBank selectBank) {
+      this.selectBank = selectBank;
+      return this;
+    }
+
+    public Builder withDetailedPerReadNumReads(int detailedPerReadNumReads) {
+      this.detailedPerReadNumReads = detailedPerReadNumReads;
+      return this;
+    }
+
+    public Builder withDetailedPerReadMemoryBank1(MemoryBank detailedPerReadMemoryBank1) {
+      this.detailedPerReadMemoryBank1 = detailedPerReadMemoryBank1;
+      return this;
+    }
+
+    public Builder withDetailedPerReadWordOffset1(int detailedPerReadWordOffset1) {
+      this.detailedPerReadWordOffset1 = detailedPerReadWordOffset1;
+      return this;
+    }
+
+    public Builder withDetailedPerReadMemoryBank2(MemoryBank detailedPerReadMemoryBank2) {
+      this.detailedPerReadMemoryBank2 = detailedPerReadMemoryBank2;
+      return this;
+    }
+
+    public Builder withDetailedPerReadWordOffset2(int detailedPerReadWordOffset2) {
+      this.detailedPerReadWordOffset2 = detailedPerReadWordOffset2;
+      return this;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.api;
+
+import java.util.Date;
+
+/**
+ * Stand-in for the SDK class of the same name, with only what the benchmarked
+ * plugin code uses
+ */
+public class UgiTag
+{
+  private final UgiEpc epc;
+  private final long firstRead;
+  private final byte[] tidBytes;
+  private final byte[] userBytes;
+  private final byte[] reservedBytes;
+  private UgiTagReadState tagReadState;
+
+  public UgiTag(UgiEpc epc, long firstRead, byte[] tidBytes, byte[] userBytes, byte[] reservedBytes) {
+    this.epc = epc;
+    this.firstRead = firstRead;
+    this.tidBytes = tidBytes;
+    this.userBytes = userBytes;
+    this.reservedBytes = reservedBytes;
+  }
+
+  public UgiEpc getEpc() {
+    return epc;
+  }
+
+  public Date getFirstRead() {
+    return new Date(firstRead);
+  }
+
+  public byte[] getTidBytes() {
+    return tidBytes;
+  }
+
+  public byte[] getUserBytes() {
+    return userBytes;
+  }
+
+  public byte[] getReservedBytes() {
+    return reservedBytes;
+  }
+
+  public UgiTagReadState getTagReadState() {
+    return tagReadState;
+  }
+
+  public void setTagReadState(UgiTagReadState tagReadState) {
+    this.tagReadState = tagReadState;
+  }
+}
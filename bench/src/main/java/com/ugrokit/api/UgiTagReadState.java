@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.api;
+
+import java.util.Date;
+
+/**
+ * Stand-in for the SDK class of the same name, with only what the benchmarked
+ * plugin code uses
+ */
+public class UgiTagReadState
+{
+  private final boolean isVisible;
+  private final int totalReads;
+  private final long mostRecentRead;
+  private final double mostRecentRssiI;
+  private final double mostRecentRssiQ;
+  private final int[] readHistory;
+
+  public UgiTagReadState(boolean isVisible, int totalReads, long mostRecentRead,
+                         double mostRecentRssiI, double mostRecentRssiQ, int[] readHistory) {
+    this.isVisible = isVisible;
+    this.totalReads = totalReads;
+    this.mostRecentRead = mostRecentRead;
+    this.mostRecentRssiI = mostRecentRssiI;
+    this.mostRecentRssiQ = mostRecentRssiQ;
+    this.readHistory = readHistory;
+  }
+
+  public boolean isVisible() {
+    return isVisible;
+  }
+
+  public int getTotalReads() {
+    return totalReads;
+  }
+
+  public Date getMostRecentRead() {
+    return new Date(mostRecentRead);
+  }
+
+  public double getMostRecentRssiI() {
+    return mostRecentRssiI;
+  }
+
+  public double getMostRecentRssiQ() {
+    return mostRecentRssiQ;
+  }
+
+  public int[] getReadHistory() {
+    return readHistory;
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ugrokit.api.*;
+
+/**
+ * Cost of what crosses the Cordova bridge: tag events (TagJson, with and without
+ * TagTable deltas), binary tag events (TagEventEncoder, with and without compact
+ * per-read columns), detailed per-read data, the 37 value startInventory config and
+ * getRfidConfigs. JSON results include toString(), since that is what Cordova sends.
+ *
+ * Tag benchmarks report per tag, over a population of numTags tags with a 12 byte EPC
+ * and TID, userBytes of USER memory, a 20 entry read history and readsPerEvent
+ * detailed per-read entries. For allocation rate add "-prof gc":
+ *
+ *   java -jar bench/target/benchmarks.jar BridgeSerialization -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BridgeSerializationBenchmark
+{
+  private static final int TAGS = 1000;
+
+  @Param({"0", "64"})
+  int userBytes;
+
+  @Param({"0", "16"})
+  int readsPerEvent;
+
+  private UgiTag[] tags;
+  // two read states per tag, alternated so deltas always have something to send
+  private UgiTagReadState[][] readStates;
+  private UgiInventory.DetailedPerReadData[][] details;
+  private TagTable tagTable;
+  private int round;
+
+  private String configArgs;
+  private UgiRfidConfiguration config;
+
+  @Setup
+  public void setup() throws JSONException {
+    Random random = new Random(42);
+    long now = System.currentTimeMillis();
+    tags = new UgiTag[TAGS];
+    readStates = new UgiTagReadState[2][TAGS];
+    details = new UgiInventory.DetailedPerReadData[TAGS][];
+    for (int i = 0; i < TAGS; i++) {
+      byte[] epc = new byte[12];
+      random.nextBytes(epc);
+      byte[] tid = new byte[12];
+      random.nextBytes(tid);
+      byte[] user = null;
+      if (userBytes > 0) {
+        user = new byte[userBytes];
+        random.nextBytes(user);
+      }
+      tags[i] = new UgiTag(new UgiEpc(epc), now, tid, user, null);
+      for (int k = 0; k < 2; k++) {
+        int[] history = new int[20];
+        for (int h = 0; h < history.length; h++) history[h] = random.nextInt(4);
+        readStates[k][i] = new UgiTagReadState(true, 10 + k, now + k*100, -60 + random.nextDouble()*20, -60 + random.nextDouble()*20, history);
+      }
+      tags[i].setTagReadState(readStates[0][i]);
+      details[i] = new UgiInventory.DetailedPerReadData[readsPerEvent];
+      for (int r = 0; r < readsPerEvent; r++) {
+        details[i][r] = new UgiInventory.DetailedPerReadData(now + r*5, 902750 + random.nextInt(50)*500,
+                                                             random.nextDouble()*100, random.nextDouble()*100, 0, 0);
+      }
+    }
+    tagTable = new TagTable();
+    for (int i = 0; i < TAGS; i++) tagTable.update(tags[i], readStates[0][i]);
+
+    JSONArray values = new JSONArray();
+    RfidConfigCodec.toValues(UgiRfidConfiguration.INVENTORY_DISTANCE, values);
+    configArgs = values.toString();
+    config = UgiRfidConfiguration.INVENTORY_DISTANCE;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(TAGS)
+  public void tagToJson(Blackhole bh) throws JSONException {
+    for (int i = 0; i < TAGS; i++) {
+      JSONObject d = new JSONObject();
+      d.put("_cb", "tagSubsequentFinds");
+      d.put("count", 1);
+      TagJson.tagToJson(d, tags[i], readStates[round & 1][i]);
+      TagJson.detailsToJson(d, readsPerEvent > 0 ? details[i] : null);
+      bh.consume(d.toString());
+    }
+    round++;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(TAGS)
+  public void tagToJsonDelta(Blackhole bh) throws JSONException {
+    int k = ++round & 1;
+    for (int i = 0; i < TAGS; i++) {
+      JSONObject d = new JSONObject();
+      d.put("_cb", "tagSubsequentFinds");
+      d.put("count", 1);
+      int fields = tagTable.update(tags[i], readStates[k][i]);
+      TagJson.tagToJson(d, tags[i], readStates[k][i], fields);
+      TagJson.detailsToJson(d, readsPerEvent > 0 ? details[i] : null);
+      bh.consume(d.toString());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(TAGS)
+  public void detailsToJson(Blackhole bh) throws JSONException {
+    for (int i = 0; i < TAGS; i++) {
+      JSONObject d = new JSONObject();
+      TagJson.detailsToJson(d, details[i]);
+      bh.consume(d.toString());
+    }
+  }
+
+  /**
+   * Binary tag events (startInventory option binary), with per-read data as full columns
+   */
+  @Benchmark
+  @OperationsPerInvocation(TAGS)
+  public void tagToBinary(Blackhole bh) {
+    tagToBinary(bh, false);
+  }
+
+  /**
+   * Binary tag events with per-read data as compact columns (startInventory option compactPerRead)
+   */
+  @Benchmark
+  @OperationsPerInvocation(TAGS)
+  public void tagToBinaryCompact(Blackhole bh) {
+    tagToBinary(bh, true);
+  }
+
+  private void tagToBinary(Blackhole bh, boolean compactPerRead) {
+    for (int i = 0; i < TAGS; i++) {
+      InventoryEventQueue.Event event = new InventoryEventQueue.Event(InventoryEventQueue.TAG_SUBSEQUENT_FINDS, tags[i], false, 1,
+                                                                      readsPerEvent > 0 ? details[i] : null);
+      event.compactPerRead = compactPerRead;
+      bh.consume(TagEventEncoder.encode(event));
+    }
+  }
+
+  /**
+   * startInventory config: parse the arguments Cordova received and build the configuration
+   */
+  @Benchmark
+  public UgiRfidConfiguration configFromValues() throws JSONException {
+    return RfidConfigCodec.fromValues(new JSONArray(configArgs));
+  }
+
+  @Benchmark
+  public String configToValues() throws JSONException {
+    JSONArray a = new JSONArray();
+    RfidConfigCodec.toValues(config, a);
+    return a.toString();
+  }
+
+  @Benchmark
+  public String getRfidConfigs() throws JSONException {
+    return RfidConfigCodec.standardConfigs().toString();
+  }
+}
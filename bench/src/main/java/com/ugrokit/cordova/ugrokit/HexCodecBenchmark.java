@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * HexCodec against the StringBuffer/CharToNibble code it replaced, for byte
+ * counts of reserved memory (8), 96 bit EPCs and TIDs (12), larger EPCs (32)
+ * and a user memory bank (64).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HexCodecBenchmark
+{
+  @Param({"8", "12", "32", "64"})
+  int numBytes;
+
+  // a batch of tags, so the bulk encode has something to do
+  private static final int BATCH = 64;
+
+  private byte[][] bytes;
+  private String[] strings;
+  private String[] out;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(42);
+    bytes = new byte[BATCH][numBytes];
+    strings = new String[BATCH];
+    out = new String[BATCH];
+    for (int i = 0; i < BATCH; i++) {
+      random.nextBytes(bytes[i]);
+      strings[i] = Legacy.byteArrayToString(bytes[i]);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void encodeLegacy(Blackhole bh) {
+    for (byte[] ba : bytes) bh.consume(Legacy.byteArrayToString(ba));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void encode(Blackhole bh) {
+    for (byte[] ba : bytes) bh.consume(HexCodec.encode(ba));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void encodeBulk(Blackhole bh) {
+    HexCodec.encode(bytes, out);
+    bh.consume(out);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void decodeLegacy(Blackhole bh) {
+    for (String s : strings) bh.consume(Legacy.stringToByteArray(s));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void decode(Blackhole bh) {
+    for (String s : strings) bh.consume(HexCodec.decode(s));
+  }
+
+  /**
+   * The previous UGrokIt.byteArrayToString / stringToByteArray, as the baseline
+   */
+  static class Legacy {
+    static String byteArrayToString(byte[] ba) {
+      if (ba == null) return null;
+      StringBuffer sb = new StringBuffer(ba.length*2);
+      for (int i = 0; i < ba.length; i++) {
+        byte b = ba[i];
+        sb.append(NibbleToChar((b >> 4) & 0xf));
+        sb.append(NibbleToChar(b & 0xf));
+      }
+      return sb.toString();
+    }
+
+    private static char NibbleToChar(int nibble) {
+      return (char) (nibble + (nibble < 10 ? '0' : 'a'-10));
+    }
+
+    static byte[] stringToByteArray(String s) {
+      byte[] ba = new byte[s.length()/2];
+      for (int i = 0; i < ba.length; i++) {
+        int highNibble = CharToNibble(s.charAt(i*2));
+        if (highNibble == -1) return null;
+        int lowNibble = CharToNibble(s.charAt((i*2)+1));
+        if (lowNibble == -1) return null;
+        ba[i] = (byte) ((highNibble << 4) | lowNibble);
+      }
+      return ba;
+    }
+
+    private static int CharToNibble(char c) {
+      if ((c >= '0') && (c <= '9')) return c - '0';
+      if ((c >= 'a') && (c <= 'z')) return c - 'a' + 10;
+      if ((c >= 'A') && (c <= 'Z')) return c - 'A' + 10;
+      return -1;
+    }
+  }
+}
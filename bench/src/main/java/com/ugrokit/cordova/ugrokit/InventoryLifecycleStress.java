@@ -0,0 +1,322 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.ugrokit.api.*;
+
+/**
+ * Stress test of the InventoryInfo lifecycle and the inventory registry: many inventories,
+ * each started and then hit at once from several threads with tag callbacks, pause, resume
+ * and stop, plus a stray final inventoryDidStop. Every inventory must send exactly one
+ * final didStop and nothing after it, call every stop completion, and leave the registry.
+ *
+ *   java -cp bench/target/benchmarks.jar com.ugrokit.cordova.ugrokit.InventoryLifecycleStress \
+ *        inventories=2000 threads=8 'options={"maxInFlight":4,"stats":true}'
+ *
+ * Arguments are name=value, see Config for the names and defaults. Exits with status 1
+ * if any inventory failed.
+ */
+public class InventoryLifecycleStress
+{
+  /**
+   * What to run
+   */
+  public static class Config {
+    /** Inventories run one after the other */
+    public int inventories = 1000;
+    /** Threads hitting each inventory at once */
+    public int threads = 8;
+    /** Operations per thread per inventory */
+    public int operations = 200;
+    /** Inventories kept in the registry alongside the one under test */
+    public int others = 16;
+    /** startInventory options, as JSON */
+    public String options = "{}";
+    public long seed = 1;
+
+    void set(String name, String value) {
+      if (name.equals("inventories")) inventories = Integer.parseInt(value);
+      else if (name.equals("threads")) threads = Integer.parseInt(value);
+      else if (name.equals("operations")) operations = Integer.parseInt(value);
+      else if (name.equals("others")) others = Integer.parseInt(value);
+      else if (name.equals("options")) options = value;
+      else if (name.equals("seed")) seed = Long.parseLong(value);
+      else throw new IllegalArgumentException("unknown setting: " + name);
+    }
+  }
+
+  /**
+   * Stands in for the SDK: like the real one it makes its own delegate calls one at a
+   * time (here under the inventory's lock), and reports pause as a didStop while paused
+   * and resume as a didStart
+   */
+  static class SimulatedInventory extends UgiInventory {
+    private final UgiInventoryDelegate delegate;
+    private boolean stopped;
+
+    SimulatedInventory(UgiInventoryDelegate delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized void pauseInventory() {
+      if (stopped) return;
+      super.pauseInventory();
+      ((UgiInventoryDelegate.InventoryDidStopListener) delegate).inventoryDidStop(
+              UgiInventoryDelegate.InventoryDidStopListener.UGI_INVENTORY_COMPLETED_OK);
+    }
+
+    @Override
+    public synchronized void resumeInventory() {
+      if (stopped) return;
+      super.resumeInventory();
+      ((UgiInventoryDelegate.InventoryDidStartListener) delegate).inventoryDidStart();
+    }
+
+    @Override
+    public synchronized void stopInventory(StopInventoryCompletion completion) {
+      if (!stopped) {
+        stopped = true;
+        super.stopInventory(completion);
+        ((UgiInventoryDelegate.InventoryDidStopListener) delegate).inventoryDidStop(
+                UgiInventoryDelegate.InventoryDidStopListener.UGI_INVENTORY_COMPLETED_OK);
+      }
+      if (completion != null) completion.exec();
+    }
+  }
+
+  /**
+   * Behaves like Cordova's: results after the final one are dropped (and counted here)
+   */
+  static class CountingCallbackContext extends CallbackContext {
+    final AtomicInteger finalDidStops = new AtomicInteger();
+    final AtomicLong messages = new AtomicLong();
+    final AtomicLong afterFinal = new AtomicLong();
+    private boolean finished;
+
+    @Override
+    public synchronized void sendPluginResult(PluginResult pluginResult) {
+      Object value = pluginResult.getValue();
+      if (!pluginResult.getKeepCallback() && (value instanceof JSONObject)
+          && ((JSONObject) value).optString("_cb").equals("didStop")) {
+        finalDidStops.incrementAndGet();
+      }
+      if (finished) {
+        afterFinal.incrementAndGet();
+        return;
+      }
+      messages.incrementAndGet();
+      if (!pluginResult.getKeepCallback()) finished = true;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Config config = new Config();
+    for (String arg : args) {
+      int eq = arg.indexOf('=');
+      if (eq < 0) throw new IllegalArgumentException("expected name=value: " + arg);
+      config.set(arg.substring(0, eq), arg.substring(eq + 1));
+    }
+    JSONObject d = run(config);
+    System.out.println(d.toString(2));
+    if (d.getInt("failed") > 0) System.exit(1);
+  }
+
+  /**
+   * Run all the inventories and report on them
+   */
+  static JSONObject run(final Config config) throws JSONException, InterruptedException {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "UGrokIt-scheduler");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    final JSONObject options = new JSONObject(config.options);
+    final ConcurrentHashMap<String, InventoryInfo> inventoryInfos = new ConcurrentHashMap<String, InventoryInfo>();
+    final AtomicLong exceptions = new AtomicLong();
+    final AtomicLong tagCallbacks = new AtomicLong();
+    final AtomicLong pauses = new AtomicLong();
+    final AtomicLong resumes = new AtomicLong();
+    final AtomicLong stopsAccepted = new AtomicLong();
+    final AtomicLong stopCompletions = new AtomicLong();
+    long messages = 0;
+    long afterFinal = 0;
+    int failed = 0;
+    int lostDidStops = 0;
+    int duplicateDidStops = 0;
+    int leftInRegistry = 0;
+    JSONObject firstFailure = null;
+    long start = System.nanoTime();
+    try {
+      for (int n = 0; n < config.inventories; n++) {
+        final CountingCallbackContext callbackContext = new CountingCallbackContext();
+        final InventoryInfo inventoryInfo = new InventoryInfo(inventoryInfos);
+        final String id = Integer.toString(n);
+        inventoryInfo.idForMap = id;
+        inventoryInfo.inventoryCallbackContext = callbackContext;
+        inventoryInfo.handlesUgiInventoryTagChanged = true;
+        inventoryInfo.handlesUgiInventoryTagFound = true;
+        inventoryInfo.handlesUgiInventoryTagSubsequentFinds = true;
+        inventoryInfo.handlesUgiInventoryHistoryInterval = true;
+        inventoryInfo.binary = options.optBoolean("binary");
+        inventoryInfo.tagTable = TagTable.fromOptions(options);
+        inventoryInfo.tagStats = TagStats.fromOptions(options);
+        inventoryInfo.eventQueue = InventoryEventQueue.fromOptions(options, callbackContext, scheduler, inventoryInfo.tagTable);
+        if ((inventoryInfo.tagStats != null) && (options.optInt("statsIntervalMSec", 0) > 0)) {
+          inventoryInfo.scheduleStats(scheduler, options.getInt("statsIntervalMSec"));
+        }
+        inventoryInfos.put(id, inventoryInfo);
+        inventoryInfo.inventory = new SimulatedInventory(inventoryInfo);
+        inventoryInfo.inventoryDidStart();
+
+        final CyclicBarrier barrier = new CyclicBarrier(config.threads);
+        final CountDownLatch done = new CountDownLatch(config.threads);
+        final int stopper = n % config.threads;
+        for (int t = 0; t < config.threads; t++) {
+          final int threadIndex = t;
+          final Random random = new Random(config.seed + n * 1000003L + t);
+          Thread thread = new Thread(new Runnable() {
+            public void run() {
+              try {
+                barrier.await();
+                UgiTag[] tags = new UgiTag[4];
+                for (int i = 0; i < tags.length; i++) {
+                  tags[i] = new UgiTag(new UgiEpc(new byte[] { (byte) threadIndex, (byte) i, 1, 2 }), System.currentTimeMillis(),
+                                       null, null, null);
+                }
+                int stopAt = threadIndex == stopper ? random.nextInt(config.operations) : -1;
+                for (int i = 0; i < config.operations; i++) {
+                  if (i == stopAt) {
+                    boolean accepted = inventoryInfo.stop(new UgiInventory.StopInventoryCompletion() {
+                      public void exec() {
+                        stopCompletions.incrementAndGet();
+                      }
+                    });
+                    if (accepted) stopsAccepted.incrementAndGet();
+                    continue;
+                  }
+                  int op = random.nextInt(100);
+                  if (op < 80) {
+                    UgiTag tag = tags[random.nextInt(tags.length)];
+                    tag.setTagReadState(new UgiTagReadState(true, i + 1, System.currentTimeMillis(),
+                                                            random.nextGaussian(), random.nextGaussian(), null));
+                    if (i == 0) {
+                      inventoryInfo.inventoryTagFound(tag, null);
+                      inventoryInfo.inventoryTagChanged(tag, true);
+                    } else {
+                      inventoryInfo.inventoryTagSubsequentFinds(tag, 1, null);
+                    }
+                    tagCallbacks.incrementAndGet();
+                  } else if (op < 88) {
+                    if (inventoryInfo.pause()) pauses.incrementAndGet();
+                  } else if (op < 96) {
+                    if (inventoryInfo.resume()) resumes.incrementAndGet();
+                  } else if (op < 99) {
+                    inventoryInfo.inventoryHistoryInterval();
+                  } else {
+                    // a stray final didStop, as when the connection drops while stopping
+                    inventoryInfo.inventoryDidStop(UgiInventoryDelegate.InventoryDidStopListener.UGI_INVENTORY_COMPLETED_OK);
+                  }
+                }
+              } catch (Throwable ex) {
+                exceptions.incrementAndGet();
+                ex.printStackTrace();
+              } finally {
+                done.countDown();
+              }
+            }
+          }, "stress-" + t);
+          thread.start();
+        }
+        done.await();
+        // every inventory is stopped in the end, as the app would
+        if (inventoryInfo.stop(null)) stopsAccepted.incrementAndGet();
+
+        if (callbackContext.finalDidStops.get() == 0) lostDidStops++;
+        if (callbackContext.finalDidStops.get() > 1) duplicateDidStops++;
+        boolean registered = inventoryInfos.get(id) == inventoryInfo;
+        if (registered) leftInRegistry++;
+        messages += callbackContext.messages.get();
+        afterFinal += callbackContext.afterFinal.get();
+        if ((callbackContext.finalDidStops.get() != 1) || (callbackContext.afterFinal.get() > 0) || registered
+            || !inventoryInfo.isStopped()) {
+          failed++;
+          if (firstFailure == null) {
+            firstFailure = new JSONObject();
+            firstFailure.put("inventory", n);
+            firstFailure.put("finalDidStops", callbackContext.finalDidStops.get());
+            firstFailure.put("messagesAfterFinal", callbackContext.afterFinal.get());
+            firstFailure.put("registered", registered);
+            firstFailure.put("state", inventoryInfo.getState());
+          }
+        }
+
+        // keep a few other inventories registered so the map is not always near empty
+        if (inventoryInfos.size() > config.others) {
+          for (Iterator<String> it = inventoryInfos.keySet().iterator(); it.hasNext(); ) {
+            it.next();
+            it.remove();
+            if (inventoryInfos.size() <= config.others / 2) break;
+          }
+        }
+        if (config.others > 0) inventoryInfos.put("other-" + n, new InventoryInfo(inventoryInfos));
+      }
+    } finally {
+      scheduler.shutdownNow();
+    }
+    double elapsed = (System.nanoTime() - start) / 1e9;
+
+    JSONObject d = new JSONObject();
+    d.put("options", options);
+    d.put("inventories", config.inventories);
+    d.put("threads", config.threads);
+    d.put("seconds", elapsed);
+    d.put("tagCallbacks", tagCallbacks.get());
+    d.put("pauses", pauses.get());
+    d.put("resumes", resumes.get());
+    d.put("stopsAccepted", stopsAccepted.get());
+    d.put("stopCompletions", stopCompletions.get());
+    d.put("messages", messages);
+    d.put("messagesAfterFinal", afterFinal);
+    d.put("exceptions", exceptions.get());
+    d.put("lostDidStops", lostDidStops);
+    d.put("duplicateDidStops", duplicateDidStops);
+    d.put("leftInRegistry", leftInRegistry);
+    if (exceptions.get() > 0) failed += (int) exceptions.get();
+    d.put("failed", failed);
+    if (firstFailure != null) d.put("firstFailure", firstFailure);
+    return d;
+  }
+}
@@ -0,0 +1,420 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.ugrokit.api.*;
+
+/**
+ * Simulated Grokker for the host JVM: runs a population of tags through a real
+ * InventoryInfo (and so InventoryEventQueue, TagTable and TagEventEncoder) at a set
+ * read rate, and measures what reaches the Cordova callback: how many tag events,
+ * how many bridge messages and bytes, and how long after the read each tagFound and
+ * tagSubsequentFinds event was handled by (simulated) JavaScript.
+ *
+ * Each read picks a tag at random. The first read of a tag calls inventoryTagFound and
+ * inventoryTagChanged(firstFind), later reads call inventoryTagSubsequentFinds, and a tag
+ * not read for historyDepth history intervals goes invisible (inventoryTagChanged)
+ * until it is read again. Like the SDK, all delegate calls come from one thread.
+ *
+ *   mvn -f bench/pom.xml package
+ *   java -cp bench/target/benchmarks.jar com.ugrokit.cordova.ugrokit.ReaderSimulator \
+ *        tags=500 rate=5000 seconds=10 'options={"batchIntervalMSec":100,"binary":true}'
+ *
+ * Arguments are name=value, see Config for the names and defaults.
+ */
+public class ReaderSimulator
+{
+  /**
+   * What to simulate
+   */
+  public static class Config {
+    /** Number of tags in the field */
+    public int tags = 500;
+    /** Reads per second, over all tags */
+    public double rate = 2000;
+    /** Length of the inventory */
+    public double seconds = 10;
+    /** Mean and standard deviation of RSSI I and Q */
+    public double rssiMean = 1500;
+    public double rssiStdDev = 400;
+    /** Detailed per-read entries per tagFound/tagSubsequentFinds, 0 for none */
+    public int reads = 0;
+    /** Bytes of TID and USER memory per tag, 0 for none */
+    public int tid = 12;
+    public int user = 0;
+    /** History interval length, and the number of intervals a tag stays visible without reads */
+    public int historyIntervalMSec = 500;
+    public int historyDepth = 20;
+    /** Result passed to inventoryDidStop */
+    public int stop = UgiInventoryDelegate.InventoryDidStopListener.UGI_INVENTORY_COMPLETED_OK;
+    /** Events the JavaScript side listens for */
+    public boolean tagChanged = true;
+    public boolean tagFound = true;
+    public boolean tagSubsequentFinds = true;
+    public boolean historyInterval = true;
+    /** Time JavaScript takes to handle each tag event */
+    public int jsUsecPerEvent = 0;
+    /** startInventory options, as JSON */
+    public String options = "{}";
+    public long seed = 1;
+
+    void set(String name, String value) {
+      if (name.equals("tags")) tags = Integer.parseInt(value);
+      else if (name.equals("rate")) rate = Double.parseDouble(value);
+      else if (name.equals("seconds")) seconds = Double.parseDouble(value);
+      else if (name.equals("rssiMean")) rssiMean = Double.parseDouble(value);
+      else if (name.equals("rssiStdDev")) rssiStdDev = Double.parseDouble(value);
+      else if (name.equals("reads")) reads = Integer.parseInt(value);
+      else if (name.equals("tid")) tid = Integer.parseInt(value);
+      else if (name.equals("user")) user = Integer.parseInt(value);
+      else if (name.equals("historyIntervalMSec")) historyIntervalMSec = Integer.parseInt(value);
+      else if (name.equals("historyDepth")) historyDepth = Integer.parseInt(value);
+      else if (name.equals("stop")) stop = Integer.parseInt(value);
+      else if (name.equals("tagChanged")) tagChanged = Boolean.parseBoolean(value);
+      else if (name.equals("tagFound")) tagFound = Boolean.parseBoolean(value);
+      else if (name.equals("tagSubsequentFinds")) tagSubsequentFinds = Boolean.parseBoolean(value);
+      else if (name.equals("historyInterval")) historyInterval = Boolean.parseBoolean(value);
+      else if (name.equals("jsUsecPerEvent")) jsUsecPerEvent = Integer.parseInt(value);
+      else if (name.equals("options")) options = value;
+      else if (name.equals("seed")) seed = Long.parseLong(value);
+      else throw new IllegalArgumentException("unknown setting: " + name);
+    }
+  }
+
+  /**
+   * The Cordova side: messages sent to the inventory callback wait in Cordova's queue
+   * for the WebView thread, which takes jsUsecPerEvent per tag event to handle them,
+   * acknowledges them if the inventory uses flow control, and records how long after
+   * the read each event was handled
+   */
+  static class RecordingCallbackContext extends CallbackContext implements Runnable {
+    final AtomicLong messages = new AtomicLong();
+    final AtomicLong bytes = new AtomicLong();
+    final AtomicLong handled = new AtomicLong();
+    final AtomicLong tagEvents = new AtomicLong();
+    final AtomicLong otherEvents = new AtomicLong();
+    final AtomicLong errors = new AtomicLong();
+    final AtomicLong maxWaiting = new AtomicLong();
+    final LatencyHistogram delay = new LatencyHistogram();
+    final LinkedBlockingQueue<PluginResult> waiting = new LinkedBlockingQueue<PluginResult>();
+    final int jsUsecPerEvent;
+    volatile InventoryEventQueue ackQueue;
+    volatile boolean finished;
+
+    RecordingCallbackContext(int jsUsecPerEvent) {
+      this.jsUsecPerEvent = jsUsecPerEvent;
+    }
+
+    @Override
+    public void sendPluginResult(PluginResult pluginResult) {
+      messages.incrementAndGet();
+      Object value = pluginResult.getValue();
+      bytes.addAndGet(value instanceof byte[] ? ((byte[]) value).length : pluginResult.getMessage().length());
+      waiting.add(pluginResult);
+      long n = waiting.size();
+      long m;
+      while (n > (m = maxWaiting.get())) {
+        if (maxWaiting.compareAndSet(m, n)) break;
+      }
+    }
+
+    public void run() {
+      try {
+        while (true) {
+          PluginResult pluginResult = waiting.take();
+          int n = handle(pluginResult);
+          if (jsUsecPerEvent > 0) LockSupport.parkNanos(n * jsUsecPerEvent * 1000L);
+          InventoryEventQueue queue = ackQueue;
+          if ((queue != null) && pluginResult.getKeepCallback()) queue.ack(1);
+          if (!pluginResult.getKeepCallback()) finished = true;
+          handled.incrementAndGet();
+        }
+      } catch (InterruptedException ex) {
+        // simulation over
+      }
+    }
+
+    private int handle(PluginResult pluginResult) {
+      long now = System.currentTimeMillis();
+      Object value = pluginResult.getValue();
+      if (value instanceof byte[]) {
+        return handleBinary((byte[]) value, now);
+      } else if (value instanceof JSONObject) {
+        JSONObject d = (JSONObject) value;
+        JSONArray events = d.optJSONArray("events");
+        if (events == null) return handleJson(d, now);
+        for (int i = 0; i < events.length(); i++) handleJson(events.optJSONObject(i), now);
+        return events.length();
+      }
+      errors.incrementAndGet();
+      return 0;
+    }
+
+    private int handleJson(JSONObject d, long now) {
+      String cb = d.optString("_cb");
+      if (!cb.startsWith("tag")) {
+        otherEvents.incrementAndGet();
+        return 0;
+      }
+      tagEvents.incrementAndGet();
+      if (!cb.equals("tagChanged") && d.has("tag_mostRecentRead")) delay.record((now - d.optLong("tag_mostRecentRead")) * 1000);
+      return 1;
+    }
+
+    private int handleBinary(byte[] ba, long now) {
+      ByteBuffer bb = ByteBuffer.wrap(ba).order(ByteOrder.LITTLE_ENDIAN);
+      int n = bb.getInt(4);
+      int offset = TagEventEncoder.MESSAGE_HEADER_LENGTH;
+      for (int i = 0; i < n; i++) {
+        tagEvents.incrementAndGet();
+        if (bb.get(offset) != InventoryEventQueue.TAG_CHANGED) delay.record((now - (long) bb.getDouble(offset + 40)) * 1000);
+        offset += bb.getInt(offset + 16);
+      }
+      return n;
+    }
+  }
+
+  /**
+   * Counts of what the simulated reader did
+   */
+  static class Generated {
+    long reads;
+    long tagEvents;
+    long otherEvents;
+    long behindMSec;
+  }
+
+  private final Config config;
+  private final Random random;
+  private final UgiTag[] tags;
+  private final long[] lastRead;
+  private final int[] totalReads;
+  private final boolean[] visible;
+  private final Generated generated = new Generated();
+
+  public ReaderSimulator(Config config) {
+    this.config = config;
+    this.random = new Random(config.seed);
+    this.tags = new UgiTag[config.tags];
+    this.lastRead = new long[config.tags];
+    this.totalReads = new int[config.tags];
+    this.visible = new boolean[config.tags];
+  }
+
+  private byte[] randomBytes(int n) {
+    if (n <= 0) return null;
+    byte[] ba = new byte[n];
+    random.nextBytes(ba);
+    return ba;
+  }
+
+  private double rssi() {
+    return config.rssiMean + random.nextGaussian() * config.rssiStdDev;
+  }
+
+  private UgiInventory.DetailedPerReadData[] details(long now) {
+    if (config.reads <= 0) return null;
+    UgiInventory.DetailedPerReadData[] details = new UgiInventory.DetailedPerReadData[config.reads];
+    for (int i = 0; i < details.length; i++) {
+      details[i] = new UgiInventory.DetailedPerReadData(now - (details.length - 1 - i), 902750 + 500 * random.nextInt(50),
+                                                        rssi(), rssi(), 0, 0);
+    }
+    return details;
+  }
+
+  private void setReadState(int i) {
+    tags[i].setTagReadState(new UgiTagReadState(visible[i], totalReads[i], lastRead[i], rssi(), rssi(),
+                                                 new int[config.historyDepth]));
+  }
+
+  private void read(InventoryInfo inventoryInfo, int i, long now) {
+    generated.reads++;
+    boolean firstFind = tags[i] == null;
+    if (firstFind) {
+      byte[] epc = new byte[12];
+      random.nextBytes(epc);
+      tags[i] = new UgiTag(new UgiEpc(epc), now, randomBytes(config.tid), randomBytes(config.user), null);
+    }
+    boolean becameVisible = !visible[i];
+    visible[i] = true;
+    totalReads[i]++;
+    lastRead[i] = now;
+    setReadState(i);
+    if (firstFind) {
+      if (config.tagFound) generated.tagEvents++;
+      inventoryInfo.inventoryTagFound(tags[i], details(now));
+    } else {
+      if (config.tagSubsequentFinds) generated.tagEvents++;
+      inventoryInfo.inventoryTagSubsequentFinds(tags[i], 1, details(now));
+    }
+    if (becameVisible) {
+      if (config.tagChanged) generated.tagEvents++;
+      inventoryInfo.inventoryTagChanged(tags[i], firstFind);
+    }
+  }
+
+  private void historyInterval(InventoryInfo inventoryInfo, long now) {
+    long staleBefore = now - (long) config.historyIntervalMSec * config.historyDepth;
+    for (int i = 0; i < tags.length; i++) {
+      if (visible[i] && (lastRead[i] < staleBefore)) {
+        visible[i] = false;
+        setReadState(i);
+        if (config.tagChanged) generated.tagEvents++;
+        inventoryInfo.inventoryTagChanged(tags[i], false);
+      }
+    }
+    if (config.historyInterval) generated.otherEvents++;
+    inventoryInfo.inventoryHistoryInterval();
+  }
+
+  /**
+   * Run one inventory on the calling thread
+   */
+  Generated run(InventoryInfo inventoryInfo) {
+    long startNanos = System.nanoTime();
+    long totalReads = (long) (config.rate * config.seconds);
+    long nextHistoryInterval = System.currentTimeMillis() + config.historyIntervalMSec;
+    generated.otherEvents++;
+    inventoryInfo.inventoryDidStart();
+    for (long n = 0; n < totalReads; n++) {
+      long dueNanos = startNanos + (long) (n * 1e9 / config.rate);
+      long waitNanos = dueNanos - System.nanoTime();
+      if (waitNanos > 0) {
+        LockSupport.parkNanos(waitNanos);
+      } else {
+        generated.behindMSec = Math.max(generated.behindMSec, -waitNanos / 1000000);
+      }
+      long now = System.currentTimeMillis();
+      if (now >= nextHistoryInterval) {
+        historyInterval(inventoryInfo, now);
+        nextHistoryInterval += config.historyIntervalMSec;
+      }
+      read(inventoryInfo, random.nextInt(tags.length), now);
+    }
+    generated.otherEvents++;
+    inventoryInfo.inventoryDidStop(config.stop);
+    return generated;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Config config = new Config();
+    for (String arg : args) {
+      int eq = arg.indexOf('=');
+      if (eq < 0) throw new IllegalArgumentException("expected name=value: " + arg);
+      config.set(arg.substring(0, eq), arg.substring(eq + 1));
+    }
+    System.out.println(simulate(config).toString(2));
+  }
+
+  /**
+   * Run an inventory as startInventory would set it up, and report on it
+   */
+  static JSONObject simulate(Config config) throws JSONException, InterruptedException {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "UGrokIt-scheduler");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    try {
+      JSONObject options = new JSONObject(config.options);
+      RecordingCallbackContext callbackContext = new RecordingCallbackContext(config.jsUsecPerEvent);
+      Thread webView = new Thread(callbackContext, "WebView");
+      webView.setDaemon(true);
+      webView.start();
+      ConcurrentHashMap<String, InventoryInfo> inventoryInfos = new ConcurrentHashMap<String, InventoryInfo>();
+      InventoryInfo inventoryInfo = new InventoryInfo(inventoryInfos);
+      inventoryInfo.idForMap = "1";
+      inventoryInfo.inventoryCallbackContext = callbackContext;
+      inventoryInfo.handlesUgiInventoryTagChanged = config.tagChanged;
+      inventoryInfo.handlesUgiInventoryTagFound = config.tagFound;
+      inventoryInfo.handlesUgiInventoryTagSubsequentFinds = config.tagSubsequentFinds;
+      inventoryInfo.handlesUgiInventoryHistoryInterval = config.historyInterval;
+      inventoryInfo.binary = options.optBoolean("binary");
+      inventoryInfo.fields = TagTable.fieldsFromOptions(options);
+      inventoryInfo.tagTable = TagTable.fromOptions(options);
+      inventoryInfo.tagStats = TagStats.fromOptions(options);
+      if ((inventoryInfo.tagStats != null) && (options.optInt("statsIntervalMSec", 0) > 0)) {
+        inventoryInfo.scheduleStats(scheduler, options.getInt("statsIntervalMSec"));
+      }
+      inventoryInfo.locate = LocateEngine.fromOptions(options);
+      if (inventoryInfo.locate != null) inventoryInfo.scheduleLocate(scheduler);
+      inventoryInfo.eventQueue = InventoryEventQueue.fromOptions(options, callbackContext, scheduler, inventoryInfo.tagTable);
+      inventoryInfo.inventory = new UgiInventory();
+      inventoryInfos.put(inventoryInfo.idForMap, inventoryInfo);
+      if (options.optInt("maxInFlight", 0) > 0) callbackContext.ackQueue = inventoryInfo.eventQueue;
+
+      long start = System.nanoTime();
+      Generated generated = new ReaderSimulator(config).run(inventoryInfo);
+      double elapsed = (System.nanoTime() - start) / 1e9;
+      // wait for JavaScript to catch up: the final result, or (if the inventory did not
+      // finish) nothing more sent for a while
+      long handled = -1;
+      while (!callbackContext.finished && (handled != callbackContext.handled.get())) {
+        handled = callbackContext.handled.get();
+        Thread.sleep(250);
+      }
+      double handledElapsed = (System.nanoTime() - start) / 1e9;
+      webView.interrupt();
+
+      JSONObject d = new JSONObject();
+      d.put("options", options);
+      d.put("seconds", elapsed);
+      d.put("reads", generated.reads);
+      d.put("readsPerSecond", (long) (generated.reads / elapsed));
+      d.put("maxBehindMSec", generated.behindMSec);
+      d.put("tagEventsGenerated", generated.tagEvents);
+      d.put("tagEventsDelivered", callbackContext.tagEvents.get());
+      d.put("tagEventsNotDelivered", generated.tagEvents - callbackContext.tagEvents.get());
+      d.put("otherEventsGenerated", generated.otherEvents);
+      d.put("otherEventsDelivered", callbackContext.otherEvents.get());
+      d.put("messages", callbackContext.messages.get());
+      d.put("maxMessagesWaiting", callbackContext.maxWaiting.get());
+      d.put("handledSeconds", handledElapsed);
+      d.put("bytes", callbackContext.bytes.get());
+      d.put("bytesPerTagEvent", callbackContext.tagEvents.get() > 0 ? callbackContext.bytes.get() / callbackContext.tagEvents.get() : 0);
+      d.put("unexpectedResults", callbackContext.errors.get());
+      d.put("finished", callbackContext.finished);
+      d.put("stillActive", inventoryInfos.size());
+      d.put("delay", callbackContext.delay.toJson());
+      if (inventoryInfo.eventQueue != null) d.put("eventQueue", inventoryInfo.eventQueue.statsToJson());
+      return d;
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.cordova;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Stand-in for the Cordova class of the same name, with only what the plugin code
+ * run in bench/ uses. Like Cordova, JSON messages are encoded when the result is
+ * created. getValue() is not in Cordova, it lets the simulator look at results.
+ */
+public class PluginResult
+{
+  public enum Status {
+    NO_RESULT,
+    OK,
+    CLASS_NOT_FOUND_EXCEPTION,
+    ILLEGAL_ACCESS_EXCEPTION,
+    INSTANTIATION_EXCEPTION,
+    MALFORMED_URL_EXCEPTION,
+    IO_EXCEPTION,
+    INVALID_ACTION,
+    JSON_EXCEPTION,
+    ERROR
+  }
+
+  public static final int MESSAGE_TYPE_STRING = 1;
+  public static final int MESSAGE_TYPE_JSON = 2;
+  public static final int MESSAGE_TYPE_NULL = 5;
+  public static final int MESSAGE_TYPE_ARRAYBUFFER = 6;
+
+  private final int status;
+  private final int messageType;
+  private final Object value;
+  private final String encodedMessage;
+  private boolean keepCallback = false;
+
+  public PluginResult(Status status) {
+    this(status, MESSAGE_TYPE_NULL, null, null);
+  }
+
+  public PluginResult(Status status, String message) {
+    this(status, MESSAGE_TYPE_STRING, message, message);
+  }
+
+  public PluginResult(Status status, JSONObject message) {
+    this(status, MESSAGE_TYPE_JSON, message, message.toString());
+  }
+
+  public PluginResult(Status status, JSONArray message) {
+    this(status, MESSAGE_TYPE_JSON, message, message.toString());
+  }
+
+  public PluginResult(Status status, byte[] data) {
+    this(status, MESSAGE_TYPE_ARRAYBUFFER, data, null);
+  }
+
+  private PluginResult(Status status, int messageType, Object value, String encodedMessage) {
+    this.status = status.ordinal();
+    this.messageType = messageType;
+    this.value = value;
+    this.encodedMessage = encodedMessage;
+  }
+
+  public void setKeepCallback(boolean b) {
+    this.keepCallback = b;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public int getMessageType() {
+    return messageType;
+  }
+
+  public String getMessage() {
+    return encodedMessage;
+  }
+
+  public boolean getKeepCallback() {
+    return keepCallback;
+  }
+
+  /**
+   * The JSONObject, JSONArray, String or byte[] the result was created with
+   */
+  public Object getValue() {
+    return value;
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import org.apache.cordova.CallbackContext;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+/**
+ * Handler for one plugin action. Handlers are registered by name with
+ * UGrokIt.registerAction(), and execute() looks them up in a single map.
+ */
+public interface ActionHandler
+{
+  /**
+   * Run the action
+   *
+   * @param plugin The plugin instance
+   * @param args JSONArray of arguments passed from JavaScript
+   * @param callbackContext Callback for results
+   */
+  void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException;
+
+  /**
+   * Optional hook told about every action that runs
+   */
+  interface TimingListener {
+    /**
+     * @param action The action name
+     * @param queueWaitNanos Time between execute() and the action starting to run
+     * @param runNanos Time the handler took to run (not including asynchronous completions)
+     */
+    void actionTimed(String action, long queueWaitNanos, long runNanos);
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import org.apache.cordova.CallbackContext;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.ugrokit.api.*;
+
+/**
+ * Battery actions
+ */
+class BatteryActions
+{
+  static void register(UGrokIt plugin) {
+    //
+    // getBatteryInfo
+    //
+    plugin.registerAction("getBatteryInfo", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        plugin.callSdk("getBatteryInfo", callbackContext, new UGrokIt.SdkCall<Ugi.BatteryInfo>() {
+          public Ugi.BatteryInfo call() {
+            return UGrokIt.ugi.getBatteryInfo();
+          }
+        }, new UGrokIt.SdkResult<Ugi.BatteryInfo>() {
+          public void result(Ugi.BatteryInfo info) throws JSONException {
+            JSONObject d = new JSONObject();
+            d.put("canScan", info.canScan);
+            d.put("externalPowerIsConnected", info.externalPowerIsConnected);
+            d.put("isCharging", info.isCharging);
+            d.put("minutesRemaining", info.minutesRemaining);
+            d.put("percentRemaining", info.percentRemaining);
+            d.put("voltage", info.voltage);
+            callbackContext.success(d);
+          }
+        });
+      }
+    });
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.cordova.PluginResult;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+/**
+ * Plugin-wide counters and latency histograms for what crosses the Cordova bridge
+ * (getMetrics action): messages, events and payload bytes for each kind of tag message,
+ * serialization time, time from the SDK callback to sendPluginResult for each tag event,
+ * and how long actions wait for the executor and UI threads. Lock-free, so the
+ * inventory callbacks only pay for a few atomic adds.
+ *
+ * With ugi.LoggingTypes.METRICS set by setLogging, the rates since the previous dump
+ * are also written to logcat every logIntervalMSec.
+ */
+class BridgeMetrics
+{
+  /** setLogging bit for the periodic logcat dump, not passed on to the SDK */
+  static final int LOGGING_METRICS = 0x8000;
+  static final int DEFAULT_LOG_INTERVAL_MSEC = 10000;
+
+  /** Kinds of message: InventoryEventQueue.TAG_xxx for single tag events, or a batch of them */
+  static final int BATCH = 4;
+  private static final String[] KIND_NAMES = { null, "tagChanged", "tagFound", "tagSubsequentFinds", "batch" };
+
+  static final BridgeMetrics instance = new BridgeMetrics();
+
+  private final AtomicLongArray messages = new AtomicLongArray(KIND_NAMES.length);
+  private final AtomicLongArray events = new AtomicLongArray(KIND_NAMES.length);
+  private final AtomicLongArray bytes = new AtomicLongArray(KIND_NAMES.length);
+  private final LatencyHistogram serialize = new LatencyHistogram();
+  private final LatencyHistogram callbackToSend = new LatencyHistogram();
+  private final LatencyHistogram executorQueueWait = new LatencyHistogram();
+  private final LatencyHistogram uiThreadQueueWait = new LatencyHistogram();
+  private final AtomicLong resetAt = new AtomicLong(System.nanoTime());
+
+  private ScheduledFuture<?> scheduledLog;
+  private long[] loggedEvents = new long[KIND_NAMES.length];
+  private long[] loggedBytes = new long[KIND_NAMES.length];
+  private long loggedAt;
+
+  /**
+   * Time spent turning tag events into a PluginResult (including the JSON string or
+   * base64 Cordova makes in the PluginResult constructor)
+   */
+  void serialized(long nanos) {
+    serialize.recordNanos(nanos);
+  }
+
+  /**
+   * A tag message has been sent. Its bytes are what crosses the bridge: the JSON string,
+   * or the base64 of a binary message.
+   *
+   * @param kind InventoryEventQueue.TAG_xxx or BATCH
+   * @param numEvents Number of tag events in it
+   */
+  void sent(int kind, int numEvents, PluginResult pluginResult) {
+    messages.incrementAndGet(kind);
+    events.addAndGet(kind, numEvents);
+    String message = pluginResult.getMessage();
+    if (message != null) bytes.addAndGet(kind, message.length());
+  }
+
+  /**
+   * A tag event that the SDK reported at receivedNanos (System.nanoTime()) has been sent
+   */
+  void delivered(long receivedNanos) {
+    callbackToSend.recordNanos(System.nanoTime() - receivedNanos);
+  }
+
+  /**
+   * An action waited this long to run
+   */
+  void actionQueued(boolean uiThread, long nanos) {
+    (uiThread ? uiThreadQueueWait : executorQueueWait).recordNanos(nanos);
+  }
+
+  JSONObject toJson(boolean reset) throws JSONException {
+    long now = System.nanoTime();
+    long elapsedNanos = Math.max(now - resetAt.get(), 1);
+    JSONObject d = new JSONObject();
+    d.put("elapsedMSec", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+    JSONObject callbacks = new JSONObject();
+    for (int kind = 1; kind < KIND_NAMES.length; kind++) {
+      long m = messages.get(kind);
+      if (m == 0) continue;
+      JSONObject c = new JSONObject();
+      c.put("messages", m);
+      c.put("events", events.get(kind));
+      c.put("bytes", bytes.get(kind));
+      c.put("eventsPerSecond", events.get(kind) * 1e9 / elapsedNanos);
+      c.put("bytesPerSecond", bytes.get(kind) * 1e9 / elapsedNanos);
+      callbacks.put(KIND_NAMES[kind], c);
+    }
+    d.put("callbacks", callbacks);
+    d.put("serialize", serialize.toJson());
+    d.put("callbackToSend", callbackToSend.toJson());
+    d.put("executorQueueWait", executorQueueWait.toJson());
+    d.put("uiThreadQueueWait", uiThreadQueueWait.toJson());
+    if (reset) reset(now);
+    return d;
+  }
+
+  private void reset(long now) {
+    for (int kind = 0; kind < KIND_NAMES.length; kind++) {
+      messages.set(kind, 0);
+      events.set(kind, 0);
+      bytes.set(kind, 0);
+    }
+    serialize.reset();
+    callbackToSend.reset();
+    executorQueueWait.reset();
+    uiThreadQueueWait.reset();
+    resetAt.set(now);
+    synchronized (this) {
+      loggedEvents = new long[KIND_NAMES.length];
+      loggedBytes = new long[KIND_NAMES.length];
+      loggedAt = now;
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////
+  // logcat
+  ///////////////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Start or stop the periodic logcat dump
+   *
+   * @param scheduler Where to run the dump
+   * @param intervalMSec How often to dump, 0 to stop
+   */
+  synchronized void setLogInterval(ScheduledExecutorService scheduler, int intervalMSec) {
+    if (scheduledLog != null) {
+      scheduledLog.cancel(false);
+      scheduledLog = null;
+    }
+    if (intervalMSec <= 0) return;
+    for (int kind = 0; kind < KIND_NAMES.length; kind++) {
+      loggedEvents[kind] = events.get(kind);
+      loggedBytes[kind] = bytes.get(kind);
+    }
+    loggedAt = System.nanoTime();
+    scheduledLog = scheduler.scheduleAtFixedRate(new Runnable() {
+      public void run() {
+        Log.i(PluginLog.TAG, logLine());
+      }
+    }, intervalMSec, intervalMSec, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Events and bytes per second for each kind of message since the previous line,
+   * then percentiles since the last reset
+   */
+  synchronized String logLine() {
+    long now = System.nanoTime();
+    double seconds = Math.max(now - loggedAt, 1) / 1e9;
+    StringBuilder sb = new StringBuilder("metrics:");
+    for (int kind = 1; kind < KIND_NAMES.length; kind++) {
+      long e = events.get(kind);
+      long b = bytes.get(kind);
+      if (e != loggedEvents[kind]) {
+        sb.append(' ').append(KIND_NAMES[kind]).append(' ')
+          .append(Math.round((e - loggedEvents[kind]) / seconds)).append("/s ")
+          .append(Math.round((b - loggedBytes[kind]) / seconds)).append("B/s");
+      }
+      loggedEvents[kind] = e;
+      loggedBytes[kind] = b;
+    }
+    loggedAt = now;
+    appendPercentiles(sb, "serialize", serialize);
+    appendPercentiles(sb, "callbackToSend", callbackToSend);
+    appendPercentiles(sb, "executorQueueWait", executorQueueWait);
+    appendPercentiles(sb, "uiThreadQueueWait", uiThreadQueueWait);
+    return sb.toString();
+  }
+
+  private static void appendPercentiles(StringBuilder sb, String name, LatencyHistogram histogram) {
+    if (histogram.getCount() == 0) return;
+    sb.append(' ').append(name)
+      .append(" p50=").append(histogram.getValueAtPercentile(0.50))
+      .append(" p99=").append(histogram.getValueAtPercentile(0.99)).append("us");
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import org.apache.cordova.CallbackContext;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import com.ugrokit.api.*;
+
+/**
+ * RFID configuration actions: a configuration is built once by registerConfiguration
+ * and passed to startInventory by handle instead of as the 37 positional values
+ */
+class ConfigurationActions
+{
+  static void register(UGrokIt plugin) {
+    //
+    // registerConfiguration (handle, config values)
+    //
+    plugin.registerAction("registerConfiguration", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        int handle = args.getInt(0);
+        UgiRfidConfiguration config = RfidConfigCodec.fromValues(args.getJSONArray(1));
+        plugin.rfidConfigs.put(handle, config);
+        callbackContext.success(handle);
+      }
+    });
+    //
+    // releaseConfiguration (handle)
+    //
+    plugin.registerAction("releaseConfiguration", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        plugin.rfidConfigs.remove(args.getInt(0));
+        callbackContext.success();
+      }
+    });
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import org.apache.cordova.CallbackContext;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Connection actions
+ */
+class ConnectionActions
+{
+  static void register(UGrokIt plugin) {
+    //
+    // openConnection
+    //
+    plugin.registerAction("openConnection", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        plugin.callSdk("openConnection", callbackContext, new UGrokIt.SdkCall<Void>() {
+          public Void call() {
+            UGrokIt.ugi.openConnection();
+            return null;
+          }
+        }, new UGrokIt.SdkResult<Void>() {
+          public void result(Void value) {
+            callbackContext.success();
+          }
+        });
+      }
+    });
+    //
+    // closeConnection
+    //
+    plugin.registerAction("closeConnection", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        plugin.callSdk("closeConnection", callbackContext, new UGrokIt.SdkCall<Void>() {
+          public Void call() {
+            UGrokIt.ugi.closeConnection();
+            return null;
+          }
+        }, new UGrokIt.SdkResult<Void>() {
+          public void result(Void value) {
+            callbackContext.success();
+          }
+        });
+      }
+    });
+    //
+    // addConnectionStateCallback (callback)
+    //
+    plugin.registerAction("addConnectionStateCallback", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        plugin.readerInfo.addCallback(args.getInt(0), callbackContext);
+      }
+    });
+    //
+    // removeConnectionStateCallback (listenerId)
+    //
+    plugin.registerAction("removeConnectionStateCallback", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        plugin.readerInfo.removeCallback(args.getInt(0));
+        callbackContext.success();
+      }
+    });
+    //
+    // getReaderInfo
+    //
+    plugin.registerAction("getReaderInfo", new ActionHandler() {
+      public void execute(final UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        JSONObject d = plugin.readerInfo.getLastSnapshot();
+        if (d != null) {
+          callbackContext.success(d);
+          return;
+        }
+        // nothing has changed since the plugin started, read it from the SDK
+        plugin.callSdk("getReaderInfo", callbackContext, new UGrokIt.SdkCall<JSONObject>() {
+          public JSONObject call() throws JSONException {
+            return plugin.readerInfo.getSnapshot();
+          }
+        }, new UGrokIt.SdkResult<JSONObject>() {
+          public void result(JSONObject value) {
+            callbackContext.success(value);
+          }
+        });
+      }
+    });
+    //
+    // setHandleScreenRotation (boolean) -- must run on the UI thread
+    //
+    plugin.registerAction("setHandleScreenRotation", true, new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        boolean handleScreenRotation = args.getBoolean(0);
+        UGrokIt.ugi.activityUpdateHandleScreenRotation(plugin.cordova.getActivity(), handleScreenRotation);
+        callbackContext.success();
+      }
+    });
+  }
+}
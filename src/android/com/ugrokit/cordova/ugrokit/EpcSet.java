@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.util.*;
+
+import com.ugrokit.api.*;
+
+/**
+ * Set of EPCs for startInventory filter lists, built once and reused across
+ * inventories by handle (see EpcSetActions).
+ *
+ * EPCs of up to 12 bytes (96 bits, by far the most common) are packed into two
+ * longs and kept in dense parallel arrays, indexed by an open addressing hash
+ * table (linear probing, backward shift deletion) of dense position + 1.
+ * Longer EPCs go into an ordinary HashSet.
+ *
+ * The UgiEpc list the SDK needs is only built the first time an inventory uses
+ * the set, and is then kept up to date by add() and remove().
+ *
+ * Not thread safe: only used from the plugin's executor thread.
+ */
+class EpcSet
+{
+  static final int PACKED_MAX_BYTES = 12;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  // packed EPCs: hi = length << 32 | bytes 0-3, lo = bytes 4-11
+  private long[] hi;
+  private long[] lo;
+  private int size;
+
+  // hash table of dense position + 1, 0 = empty
+  private int[] table;
+  private int mask;
+
+  private final HashSet<UgiEpc> overflow = new HashSet<UgiEpc>();
+
+  // parallel to hi/lo once built
+  private ArrayList<UgiEpc> epcs;
+
+  private final byte[] scratch = new byte[UgiEpc.MAX_EPC_LENGTH];
+
+  EpcSet() {
+    this(INITIAL_CAPACITY);
+  }
+
+  EpcSet(int expectedSize) {
+    int capacity = INITIAL_CAPACITY;
+    while (capacity < expectedSize) capacity <<= 1;
+    hi = new long[capacity];
+    lo = new long[capacity];
+    table = new int[capacity * 2];
+    mask = table.length - 1;
+  }
+
+  int size() {
+    return size + overflow.size();
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////
+  // Adding, removing and finding EPCs by hex string
+  ///////////////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Add an EPC
+   *
+   * @param s EPC as a hex string
+   * @return 1 if added, 0 if already present, -1 if not a valid EPC
+   */
+  int add(String s) {
+    int length = HexCodec.decode(s, scratch, 0);
+    if (length <= 0) return -1;
+    return add(scratch, length);
+  }
+
+  /**
+   * Add an EPC
+   *
+   * @param epc EPC bytes
+   * @return 1 if added, 0 if already present
+   */
+  int add(byte[] epc) {
+    return add(epc, epc.length);
+  }
+
+  private int add(byte[] ba, int length) {
+    if (length > PACKED_MAX_BYTES) {
+      UgiEpc epc = new UgiEpc(Arrays.copyOf(ba, length));
+      return overflow.add(epc) ? 1 : 0;
+    }
+    long h = packHi(ba, length);
+    long l = packLo(ba, length);
+    int slot = findSlot(h, l);
+    if (table[slot] != 0) return 0;
+    if (size == hi.length) {
+      grow();
+      slot = findSlot(h, l);
+    }
+    hi[size] = h;
+    lo[size] = l;
+    table[slot] = ++size;
+    if (epcs != null) epcs.add(new UgiEpc(unpack(h, l)));
+    return 1;
+  }
+
+  /**
+   * Remove an EPC
+   *
+   * @param s EPC as a hex string
+   * @return 1 if removed, 0 if not present, -1 if not a valid EPC
+   */
+  int remove(String s) {
+    int length = HexCodec.decode(s, scratch, 0);
+    if (length <= 0) return -1;
+    if (length > PACKED_MAX_BYTES) {
+      UgiEpc epc = new UgiEpc(Arrays.copyOf(scratch, length));
+      return overflow.remove(epc) ? 1 : 0;
+    }
+    int slot = findSlot(packHi(scratch, length), packLo(scratch, length));
+    if (table[slot] == 0) return 0;
+    int pos = table[slot] - 1;
+    deleteSlot(slot);
+    int last = size - 1;
+    if (pos != last) {
+      // move the last entry into the hole
+      table[findSlot(hi[last], lo[last])] = pos + 1;
+      hi[pos] = hi[last];
+      lo[pos] = lo[last];
+      if (epcs != null) epcs.set(pos, epcs.get(last));
+    }
+    if (epcs != null) epcs.remove(last);
+    size = last;
+    return 1;
+  }
+
+  boolean contains(String s) {
+    int length = HexCodec.decode(s, scratch, 0);
+    if (length <= 0) return false;
+    if (length > PACKED_MAX_BYTES) {
+      return overflow.contains(new UgiEpc(Arrays.copyOf(scratch, length)));
+    }
+    return table[findSlot(packHi(scratch, length), packLo(scratch, length))] != 0;
+  }
+
+  /**
+   * The EPCs as a list for the SDK. This is a copy so the set can be changed while
+   * an inventory started with it is still running.
+   */
+  ArrayList<UgiEpc> toList() {
+    if (epcs == null) {
+      epcs = new ArrayList<UgiEpc>(hi.length);
+      for (int i = 0; i < size; i++) {
+        epcs.add(new UgiEpc(unpack(hi[i], lo[i])));
+      }
+    }
+    ArrayList<UgiEpc> list = new ArrayList<UgiEpc>(size());
+    list.addAll(epcs);
+    list.addAll(overflow);
+    return list;
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////
+  // Positions
+  ///////////////////////////////////////////////////////////////////////////////////////
+
+  static final int NOT_FOUND = -1;
+  static final int OVERFLOW = -2;
+
+  /**
+   * A copy, for a set whose positions must not change
+   */
+  EpcSet copy() {
+    return new EpcSet(this);
+  }
+
+  private EpcSet(EpcSet other) {
+    hi = other.hi.clone();
+    lo = other.lo.clone();
+    size = other.size;
+    table = other.table.clone();
+    mask = other.mask;
+    overflow.addAll(other.overflow);
+  }
+
+  /**
+   * Position of an EPC of up to PACKED_MAX_BYTES bytes, 0...packedSize()-1. Positions
+   * only change when an EPC is removed.
+   *
+   * @param epc EPC bytes
+   * @return The position, OVERFLOW for a longer EPC in the set or NOT_FOUND
+   */
+  int position(byte[] epc) {
+    if (epc.length == 0) return NOT_FOUND;
+    if (epc.length > PACKED_MAX_BYTES) {
+      return overflow.contains(new UgiEpc(epc)) ? OVERFLOW : NOT_FOUND;
+    }
+    return table[findSlot(packHi(epc, epc.length), packLo(epc, epc.length))] - 1;
+  }
+
+  int packedSize() {
+    return size;
+  }
+
+  byte[] epcAt(int position) {
+    return unpack(hi[position], lo[position]);
+  }
+
+  /**
+   * The EPCs longer than PACKED_MAX_BYTES bytes, which have no position
+   */
+  Set<UgiEpc> overflowEpcs() {
+    return Collections.unmodifiableSet(overflow);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////
+  // Hash table
+  ///////////////////////////////////////////////////////////////////////////////////////
+
+  private static int hash(long h, long l) {
+    long x = (h * 0x9e3779b97f4a7c15L) ^ l;
+    x ^= x >>> 33;
+    x *= 0xff51afd7ed558ccdL;
+    x ^= x >>> 33;
+    return (int) x;
+  }
+
+  /**
+   * Slot holding this EPC, or the empty slot where it would go
+   */
+  private int findSlot(long h, long l) {
+    int slot = hash(h, l) & mask;
+    while (true) {
+      int p = table[slot];
+      if ((p == 0) || ((hi[p - 1] == h) && (lo[p - 1] == l))) return slot;
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private void deleteSlot(int slot) {
+    int hole = slot;
+    int next = (slot + 1) & mask;
+    while (table[next] != 0) {
+      int p = table[next] - 1;
+      int home = hash(hi[p], lo[p]) & mask;
+      // move the entry back if the hole is between its home slot and where it is now
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        table[hole] = table[next];
+        hole = next;
+      }
+      next = (next + 1) & mask;
+    }
+    table[hole] = 0;
+  }
+
+  private void grow() {
+    int capacity = hi.length * 2;
+    hi = Arrays.copyOf(hi, capacity);
+    lo = Arrays.copyOf(lo, capacity);
+    table = new int[capacity * 2];
+    mask = table.length - 1;
+    for (int i = 0; i < size; i++) {
+      table[findSlot(hi[i], lo[i])] = i + 1;
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////
+  // Packing
+  ///////////////////////////////////////////////////////////////////////////////////////
+
+  private static long packHi(byte[] ba, int length) {
+    long h = (long) length << 32;
+    for (int i = 0; i < 4; i++) {
+      h |= (long) (i < length ? ba[i] & 0xff : 0) << (24 - i*8);
+    }
+    return h;
+  }
+
+  private static long packLo(byte[] ba, int length) {
+    long l = 0;
+    for (int i = 4; i < PACKED_MAX_BYTES; i++) {
+      l |= (long) (i < length ? ba[i] & 0xff : 0) << (88 - i*8);
+    }
+    return l;
+  }
+
+  private static byte[] unpack(long h, long l) {
+    byte[] ba = new byte[(int) (h >>> 32)];
+    for (int i = 0; i < ba.length; i++) {
+      ba[i] = (byte) (i < 4 ? h >>> (24 - i*8) : l >>> (88 - i*8));
+    }
+    return ba;
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import org.apache.cordova.CallbackContext;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * EPC set actions: sets are created and changed by handle, and passed to
+ * startInventory with the epcSet option instead of an EPC list
+ */
+class EpcSetActions
+{
+  static void register(UGrokIt plugin) {
+    //
+    // createEpcSet (handle, epcs)
+    //
+    plugin.registerAction("createEpcSet", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        int handle = args.getInt(0);
+        JSONArray epcs = args.getJSONArray(1);
+        EpcSet epcSet = new EpcSet(epcs.length());
+        plugin.epcSets.put(handle, epcSet);
+        int invalid = 0;
+        for (int i = 0; i < epcs.length(); i++) {
+          if (epcSet.add(epcs.getString(i)) < 0) invalid++;
+        }
+        callbackContext.success(result(epcSet, invalid));
+      }
+    });
+    //
+    // addToEpcSet (handle, epcs)
+    //
+    plugin.registerAction("addToEpcSet", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        EpcSet epcSet = plugin.epcSets.get(args.getInt(0));
+        if (epcSet == null) {
+          callbackContext.error("addToEpcSet called with unknown epcSet");
+          return;
+        }
+        JSONArray epcs = args.getJSONArray(1);
+        int invalid = 0;
+        for (int i = 0; i < epcs.length(); i++) {
+          if (epcSet.add(epcs.getString(i)) < 0) invalid++;
+        }
+        callbackContext.success(result(epcSet, invalid));
+      }
+    });
+    //
+    // removeFromEpcSet (handle, epcs)
+    //
+    plugin.registerAction("removeFromEpcSet", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        EpcSet epcSet = plugin.epcSets.get(args.getInt(0));
+        if (epcSet == null) {
+          callbackContext.error("removeFromEpcSet called with unknown epcSet");
+          return;
+        }
+        JSONArray epcs = args.getJSONArray(1);
+        int invalid = 0;
+        for (int i = 0; i < epcs.length(); i++) {
+          if (epcSet.remove(epcs.getString(i)) < 0) invalid++;
+        }
+        callbackContext.success(result(epcSet, invalid));
+      }
+    });
+    //
+    // releaseEpcSet (handle)
+    //
+    plugin.registerAction("releaseEpcSet", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        plugin.epcSets.remove(args.getInt(0));
+        callbackContext.success();
+      }
+    });
+  }
+
+  private static JSONObject result(EpcSet epcSet, int invalid) throws JSONException {
+    JSONObject d = new JSONObject();
+    d.put("size", epcSet.size());
+    d.put("invalid", invalid);
+    return d;
+  }
+}
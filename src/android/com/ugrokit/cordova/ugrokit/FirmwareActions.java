@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import org.apache.cordova.CallbackContext;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+import com.ugrokit.api.*;
+
+/**
+ * Firmware update actions
+ */
+class FirmwareActions
+{
+  static void register(UGrokIt plugin) {
+    //
+    // automaticCheckForFirmwareUpdate
+    //
+    plugin.registerAction("automaticCheckForFirmwareUpdate", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        plugin.callSdk("automaticCheckForFirmwareUpdate", callbackContext, new UGrokIt.SdkCall<Void>() {
+          public Void call() {
+            UGrokIt.ugi.automaticCheckForFirmwareUpdate(Ugi.FIRMWARE_CHANNEL_RELEASE,
+                                                        new Ugi.AutomaticCheckForFirmwareUpdateCompletion() {
+              @Override
+              public void updateReady(UgiFirmwareUpdateInfo info, boolean required) {
+                try {
+                  JSONObject d = new JSONObject();
+                  d.put("required", required);
+                  if (info != null) {
+                    d.put("name", info.getName());
+                    d.put("notes", info.getNotes());
+                    d.put("softwareVersionMajor", info.getSoftwareVersionMajor());
+                    d.put("softwareVersionMinor", info.getSoftwareVersionMinor());
+                    d.put("softwareVersionBuild", info.getSoftwareVersionBuild());
+                    d.put("sofwareVersionDate", info.getSofwareVersionDate().getTime());
+                  }
+                  callbackContext.success(d);
+                } catch (JSONException ex) {
+                  Log.e(UGrokIt.TAG, "automaticCheckForFirmwareUpdate callback", ex);
+                }
+              }
+            });
+            return null;
+          }
+        }, null);
+      }
+    });
+    //
+    // loadUpdateWithName (name)
+    //
+    plugin.registerAction("loadUpdateWithName", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        final String name = args.getString(0);
+        plugin.callSdk("loadUpdateWithName", callbackContext, new UGrokIt.SdkCall<Void>() {
+          public Void call() {
+            UGrokIt.ugi.loadUpdateWithName(name, new Ugi.LoadUpdateWithNameCompletion() {
+              @Override
+              public void updateLoaded(boolean success) {
+                JSONObject d = new JSONObject();
+                try {
+                  d.put("success", success);
+                } catch (JSONException ex) {
+                  Log.e(UGrokIt.TAG, "loadUpdateWithName callback", ex);
+                }
+                callbackContext.success(d);
+              }
+            });
+            return null;
+          }
+        }, null);
+      }
+    });
+    //
+    // firmwareUpdate (options) -- progress and completion go to the plugin's FirmwareUpdateDelegate
+    //
+    plugin.registerAction("firmwareUpdate", new ActionHandler() {
+      public void execute(final UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        plugin.firmwareUpdateProgress = new FirmwareUpdateProgress(args.optJSONObject(0), callbackContext);
+        plugin.callSdk("firmwareUpdate", callbackContext, new UGrokIt.SdkCall<Void>() {
+          public Void call() {
+            UGrokIt.ugi.firmwareUpdate(plugin);
+            return null;
+          }
+        }, null);
+      }
+    });
+    //
+    // forceFirmwareChannelReload (onlyIfSomeTimeHasPassed)
+    //
+    plugin.registerAction("forceFirmwareChannelReload", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        final boolean onlyIfSomeTimeHasPassed = args.getBoolean(0);
+        plugin.callSdk("forceFirmwareChannelReload", callbackContext, new UGrokIt.SdkCall<Void>() {
+          public Void call() {
+            UGrokIt.ugi.forceFirmwareChannelReload(onlyIfSomeTimeHasPassed);
+            return null;
+          }
+        }, null);
+      }
+    });
+    //
+    // forceFirmwareGrokkerCheck
+    //
+    plugin.registerAction("forceFirmwareGrokkerCheck", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        plugin.callSdk("forceFirmwareGrokkerCheck", callbackContext, new UGrokIt.SdkCall<Void>() {
+          public Void call() {
+            UGrokIt.ugi.forceFirmwareGrokkerCheck();
+            return null;
+          }
+        }, null);
+      }
+    });
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.apache.cordova.PluginResult.Status;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+/**
+ * Progress of a firmware update (firmwareUpdate). The SDK reports progress for every
+ * chunk sent to the reader; those reports are coalesced to one every progressIntervalMSec
+ * or progressStepPercent, with the transfer rate and time left worked out here. On
+ * completion the time is broken down into preparing (until the first progress report),
+ * transferring (until amountDone reaches amountTotal) and verifying (the rest).
+ */
+class FirmwareUpdateProgress
+{
+  static final int DEFAULT_INTERVAL_MSEC = 250;
+
+  private final CallbackContext callbackContext;
+  private final long intervalNanos;
+  private final double stepPercent;
+
+  private final long startNanos = System.nanoTime();
+  private long firstReportNanos = -1;
+  private int firstAmount;
+  private long transferDoneNanos = -1;
+
+  private long lastSentNanos;
+  private double lastSentPercent = -1;
+  private boolean lastCanCancel;
+
+  // statistics
+  private int reports;
+  private int sent;
+
+  /**
+   * @param options {progressIntervalMSec, progressStepPercent}, or null for the defaults
+   */
+  FirmwareUpdateProgress(JSONObject options, CallbackContext callbackContext) {
+    this.callbackContext = callbackContext;
+    int intervalMSec = options != null ? options.optInt("progressIntervalMSec", DEFAULT_INTERVAL_MSEC) : DEFAULT_INTERVAL_MSEC;
+    this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(intervalMSec, 0));
+    this.stepPercent = options != null ? options.optDouble("progressStepPercent", 0) : 0;
+  }
+
+  private static long toMSec(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  /**
+   * A progress report from the SDK, sent on if it is the first or last, canCancel changed,
+   * progressIntervalMSec has passed or progress is up by progressStepPercent
+   */
+  synchronized void progress(int amountDone, int amountTotal, boolean canCancel) {
+    long now = System.nanoTime();
+    reports++;
+    if (firstReportNanos < 0) {
+      firstReportNanos = now;
+      firstAmount = amountDone;
+    }
+    boolean done = amountDone >= amountTotal;
+    if (done && (transferDoneNanos < 0)) transferDoneNanos = now;
+    double percent = amountTotal > 0 ? 100.0 * amountDone / amountTotal : 0;
+    boolean send = (sent == 0) || done || (canCancel != lastCanCancel) || (now - lastSentNanos >= intervalNanos)
+                   || ((stepPercent > 0) && (percent - lastSentPercent >= stepPercent));
+    if (!send || ((lastSentPercent == percent) && (canCancel == lastCanCancel))) return;
+    lastSentNanos = now;
+    lastSentPercent = percent;
+    lastCanCancel = canCancel;
+    sent++;
+    try {
+      JSONObject d = new JSONObject();
+      d.put("amountDone", amountDone);
+      d.put("amountTotal", amountTotal);
+      d.put("canCancel", canCancel);
+      d.put("percent", percent);
+      double seconds = (now - firstReportNanos) / 1e9;
+      double rate = seconds > 0 ? (amountDone - firstAmount) / seconds : 0;
+      d.put("amountPerSecond", Math.round(rate));
+      d.put("etaMSec", rate > 0 ? Math.round(1000 * (amountTotal - amountDone) / rate) : -1);
+      PluginResult pluginResult = new PluginResult(Status.OK, d);
+      pluginResult.setKeepCallback(true);
+      callbackContext.sendPluginResult(pluginResult);
+    } catch (JSONException ex) {
+      Log.e(PluginLog.TAG, "firmwareUpdateProgress", ex);
+    }
+  }
+
+  synchronized void completed(boolean success, int seconds) {
+    long now = System.nanoTime();
+    try {
+      JSONObject d = new JSONObject();
+      d.put("success", success);
+      d.put("seconds", seconds);
+      JSONObject timing = new JSONObject();
+      long transferStart = firstReportNanos >= 0 ? firstReportNanos : now;
+      long transferEnd = transferDoneNanos >= 0 ? transferDoneNanos : now;
+      timing.put("prepareMSec", toMSec(transferStart - startNanos));
+      timing.put("transferMSec", toMSec(transferEnd - transferStart));
+      timing.put("verifyMSec", toMSec(now - transferEnd));
+      timing.put("totalMSec", toMSec(now - startNanos));
+      timing.put("progressReports", reports);
+      timing.put("progressSent", sent);
+      d.put("timing", timing);
+      Log.i(PluginLog.TAG, "firmwareUpdateCompleted: success=" + success + " " + timing);
+      callbackContext.sendPluginResult(new PluginResult(Status.OK, d));
+    } catch (JSONException ex) {
+      Log.e(PluginLog.TAG, "firmwareUpdateCompleted", ex);
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+/**
+ * Table driven hex encoding and decoding for EPCs, memory banks and command data.
+ * Encoding writes into a per-thread char buffer, so the only allocation is the
+ * resulting String. Decoding is strict: odd lengths and anything other than
+ * 0-9, a-f and A-F are rejected.
+ */
+final class HexCodec
+{
+  private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+  // two hex digits for every byte value: chars 2*b and 2*b+1
+  private static final char[] BYTE_TO_CHARS = new char[512];
+
+  // nibble value of every char below 128, -1 if not a hex digit
+  private static final byte[] CHAR_TO_NIBBLE = new byte[128];
+
+  private static final int INITIAL_BUFFER_LENGTH = 256;
+
+  private static final ThreadLocal<char[]> BUFFER = new ThreadLocal<char[]>() {
+    @Override
+    protected char[] initialValue() {
+      return new char[INITIAL_BUFFER_LENGTH];
+    }
+  };
+
+  static {
+    for (int b = 0; b < 256; b++) {
+      BYTE_TO_CHARS[b*2] = DIGITS[b >>> 4];
+      BYTE_TO_CHARS[b*2 + 1] = DIGITS[b & 0xf];
+    }
+    java.util.Arrays.fill(CHAR_TO_NIBBLE, (byte) -1);
+    for (int i = 0; i < 10; i++) CHAR_TO_NIBBLE['0' + i] = (byte) i;
+    for (int i = 0; i < 6; i++) {
+      CHAR_TO_NIBBLE['a' + i] = (byte) (10 + i);
+      CHAR_TO_NIBBLE['A' + i] = (byte) (10 + i);
+    }
+  }
+
+  private HexCodec() {
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////
+  // Encoding
+  ///////////////////////////////////////////////////////////////////////////////////////
+
+  private static char[] buffer(int length) {
+    char[] buffer = BUFFER.get();
+    if (buffer.length < length) {
+      buffer = new char[Math.max(length, buffer.length * 2)];
+      BUFFER.set(buffer);
+    }
+    return buffer;
+  }
+
+  private static void encodeInto(byte[] ba, int offset, int length, char[] buffer) {
+    for (int i = 0; i < length; i++) {
+      int b = (ba[offset + i] & 0xff) << 1;
+      buffer[i*2] = BYTE_TO_CHARS[b];
+      buffer[i*2 + 1] = BYTE_TO_CHARS[b + 1];
+    }
+  }
+
+  /**
+   * Lower case hex string for a byte array, or null for null
+   */
+  static String encode(byte[] ba) {
+    if (ba == null) return null;
+    return encode(ba, 0, ba.length);
+  }
+
+  static String encode(byte[] ba, int offset, int length) {
+    char[] buffer = buffer(length * 2);
+    encodeInto(ba, offset, length, buffer);
+    return new String(buffer, 0, length * 2);
+  }
+
+  /**
+   * Encode many byte arrays at once (such as the memory banks of a batch of tags),
+   * sizing the buffer once for the longest. Null arrays give null strings.
+   *
+   * @param in Byte arrays to encode
+   * @param out Receives the hex strings, must be at least as long as in
+   */
+  static void encode(byte[][] in, String[] out) {
+    int maxLength = 0;
+    for (byte[] ba : in) {
+      if ((ba != null) && (ba.length > maxLength)) maxLength = ba.length;
+    }
+    char[] buffer = buffer(maxLength * 2);
+    for (int i = 0; i < in.length; i++) {
+      byte[] ba = in[i];
+      if (ba == null) {
+        out[i] = null;
+      } else {
+        encodeInto(ba, 0, ba.length, buffer);
+        out[i] = new String(buffer, 0, ba.length * 2);
+      }
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////
+  // Decoding
+  ///////////////////////////////////////////////////////////////////////////////////////
+
+  private static int nibble(char c) {
+    return c < 128 ? CHAR_TO_NIBBLE[c] : -1;
+  }
+
+  /**
+   * Decode into an existing array
+   *
+   * @param s Hex string
+   * @param ba Receives the bytes
+   * @param offset Where in ba to start
+   * @return Number of bytes decoded, or -1 if s is not valid hex or does not fit
+   */
+  static int decode(CharSequence s, byte[] ba, int offset) {
+    int n = s.length();
+    if (((n & 1) != 0) || ((n / 2) > (ba.length - offset))) return -1;
+    for (int i = 0; i < n; i += 2) {
+      int high = nibble(s.charAt(i));
+      int low = nibble(s.charAt(i + 1));
+      if ((high | low) < 0) return -1;
+      ba[offset + i/2] = (byte) ((high << 4) | low);
+    }
+    return n / 2;
+  }
+
+  /**
+   * Bytes for a hex string, or null if s is null or not valid hex
+   */
+  static byte[] decode(CharSequence s) {
+    if ((s == null) || ((s.length() & 1) != 0)) return null;
+    byte[] ba = new byte[s.length() / 2];
+    return decode(s, ba, 0) >= 0 ? ba : null;
+  }
+
+  /**
+   * True if s is an even length string of hex digits
+   */
+  static boolean isValid(CharSequence s) {
+    int n = s.length();
+    if ((n & 1) != 0) return false;
+    for (int i = 0; i < n; i++) {
+      if (nibble(s.charAt(i)) < 0) return false;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,436 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+import com.ugrokit.api.*;
+
+/**
+ * Inventory actions: start, stop, pause, resume, change power, event flow control and statistics
+ */
+class InventoryActions
+{
+  static void register(UGrokIt plugin) {
+    //
+    // startInventory (id, config values or handle, epcs, epcsAreIgnoreList, handler flags..., options)
+    //
+    plugin.registerAction("startInventory", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        //
+        // config: values, or the handle of a registered configuration
+        //
+        final UgiRfidConfiguration config;
+        JSONArray configValues = args.optJSONArray(1);
+        if (configValues != null) {
+          config = RfidConfigCodec.fromValues(configValues);
+        } else {
+          config = plugin.rfidConfigs.get(args.getInt(1));
+          if (config == null) {
+            callbackContext.error("startInventory called with unknown configuration");
+            return;
+          }
+        }
+        JSONObject options = args.optJSONObject(9);
+        EpcSet epcSet = null;
+        if ((options != null) && options.has("epcSet")) {
+          epcSet = plugin.epcSets.get(options.getInt("epcSet"));
+          if (epcSet == null) {
+            callbackContext.error("startInventory called with unknown epcSet");
+            return;
+          }
+        }
+        if ((options != null) && options.has("expectedEpcSet") && !plugin.epcSets.containsKey(options.getInt("expectedEpcSet"))) {
+          callbackContext.error("startInventory called with unknown expectedEpcSet");
+          return;
+        }
+        InventoryReconciliation reconciliation = InventoryReconciliation.fromOptions(options, plugin.epcSets);
+        int fields = TagTable.fieldsFromOptions(options);
+        LocateEngine locate = LocateEngine.fromOptions(options);
+        //
+        // epcs
+        //
+        ArrayList<UgiEpc> epcList = null;
+        JSONArray ja = args.optJSONArray(2);
+        if (epcSet != null) {
+          epcList = epcSet.toList();
+        } else if (ja != null) {
+          epcList = new ArrayList<UgiEpc>(ja.length());
+          for (int i = 0; i < ja.length(); i++) {
+            String s = ja.getString(i);
+            UgiEpc epc = new UgiEpc(s);
+            epcList.add(epc);
+          }
+        }
+        final ArrayList<UgiEpc> epcs = epcList;
+        final boolean epcsAreIgnoreList = args.optBoolean(3);
+        //
+        // journal and snapshot names (they are opened last, once nothing else can fail)
+        //
+        File journalDir = null;
+        if ((options != null) && options.has("journal")) {
+          journalDir = JournalActions.directory(plugin, options.getString("journal"));
+          if (journalDir == null) {
+            callbackContext.error("startInventory called with an invalid journal name");
+            return;
+          }
+        }
+        File snapshotFile = null;
+        if ((options != null) && options.has("snapshot")) {
+          snapshotFile = SnapshotActions.file(plugin, options.getString("snapshot"));
+          if (snapshotFile == null) {
+            callbackContext.error("startInventory: snapshot: invalid snapshot name");
+            return;
+          }
+        }
+        String idForMap = args.getString(0);
+        final InventoryInfo inventoryInfo = new InventoryInfo(plugin.inventoryInfos);
+        inventoryInfo.locate = locate;
+        inventoryInfo.reconciliation = reconciliation;
+        inventoryInfo.history = InventoryHistory.fromOptions(options, config);
+        inventoryInfo.idForMap = idForMap;
+        inventoryInfo.inventoryCallbackContext = callbackContext;
+        inventoryInfo.fileExecutor = plugin.actionExecutor();
+        inventoryInfo.sdkExecutor = plugin.uiThreadExecutor();
+        //
+        // Booleans for whether certain handlers exist
+        //
+        inventoryInfo.handlesUgiInventoryTagChanged = args.optBoolean(4);
+        inventoryInfo.handlesUgiInventoryTagFound = args.optBoolean(5);
+        inventoryInfo.handlesUgiInventoryTagSubsequentFinds = args.optBoolean(6);
+        inventoryInfo.handlesUgiInventoryHistoryInterval = args.optBoolean(8);
+        //
+        // Options
+        //
+        inventoryInfo.tagTable = TagTable.fromOptions(options);
+        inventoryInfo.tagStats = TagStats.fromOptions(options);
+        inventoryInfo.eventQueue = InventoryEventQueue.fromOptions(options, callbackContext, plugin.scheduler, inventoryInfo.tagTable);
+        inventoryInfo.binary = (options != null) && options.optBoolean("binary");
+        inventoryInfo.fields = fields;
+        inventoryInfo.compactPerRead = inventoryInfo.binary && options.optBoolean("compactPerRead");
+        int statsIntervalMSec = (inventoryInfo.tagStats != null) ? options.optInt("statsIntervalMSec", 0) : 0;
+        //
+        // journal and snapshot
+        //
+        if (journalDir != null) {
+          try {
+            inventoryInfo.journal = InventoryJournal.open(journalDir, options.optInt("journalSegmentRecords", 0),
+                                                          options.optInt("journalMaxSegments", 0), plugin.actionExecutor());
+          } catch (IOException ex) {
+            Log.e(UGrokIt.TAG, "startInventory: journal", ex);
+            callbackContext.error("startInventory: journal: " + ex.getMessage());
+            return;
+          }
+        }
+        if (snapshotFile != null) {
+          try {
+            inventoryInfo.snapshot = InventorySnapshot.open(snapshotFile, options.optBoolean("resumeFromSnapshot"),
+                                                            options.optInt("snapshotIntervalMSec", 0));
+          } catch (IOException ex) {
+            Log.e(UGrokIt.TAG, "startInventory: snapshot", ex);
+            inventoryInfo.discard();
+            callbackContext.error("startInventory: snapshot: " + ex.getMessage());
+            return;
+          }
+        }
+        //
+        // Start: the SDK on the UI thread, ahead of any SDK call made for this inventory
+        //
+        plugin.inventoryInfos.put(idForMap, inventoryInfo);
+        try {
+          if (statsIntervalMSec > 0) inventoryInfo.scheduleStats(plugin.scheduler, statsIntervalMSec);
+          if (locate != null) inventoryInfo.scheduleLocate(plugin.scheduler);
+          if ((reconciliation != null) && (reconciliation.intervalMSec > 0)) inventoryInfo.scheduleReconcile(plugin.scheduler);
+          if (inventoryInfo.snapshot != null) {
+            inventoryInfo.sendResumed();
+            inventoryInfo.scheduleSnapshot(plugin.scheduler);
+          }
+        } catch (RuntimeException ex) {
+          Log.e(UGrokIt.TAG, "startInventory", ex);
+          inventoryInfo.discard();
+          callbackContext.error("startInventory: " + ex.getMessage());
+          return;
+        }
+        inventoryInfo.sdkExecutor.execute(new Runnable() {
+          public void run() {
+            try {
+              Ugi ugi = UGrokIt.ugi;
+              if (epcs != null) {
+                if (epcsAreIgnoreList) {
+                  inventoryInfo.inventory = ugi.startInventoryIgnoringEpcs(inventoryInfo, config, epcs);
+                } else {
+                  inventoryInfo.inventory = ugi.startInventory(inventoryInfo, config, epcs);
+                }
+              } else {
+                inventoryInfo.inventory = ugi.startInventory(inventoryInfo, config);
+              }
+            } catch (RuntimeException ex) {
+              Log.e(UGrokIt.TAG, "startInventory", ex);
+              inventoryInfo.discard();
+              callbackContext.error("startInventory: " + ex.getMessage());
+            }
+          }
+        });
+      }
+    });
+    //
+    // stopInventory (id)
+    //
+    plugin.registerAction("stopInventory", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        boolean stopping = (inventoryInfo != null) && inventoryInfo.stop(new UgiInventory.StopInventoryCompletion() {
+          @Override
+          public void exec() {
+            callbackContext.success();
+          }
+        });
+        if (!stopping) {
+          callbackContext.error("stopInventory called with no active inventory");
+        }
+      }
+    });
+    //
+    // pauseInventory (id)
+    //
+    plugin.registerAction("pauseInventory", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        if ((inventoryInfo != null) && inventoryInfo.pause()) {
+          callbackContext.success();
+        } else {
+          callbackContext.error("pauseInventory called with no active inventory");
+        }
+      }
+    });
+    //
+    // resumeInventory (id)
+    //
+    plugin.registerAction("resumeInventory", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        if ((inventoryInfo != null) && inventoryInfo.resume()) {
+          callbackContext.success();
+        } else {
+          callbackContext.error("resumeInventory called with no active inventory");
+        }
+      }
+    });
+    //
+    // ackInventoryEvents (id, count)
+    //
+    plugin.registerAction("ackInventoryEvents", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        if ((inventoryInfo != null) && (inventoryInfo.eventQueue != null)) {
+          inventoryInfo.eventQueue.ack(args.optInt(1, 1));
+        }
+        // an ack for a finished inventory is not an error, there is just nothing left to send
+        callbackContext.success();
+      }
+    });
+    //
+    // getEventQueueStats (id)
+    //
+    plugin.registerAction("getEventQueueStats", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        if (inventoryInfo == null) {
+          callbackContext.error("getEventQueueStats called with no active inventory");
+        } else if (inventoryInfo.eventQueue == null) {
+          callbackContext.success(new JSONObject());
+        } else {
+          callbackContext.success(inventoryInfo.eventQueue.statsToJson());
+        }
+      }
+    });
+    //
+    // getInventoryStats (id, reset)
+    //
+    plugin.registerAction("getInventoryStats", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        if (inventoryInfo == null) {
+          callbackContext.error("getInventoryStats called with no active inventory");
+        } else if (inventoryInfo.tagStats == null) {
+          callbackContext.error("getInventoryStats called without the stats option");
+        } else {
+          callbackContext.success(inventoryInfo.tagStats.toJson(false, args.optBoolean(1)));
+        }
+      }
+    });
+    //
+    // getTagDetails (id, epc)
+    //
+    plugin.registerAction("getTagDetails", new ActionHandler() {
+      public void execute(final UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        if (inventoryInfo == null) {
+          callbackContext.error("getTagDetails called with no active inventory");
+          return;
+        }
+        byte[] epcBytes = HexCodec.decode(args.getString(1));
+        if ((epcBytes == null) || (epcBytes.length == 0)) {
+          callbackContext.success(new JSONObject());
+          return;
+        }
+        final UgiEpc epc = new UgiEpc(epcBytes);
+        inventoryInfo.withInventory("getTagDetails", callbackContext, new InventoryInfo.InventoryCall() {
+          public void call(UgiInventory inventory) {
+            final UgiTag tag = inventory.getTagByEpc(epc);
+            final UgiTagReadState readState = tag != null ? tag.getTagReadState() : null;
+            plugin.actionExecutor().execute(new Runnable() {
+              public void run() {
+                try {
+                  JSONObject d = new JSONObject();
+                  if (tag != null) TagJson.tagToJson(d, tag, readState);
+                  callbackContext.success(d);
+                } catch (JSONException ex) {
+                  Log.e(UGrokIt.TAG, "getTagDetails", ex);
+                  callbackContext.error("getTagDetails: " + ex.getMessage());
+                }
+              }
+            });
+          }
+        });
+      }
+    });
+    //
+    // getHistory (id, points, windowMSec)
+    //
+    plugin.registerAction("getHistory", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        if (inventoryInfo == null) {
+          callbackContext.error("getHistory called with no active inventory");
+        } else if (inventoryInfo.history == null) {
+          callbackContext.error("getHistory called without the history option");
+        } else {
+          callbackContext.success(inventoryInfo.history.toJson(args.getInt(1), args.optLong(2, 0)));
+        }
+      }
+    });
+    //
+    // getReconciliation (id, withEpcs)
+    //
+    plugin.registerAction("getReconciliation", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        if (inventoryInfo == null) {
+          callbackContext.error("getReconciliation called with no active inventory");
+        } else if (inventoryInfo.reconciliation == null) {
+          callbackContext.error("getReconciliation called without the expected option");
+        } else {
+          callbackContext.success(inventoryInfo.reconciliation.report(args.optBoolean(1)));
+        }
+      }
+    });
+    //
+    // setLocateTargets (id, epcs)
+    //
+    plugin.registerAction("setLocateTargets", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        if (inventoryInfo == null) {
+          callbackContext.error("setLocateTargets called with no active inventory");
+        } else if (inventoryInfo.locate == null) {
+          JSONObject options = new JSONObject();
+          options.put("locate", args.getJSONArray(1));
+          inventoryInfo.locate = new LocateEngine(options);
+          inventoryInfo.scheduleLocate(plugin.scheduler);
+          callbackContext.success();
+        } else {
+          inventoryInfo.locate.setTargets(args.getJSONArray(1));
+          callbackContext.success();
+        }
+      }
+    });
+    //
+    // subscribeInventory (id, subscriptionId, options)
+    //
+    plugin.registerAction("subscribeInventory", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        InventorySubscribers.Subscriber subscriber =
+                new InventorySubscribers.Subscriber(args.getString(1), args.optJSONObject(2), callbackContext, plugin.scheduler);
+        if ((inventoryInfo == null) || !inventoryInfo.subscribers.add(subscriber)) {
+          callbackContext.error("subscribeInventory called with no active inventory");
+        }
+      }
+    });
+    //
+    // unsubscribeInventory (id, subscriptionId)
+    //
+    plugin.registerAction("unsubscribeInventory", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        InventorySubscribers.Subscriber subscriber =
+                inventoryInfo != null ? inventoryInfo.subscribers.remove(args.getString(1)) : null;
+        if (subscriber == null) {
+          callbackContext.error("unsubscribeInventory called with no such subscription");
+          return;
+        }
+        JSONObject d = new JSONObject();
+        d.put("_cb", "unsubscribed");
+        subscriber.close(new PluginResult(PluginResult.Status.OK, d));
+        callbackContext.success(subscriber.statsToJson());
+      }
+    });
+    //
+    // changePower (id, initialPowerLevel, minPowerLevel, maxPowerLevel)
+    //
+    plugin.registerAction("changePower", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        if (inventoryInfo != null) {
+          final double initialPowerLevel = args.getDouble(1);
+          final double minPowerLevel = args.getDouble(2);
+          final double maxPowerLevel = args.getDouble(3);
+          inventoryInfo.withInventory("changePower", callbackContext, new InventoryInfo.InventoryCall() {
+            public void call(UgiInventory inventory) {
+              inventory.changePower(initialPowerLevel, minPowerLevel, maxPowerLevel, new UgiInventory.ChangePowerCompletion() {
+                @Override
+                public void exec(boolean success) {
+                  try {
+                    JSONObject d = new JSONObject();
+                    d.put("success", success);
+                    callbackContext.success(d);
+                  } catch (JSONException ex) {
+                    Log.e(UGrokIt.TAG, "changePower callback", ex);
+                  }
+                }
+              });
+            }
+          });
+        } else {
+          callbackContext.error("changePower called with no active inventory");
+        }
+      }
+    });
+  }
+}
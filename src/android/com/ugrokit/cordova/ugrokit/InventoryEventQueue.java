@@ -0,0 +1,360 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.apache.cordova.PluginResult.Status;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+import com.ugrokit.api.*;
+
+/**
+ * Collects the tag events of one inventory and sends them to JavaScript as a single
+ * "batch" result (or one binary message, see TagEventEncoder), either when the batch
+ * window expires or when the batch is full.
+ * Non-tag results go through send() so they are never delivered ahead of queued tag events.
+ *
+ * With flow control (startInventory option maxInFlight) at most maxInFlight messages are
+ * sent that JavaScript has not acknowledged (ack()), and events wait here instead of in
+ * Cordova's unbounded message queue. At most maxQueuedEvents tag events wait; past that
+ * the oldest tag event is dropped (there is no waiting for room: events arrive on the UI
+ * thread, which the acks need too). With the coalesce policy an event is merged into a
+ * waiting event of the same type for the same tag, in its place (counts are added, the
+ * newest read state and per-read data are kept), so only the latest state is sent and a
+ * tag never has more than one event of a type waiting.
+ */
+class InventoryEventQueue
+{
+  static final int RESULT = 0;
+  static final int TAG_CHANGED = 1;
+  static final int TAG_FOUND = 2;
+  static final int TAG_SUBSEQUENT_FINDS = 3;
+
+  static final int DEFAULT_MAX_EVENTS = 100;
+  static final int DEFAULT_MAX_QUEUED_EVENTS = 1000;
+
+  static final int OVERFLOW_DROP_OLDEST = 0;
+  static final int OVERFLOW_COALESCE = 1;
+
+  /**
+   * One tag event. The read state is captured when the event happens since the
+   * UgiTag keeps changing until the batch is sent.
+   * A non-tag result waiting behind tag events is queued as a RESULT event.
+   */
+  static class Event {
+    int type;
+    UgiTag tag;
+    UgiTagReadState readState;
+    boolean firstFind;
+    int count;
+    UgiInventory.DetailedPerReadData details[];
+    int fields = TagTable.ALL_FIELDS;
+    boolean compactPerRead;
+    long receivedNanos;
+    PluginResult result;
+
+    Event(int type, UgiTag tag, boolean firstFind, int count, UgiInventory.DetailedPerReadData details[]) {
+      this.type = type;
+      this.tag = tag;
+      this.readState = tag.getTagReadState();
+      this.firstFind = firstFind;
+      this.count = count;
+      this.details = details;
+      this.receivedNanos = System.nanoTime();
+    }
+
+    Event(PluginResult result) {
+      this.type = RESULT;
+      this.result = result;
+    }
+  }
+
+  private final CallbackContext callbackContext;
+  private final ScheduledExecutorService scheduler;
+  private final int intervalMSec;
+  private final int maxEvents;
+  private final boolean binary;
+  private final TagTable tagTable;
+
+  // flow control, see setFlowControl()
+  private boolean immediate;
+  private int maxInFlight;
+  private int maxQueuedEvents = Integer.MAX_VALUE;
+  private HashMap<UgiEpc, Event> pendingByEpc;
+
+  // events in order
+  private final ArrayDeque<Event> pending = new ArrayDeque<Event>();
+  private int queuedEvents;
+  private int inFlight;
+  private boolean flushWhenAcked;
+  private ScheduledFuture<?> scheduledFlush;
+  private boolean closed;
+  private boolean finalSent;
+
+  // statistics
+  private int maxDepth;
+  private long eventsQueued;
+  private long eventsSent;
+  private long eventsCoalesced;
+  private long eventsDropped;
+  private long messages;
+
+  private final Runnable flushRunnable = new Runnable() {
+    public void run() {
+      flush();
+    }
+  };
+
+  InventoryEventQueue(CallbackContext callbackContext, ScheduledExecutorService scheduler, int intervalMSec, int maxEvents, boolean binary,
+                      TagTable tagTable) {
+    this.callbackContext = callbackContext;
+    this.scheduler = scheduler;
+    this.intervalMSec = intervalMSec;
+    this.maxEvents = maxEvents > 0 ? maxEvents : DEFAULT_MAX_EVENTS;
+    this.binary = binary;
+    this.tagTable = tagTable;
+  }
+
+  /**
+   * Create a queue from the startInventory options, or return null if neither batching
+   * nor flow control was requested
+   */
+  static InventoryEventQueue fromOptions(JSONObject options, CallbackContext callbackContext, ScheduledExecutorService scheduler,
+                                         TagTable tagTable) {
+    if (options == null) return null;
+    int intervalMSec = options.optInt("batchIntervalMSec", 0);
+    int maxEvents = options.optInt("batchMaxEvents", 0);
+    int maxInFlight = options.optInt("maxInFlight", 0);
+    if ((intervalMSec <= 0) && (maxEvents <= 0) && (maxInFlight <= 0)) return null;
+    InventoryEventQueue queue = new InventoryEventQueue(callbackContext, scheduler, intervalMSec, maxEvents, options.optBoolean("binary"),
+                                                        tagTable);
+    String overflow = options.optString("overflow", "dropOldest");
+    queue.setFlowControl((intervalMSec <= 0) && (maxEvents <= 0),
+                         maxInFlight,
+                         options.optInt("queueMaxEvents", maxInFlight > 0 ? DEFAULT_MAX_QUEUED_EVENTS : Integer.MAX_VALUE),
+                         overflow.equals("coalesce") ? OVERFLOW_COALESCE : OVERFLOW_DROP_OLDEST);
+    return queue;
+  }
+
+  /**
+   * @param immediate True to send events as soon as possible rather than batching them
+   * @param maxInFlight Maximum number of messages sent but not acknowledged, 0 for no limit
+   * @param maxQueuedEvents Maximum number of tag events waiting to be sent
+   * @param overflow OVERFLOW_COALESCE to merge events for the same tag, or OVERFLOW_DROP_OLDEST
+   */
+  synchronized void setFlowControl(boolean immediate, int maxInFlight, int maxQueuedEvents, int overflow) {
+    this.immediate = immediate;
+    this.maxInFlight = Math.max(maxInFlight, 0);
+    this.maxQueuedEvents = Math.max(maxQueuedEvents, 1);
+    this.pendingByEpc = overflow == OVERFLOW_COALESCE ? new HashMap<UgiEpc, Event>() : null;
+  }
+
+  synchronized void add(Event event) {
+    if (closed) return;
+    eventsQueued++;
+    if ((pendingByEpc != null) && coalesce(event)) return;
+    if (queuedEvents >= maxQueuedEvents) dropOldest();
+    pending.add(event);
+    queuedEvents++;
+    if (queuedEvents > maxDepth) maxDepth = queuedEvents;
+    if (pendingByEpc != null) pendingByEpc.put(event.tag.getEpc(), event);
+    if (immediate || (queuedEvents >= maxEvents)) {
+      flush();
+    } else if ((scheduledFlush == null) && (intervalMSec > 0)) {
+      scheduledFlush = scheduler.schedule(flushRunnable, intervalMSec, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Merge this event into a waiting event of the same type for the same tag
+   *
+   * @return False if there is none, and the event has to be queued
+   */
+  private boolean coalesce(Event event) {
+    Event previous = pendingByEpc.get(event.tag.getEpc());
+    if ((previous == null) || (previous.type != event.type)) return false;
+    eventsCoalesced++;
+    previous.tag = event.tag;
+    previous.readState = event.readState;
+    previous.firstFind |= event.firstFind;
+    previous.count += event.count;
+    previous.details = event.details;
+    return true;
+  }
+
+  private void dropOldest() {
+    for (Iterator<Event> it = pending.iterator(); it.hasNext(); ) {
+      Event event = it.next();
+      if (event.type == RESULT) continue;
+      it.remove();
+      forget(event);
+      eventsDropped++;
+      return;
+    }
+  }
+
+  private void forget(Event event) {
+    queuedEvents--;
+    if ((pendingByEpc != null) && (pendingByEpc.get(event.tag.getEpc()) == event)) pendingByEpc.remove(event.tag.getEpc());
+  }
+
+  /**
+   * Send everything queued so far, as far as flow control allows
+   */
+  synchronized void flush() {
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    flushWhenAcked = false;
+    Event event;
+    while ((event = pending.peek()) != null) {
+      if ((maxInFlight > 0) && (inFlight >= maxInFlight)) {
+        flushWhenAcked = true;
+        break;
+      }
+      if (event.type == RESULT) {
+        pending.poll();
+        sendMessage(event.result);
+      } else {
+        ArrayList<Event> events = new ArrayList<Event>(Math.min(queuedEvents, maxEvents));
+        while ((events.size() < maxEvents) && ((event = pending.peek()) != null) && (event.type != RESULT)) {
+          pending.poll();
+          forget(event);
+          events.add(event);
+        }
+        sendEvents(events);
+      }
+    }
+  }
+
+  private void sendEvents(ArrayList<Event> events) {
+    eventsSent += events.size();
+    if (tagTable != null) {
+      for (Event event : events) {
+        event.fields &= tagTable.update(event.tag, event.readState);
+      }
+    }
+    long start = System.nanoTime();
+    PluginResult pluginResult;
+    if (binary) {
+      pluginResult = new PluginResult(Status.OK, TagEventEncoder.encode(events));
+    } else {
+      try {
+        JSONArray a = new JSONArray();
+        for (Event event : events) {
+          a.put(toJson(event));
+        }
+        JSONObject d = new JSONObject();
+        d.put("_cb", "batch");
+        d.put("events", a);
+        pluginResult = new PluginResult(Status.OK, d);
+      } catch (JSONException ex) {
+        Log.e(PluginLog.TAG, "InventoryEventQueue.flush", ex);
+        return;
+      }
+    }
+    BridgeMetrics metrics = BridgeMetrics.instance;
+    metrics.serialized(System.nanoTime() - start);
+    pluginResult.setKeepCallback(true);
+    sendMessage(pluginResult);
+    metrics.sent(BridgeMetrics.BATCH, events.size(), pluginResult);
+    for (Event event : events) metrics.delivered(event.receivedNanos);
+  }
+
+  private void sendMessage(PluginResult pluginResult) {
+    // nothing goes after the final result, Cordova would drop it anyway
+    if (finalSent) return;
+    finalSent = !pluginResult.getKeepCallback();
+    messages++;
+    inFlight++;
+    callbackContext.sendPluginResult(pluginResult);
+  }
+
+  /**
+   * Send a non-tag result after everything queued so far
+   */
+  synchronized void send(PluginResult pluginResult) {
+    pending.add(new Event(pluginResult));
+    flush();
+  }
+
+  /**
+   * JavaScript has handled this many messages
+   */
+  synchronized void ack(int count) {
+    inFlight = Math.max(inFlight - count, 0);
+    if (flushWhenAcked) flush();
+  }
+
+  /**
+   * Flush and stop accepting events (inventory is finished). Everything waiting is sent
+   * without waiting for acks, since the finished inventory is no longer there to get them.
+   */
+  synchronized void close() {
+    maxInFlight = 0;
+    flush();
+    closed = true;
+  }
+
+  synchronized JSONObject statsToJson() throws JSONException {
+    JSONObject d = new JSONObject();
+    d.put("depth", queuedEvents);
+    d.put("maxDepth", maxDepth);
+    d.put("inFlight", maxInFlight > 0 ? inFlight : 0);
+    d.put("queued", eventsQueued);
+    d.put("sent", eventsSent);
+    d.put("coalesced", eventsCoalesced);
+    d.put("dropped", eventsDropped);
+    d.put("messages", messages);
+    return d;
+  }
+
+  static JSONObject toJson(Event event) throws JSONException {
+    JSONObject d = new JSONObject();
+    switch (event.type) {
+      case TAG_CHANGED:
+        d.put("_cb", "tagChanged");
+        d.put("firstFind", event.firstFind);
+        TagJson.tagToJson(d, event.tag, event.readState, event.fields);
+        break;
+      case TAG_FOUND:
+        d.put("_cb", "tagFound");
+        TagJson.tagToJson(d, event.tag, event.readState, event.fields);
+        TagJson.detailsToJson(d, event.details);
+        break;
+      case TAG_SUBSEQUENT_FINDS:
+        d.put("_cb", "tagSubsequentFinds");
+        d.put("count", event.count);
+        TagJson.tagToJson(d, event.tag, event.readState, event.fields);
+        TagJson.detailsToJson(d, event.details);
+        break;
+    }
+    return d;
+  }
+}
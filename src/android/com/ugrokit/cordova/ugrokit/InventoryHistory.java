@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.util.*;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.ugrokit.api.*;
+
+/**
+ * Time series of an inventory (startInventory option history): for each history interval
+ * the number of reads, of tags found for the first time and the most tags visible at once,
+ * in a ring of primitive arrays. Intervals are aligned to multiples of intervalMSec since
+ * the epoch, the ring is advanced as events arrive and when it is looked at, so intervals
+ * with no reads are there too. getHistory downsamples any window to a number of points.
+ */
+class InventoryHistory
+{
+  static final int DEFAULT_INTERVAL_MSEC = 500;
+  static final long DEFAULT_DURATION_MSEC = 60 * 60 * 1000;
+
+  final int intervalMSec;
+  private final int capacity;
+  private final int[] reads;
+  private final int[] newTags;
+  private final int[] visibleTags;
+  // intervals since the epoch of the first and most recent samples
+  private final long first;
+  private long current;
+
+  private final HashSet<UgiEpc> visible = new HashSet<UgiEpc>();
+
+  /**
+   * @param intervalMSec Interval length, the inventory's history interval
+   * @param capacity Intervals kept
+   */
+  InventoryHistory(int intervalMSec, int capacity) {
+    this.intervalMSec = intervalMSec > 0 ? intervalMSec : DEFAULT_INTERVAL_MSEC;
+    this.capacity = Math.max(capacity, 1);
+    reads = new int[this.capacity];
+    newTags = new int[this.capacity];
+    visibleTags = new int[this.capacity];
+    first = current = System.currentTimeMillis() / this.intervalMSec;
+  }
+
+  /**
+   * @param options startInventory options: history, historyCapacity (intervals, default an
+   *                hour's worth and at least historyDepth)
+   * @param config The inventory's configuration, for the history interval and depth
+   * @return The history, or null if the history option is not set
+   */
+  static InventoryHistory fromOptions(JSONObject options, UgiRfidConfiguration config) {
+    if ((options == null) || !options.optBoolean("history")) return null;
+    int intervalMSec = config.getHistoryIntervalMSec() > 0 ? config.getHistoryIntervalMSec() : DEFAULT_INTERVAL_MSEC;
+    int capacity = options.optInt("historyCapacity", (int) (DEFAULT_DURATION_MSEC / intervalMSec));
+    return new InventoryHistory(intervalMSec, Math.max(capacity, config.getHistoryDepth()));
+  }
+
+  private int slot(long interval) {
+    return (int) (interval % capacity);
+  }
+
+  /**
+   * Move on to the interval for now, starting the intervals skipped with no reads
+   */
+  private void advance(long now) {
+    long interval = now / intervalMSec;
+    if (interval <= current) return;
+    long from = Math.max(current + 1, interval - capacity + 1);
+    for (long i = from; i <= interval; i++) {
+      int slot = slot(i);
+      reads[slot] = 0;
+      newTags[slot] = 0;
+      visibleTags[slot] = visible.size();
+    }
+    current = interval;
+  }
+
+  /**
+   * Reads of a tag, from tagFound (firstFind) or tagSubsequentFinds
+   */
+  synchronized void reads(int count, boolean firstFind) {
+    advance(System.currentTimeMillis());
+    int slot = slot(current);
+    reads[slot] += count;
+    if (firstFind) newTags[slot]++;
+  }
+
+  /**
+   * A tag's visibility may have changed (tagChanged)
+   */
+  synchronized void changed(UgiTag tag) {
+    advance(System.currentTimeMillis());
+    if (tag.getTagReadState().isVisible()) {
+      visible.add(tag.getEpc());
+    } else {
+      visible.remove(tag.getEpc());
+    }
+    int slot = slot(current);
+    visibleTags[slot] = Math.max(visibleTags[slot], visible.size());
+  }
+
+  /**
+   * The last complete interval: {time, reads, newTags, visibleTags}, or null if there is none yet
+   */
+  synchronized JSONObject lastInterval() throws JSONException {
+    advance(System.currentTimeMillis());
+    long interval = current - 1;
+    if (interval < first) return null;
+    int slot = slot(interval);
+    JSONObject d = new JSONObject();
+    d.put("time", interval * intervalMSec);
+    d.put("reads", reads[slot]);
+    d.put("newTags", newTags[slot]);
+    d.put("visibleTags", visibleTags[slot]);
+    return d;
+  }
+
+  /**
+   * The most recent windowMSec (or all that is kept) in at most the given number of points,
+   * as columns. Each point adds up the reads and new tags of its intervals and has the most
+   * tags visible in any of them.
+   *
+   * @return {intervalMSec (per point), time[] (start of each point, ms since epoch), reads[],
+   *         newTags[], visibleTags[]}
+   */
+  synchronized JSONObject toJson(int points, long windowMSec) throws JSONException {
+    advance(System.currentTimeMillis());
+    long oldest = Math.max(first, current - capacity + 1);
+    if (windowMSec > 0) oldest = Math.max(oldest, current - (windowMSec + intervalMSec - 1) / intervalMSec + 1);
+    long intervals = current - oldest + 1;
+    int perPoint = (int) ((intervals + Math.max(points, 1) - 1) / Math.max(points, 1));
+    // align the points to the end, so the newest is complete but for the current interval
+    long start = current + 1 - ((intervals + perPoint - 1) / perPoint) * perPoint;
+    JSONArray time = new JSONArray();
+    JSONArray pointReads = new JSONArray();
+    JSONArray pointNewTags = new JSONArray();
+    JSONArray pointVisibleTags = new JSONArray();
+    for (long p = start; p <= current; p += perPoint) {
+      int r = 0, n = 0, v = 0;
+      for (long i = Math.max(p, oldest); i < p + perPoint; i++) {
+        int slot = slot(i);
+        r += reads[slot];
+        n += newTags[slot];
+        v = Math.max(v, visibleTags[slot]);
+      }
+      time.put(Math.max(p, oldest) * intervalMSec);
+      pointReads.put(r);
+      pointNewTags.put(n);
+      pointVisibleTags.put(v);
+    }
+    JSONObject d = new JSONObject();
+    d.put("intervalMSec", (long) perPoint * intervalMSec);
+    d.put("time", time);
+    d.put("reads", pointReads);
+    d.put("newTags", pointNewTags);
+    d.put("visibleTags", pointVisibleTags);
+    return d;
+  }
+}
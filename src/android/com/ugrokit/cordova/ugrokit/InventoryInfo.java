@@ -0,0 +1,625 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.apache.cordova.PluginResult.Status;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+import com.ugrokit.api.*;
+
+/**
+ * One running inventory: the SDK's delegate, forwarding inventory events to the
+ * JavaScript UgiInventory through its callback.
+ *
+ * Actions (plugin executor thread) and SDK callbacks (UI thread) both change the
+ * lifecycle state, so it is atomic: the final didStop is handled exactly once and
+ * nothing is sent after it (results sent directly go through sendNow(), the event
+ * queue drops what comes after its final result).
+ */
+class InventoryInfo implements UgiInventoryDelegate,
+                               UgiInventoryDelegate.InventoryHistoryIntervalListener,
+                               UgiInventoryDelegate.InventoryTagChangedListener,
+                               UgiInventoryDelegate.InventoryDidStartListener,
+                               UgiInventoryDelegate.InventoryDidStopListener,
+                               UgiInventoryDelegate.InventoryTagFoundListener,
+                               UgiInventoryDelegate.InventoryTagSubsequentFindsListener {
+  static final int STATE_STARTING = 0;
+  static final int STATE_RUNNING = 1;
+  static final int STATE_PAUSED = 2;
+  static final int STATE_STOPPING = 3;
+  static final int STATE_STOPPED = 4;
+
+  /** Runs tasks on the calling thread */
+  static final Executor CALLING_THREAD = new Executor() {
+    public void execute(Runnable runnable) {
+      runnable.run();
+    }
+  };
+
+  private final ConcurrentMap<String, InventoryInfo> inventoryInfos;
+  private final AtomicInteger state = new AtomicInteger(STATE_STARTING);
+  private final Object sendLock = new Object();
+  private boolean finalSent;
+
+  volatile String idForMap;
+  CallbackContext inventoryCallbackContext;
+  InventoryEventQueue eventQueue;
+  TagTable tagTable;
+  TagStats tagStats;
+  volatile InventoryJournal journal;
+  volatile LocateEngine locate;
+  InventoryReconciliation reconciliation;
+  volatile InventorySnapshot snapshot;
+  InventoryHistory history;
+  final InventorySubscribers subscribers = new InventorySubscribers();
+  final Map<String, TagAccessBatch> tagAccessBatches = new ConcurrentHashMap<String, TagAccessBatch>();
+  private volatile ScheduledFuture<?> statsTimer;
+  private volatile ScheduledFuture<?> locateTimer;
+  private volatile ScheduledFuture<?> reconcileTimer;
+  private volatile ScheduledFuture<?> snapshotTimer;
+  boolean binary;
+  int fields = TagTable.ALL_FIELDS;
+  boolean compactPerRead;
+  boolean handlesUgiInventoryTagChanged;
+  boolean handlesUgiInventoryTagFound;
+  boolean handlesUgiInventoryTagSubsequentFinds;
+  boolean handlesUgiInventoryHistoryInterval;
+  volatile UgiInventory inventory;
+  /** Where snapshot writes from SDK callbacks go (the plugin executor), to keep them off the UI thread */
+  Executor fileExecutor = CALLING_THREAD;
+  /** Where the SDK is called (the UI thread); the start is posted there before anything else */
+  Executor sdkExecutor = CALLING_THREAD;
+
+  /**
+   * @param inventoryInfos Active inventories, this removes itself when the inventory finishes
+   */
+  InventoryInfo(ConcurrentMap<String, InventoryInfo> inventoryInfos) {
+    this.inventoryInfos = inventoryInfos;
+  }
+
+  /**
+   * An SDK call made with the running inventory, see withInventory()
+   */
+  interface InventoryCall {
+    void call(UgiInventory inventory);
+  }
+
+  /**
+   * Make an SDK call on sdkExecutor, where the start was posted first, so the inventory is
+   * there by then; if the start failed there is none and the action gets an error instead
+   */
+  void withInventory(final String action, final CallbackContext callbackContext, final InventoryCall call) {
+    sdkExecutor.execute(new Runnable() {
+      public void run() {
+        UgiInventory inventory = InventoryInfo.this.inventory;
+        if (inventory != null) {
+          call.call(inventory);
+        } else {
+          callbackContext.error(action + " called with no active inventory");
+        }
+      }
+    });
+  }
+
+  int getState() {
+    return state.get();
+  }
+
+  boolean isStopped() {
+    return state.get() == STATE_STOPPED;
+  }
+
+  /**
+   * Pause the inventory
+   *
+   * @return False if it is stopping or stopped
+   */
+  boolean pause() {
+    while (true) {
+      int s = state.get();
+      if (s >= STATE_STOPPING) return false;
+      if (s == STATE_PAUSED) return true;
+      if (state.compareAndSet(s, STATE_PAUSED)) break;
+    }
+    sdkExecutor.execute(new Runnable() {
+      public void run() {
+        if (inventory != null) inventory.pauseInventory();
+      }
+    });
+    return true;
+  }
+
+  /**
+   * Resume the inventory if it is paused
+   *
+   * @return False if it is stopping or stopped
+   */
+  boolean resume() {
+    while (true) {
+      int s = state.get();
+      if (s >= STATE_STOPPING) return false;
+      if (s != STATE_PAUSED) return true;
+      if (state.compareAndSet(s, STATE_RUNNING)) break;
+    }
+    sdkExecutor.execute(new Runnable() {
+      public void run() {
+        if (inventory != null) inventory.resumeInventory();
+      }
+    });
+    return true;
+  }
+
+  /**
+   * Undo a start that failed: stop the timers, close the journal and snapshot (so
+   * they are not left in use) and leave the registry. Nothing is sent.
+   */
+  void discard() {
+    state.set(STATE_STOPPED);
+    if (statsTimer != null) statsTimer.cancel(false);
+    if (locateTimer != null) locateTimer.cancel(false);
+    if (reconcileTimer != null) reconcileTimer.cancel(false);
+    if (snapshotTimer != null) snapshotTimer.cancel(false);
+    InventoryJournal journal = this.journal;
+    if (journal != null) journal.close();
+    InventorySnapshot snapshot = this.snapshot;
+    if (snapshot != null) {
+      try {
+        snapshot.close();
+      } catch (IOException ex) {
+        Log.e(PluginLog.TAG, "discard: snapshot", ex);
+      }
+    }
+    if (idForMap != null) inventoryInfos.remove(idForMap, this);
+  }
+
+  /**
+   * Stop the inventory, the completion is called once the SDK has stopped it
+   *
+   * @return False if it has already stopped
+   */
+  boolean stop(final UgiInventory.StopInventoryCompletion completion) {
+    while (true) {
+      int s = state.get();
+      if (s == STATE_STOPPED) return false;
+      if ((s == STATE_STOPPING) || state.compareAndSet(s, STATE_STOPPING)) break;
+    }
+    sdkExecutor.execute(new Runnable() {
+      public void run() {
+        // no inventory if the start failed, then there is nothing to stop
+        if (inventory != null) {
+          inventory.stopInventory(completion);
+        } else {
+          completion.exec();
+        }
+      }
+    });
+    return true;
+  }
+
+  private void deliver(InventoryEventQueue.Event event) {
+    if (eventQueue != null) {
+      eventQueue.add(event);
+      return;
+    }
+    if (tagTable != null) event.fields &= tagTable.update(event.tag, event.readState);
+    try {
+      long start = System.nanoTime();
+      PluginResult pluginResult = binary ? new PluginResult(Status.OK, TagEventEncoder.encode(event))
+                                         : new PluginResult(Status.OK, InventoryEventQueue.toJson(event));
+      BridgeMetrics.instance.serialized(System.nanoTime() - start);
+      pluginResult.setKeepCallback(true);
+      if (!sendNow(pluginResult)) return;
+      BridgeMetrics.instance.sent(event.type, 1, pluginResult);
+      BridgeMetrics.instance.delivered(event.receivedNanos);
+    } catch (JSONException ex) {
+      Log.e(PluginLog.TAG, "deliver: " + event.tag, ex);
+    }
+  }
+
+  private boolean usesEvents() {
+    return (eventQueue != null) || binary || (tagTable != null) || (fields != TagTable.ALL_FIELDS);
+  }
+
+  private InventoryEventQueue.Event event(int type, UgiTag tag, boolean firstFind, int count,
+                                          UgiInventory.DetailedPerReadData details[], long receivedNanos) {
+    InventoryEventQueue.Event event = new InventoryEventQueue.Event(type, tag, firstFind, count, details);
+    event.receivedNanos = receivedNanos;
+    event.fields = fields;
+    event.compactPerRead = compactPerRead;
+    return event;
+  }
+
+  private void send(PluginResult pluginResult) {
+    if (eventQueue != null) {
+      eventQueue.send(pluginResult);
+    } else {
+      sendNow(pluginResult);
+    }
+  }
+
+  /**
+   * Send a result straight to JavaScript, unless the final one has already been sent
+   *
+   * @return False if it was dropped
+   */
+  private boolean sendNow(PluginResult pluginResult) {
+    synchronized (sendLock) {
+      if (finalSent) return false;
+      finalSent = !pluginResult.getKeepCallback();
+      this.inventoryCallbackContext.sendPluginResult(pluginResult);
+      return true;
+    }
+  }
+
+  /**
+   * Send a snapshot of the tags read since the last one every intervalMSec
+   */
+  void scheduleStats(ScheduledExecutorService scheduler, int intervalMSec) {
+    statsTimer = scheduler.scheduleAtFixedRate(new Runnable() {
+      public void run() {
+        if (!isStopped()) sendStats();
+      }
+    }, intervalMSec, intervalMSec, TimeUnit.MILLISECONDS);
+    if (isStopped()) statsTimer.cancel(false);
+  }
+
+  private void sendStats() {
+    try {
+      JSONObject d = tagStats.toJson(true, false);
+      if (d.getJSONArray("tags").length() == 0) return;
+      d.put("_cb", "stats");
+      subscribers.publish(d);
+      PluginResult pluginResult = new PluginResult(Status.OK, d);
+      pluginResult.setKeepCallback(true);
+      send(pluginResult);
+    } catch (JSONException ex) {
+      Log.e(PluginLog.TAG, "sendStats", ex);
+    }
+  }
+
+  /**
+   * Send the proximity of the locate targets locate.rateHz times a second
+   */
+  void scheduleLocate(ScheduledExecutorService scheduler) {
+    long periodUsec = 1000000 / locate.rateHz;
+    locateTimer = scheduler.scheduleAtFixedRate(new Runnable() {
+      public void run() {
+        if (!isStopped()) sendLocate();
+      }
+    }, periodUsec, periodUsec, TimeUnit.MICROSECONDS);
+    if (isStopped()) locateTimer.cancel(false);
+  }
+
+  private void sendLocate() {
+    try {
+      JSONObject d = locate.snapshot(System.currentTimeMillis());
+      if (d == null) return;
+      d.put("_cb", "locate");
+      subscribers.publish(d);
+      PluginResult pluginResult = new PluginResult(Status.OK, d);
+      pluginResult.setKeepCallback(true);
+      send(pluginResult);
+    } catch (JSONException ex) {
+      Log.e(PluginLog.TAG, "sendLocate", ex);
+    }
+  }
+
+  /**
+   * Send what has changed in the reconciliation every reconciliation.intervalMSec
+   */
+  void scheduleReconcile(ScheduledExecutorService scheduler) {
+    int intervalMSec = reconciliation.intervalMSec;
+    reconcileTimer = scheduler.scheduleAtFixedRate(new Runnable() {
+      public void run() {
+        if (!isStopped()) sendReconcile();
+      }
+    }, intervalMSec, intervalMSec, TimeUnit.MILLISECONDS);
+    if (isStopped()) reconcileTimer.cancel(false);
+  }
+
+  private void sendReconcile() {
+    try {
+      JSONObject d = reconciliation.update();
+      if (d == null) return;
+      d.put("_cb", "reconcile");
+      PluginResult pluginResult = new PluginResult(Status.OK, d);
+      pluginResult.setKeepCallback(true);
+      send(pluginResult);
+    } catch (JSONException ex) {
+      Log.e(PluginLog.TAG, "sendReconcile", ex);
+    }
+  }
+
+  private void sendReconcileReport() {
+    try {
+      JSONObject d = reconciliation.report(true);
+      d.put("_cb", "reconcileReport");
+      PluginResult pluginResult = new PluginResult(Status.OK, d);
+      pluginResult.setKeepCallback(true);
+      send(pluginResult);
+    } catch (JSONException ex) {
+      Log.e(PluginLog.TAG, "sendReconcileReport", ex);
+    }
+  }
+
+  /**
+   * Pass JavaScript the tags restored from the snapshot (option resumeFromSnapshot), and
+   * count them as found for the reconciliation
+   */
+  void sendResumed() {
+    Collection<InventorySnapshot.Entry> restored = snapshot.getRestored();
+    if (reconciliation != null) {
+      for (InventorySnapshot.Entry entry : restored) reconciliation.add(entry.epc);
+    }
+    try {
+      JSONObject d = new JSONObject();
+      d.put("_cb", "resumed");
+      d.put("tags", InventorySnapshot.tagsToJson(restored));
+      PluginResult pluginResult = new PluginResult(Status.OK, d);
+      pluginResult.setKeepCallback(true);
+      send(pluginResult);
+    } catch (JSONException ex) {
+      Log.e(PluginLog.TAG, "sendResumed", ex);
+    }
+  }
+
+  /**
+   * Checkpoint the snapshot every snapshot.intervalMSec
+   */
+  void scheduleSnapshot(ScheduledExecutorService scheduler) {
+    int intervalMSec = snapshot.intervalMSec;
+    snapshotTimer = scheduler.scheduleAtFixedRate(new Runnable() {
+      public void run() {
+        if (!isStopped()) checkpoint();
+      }
+    }, intervalMSec, intervalMSec, TimeUnit.MILLISECONDS);
+    if (isStopped()) snapshotTimer.cancel(false);
+  }
+
+  /**
+   * Write the tags that changed to the snapshot, if there is one
+   */
+  void checkpoint() {
+    InventorySnapshot snapshot = this.snapshot;
+    if (snapshot == null) return;
+    try {
+      snapshot.checkpoint();
+    } catch (IOException ex) {
+      Log.e(PluginLog.TAG, "checkpoint", ex);
+    }
+  }
+
+  private void journal(UgiTag tag, UgiInventory.DetailedPerReadData details[]) {
+    InventoryJournal journal = this.journal;
+    if (journal == null) return;
+    try {
+      journal.append(tag, details);
+    } catch (IOException ex) {
+      Log.e(PluginLog.TAG, "journal: " + tag, ex);
+      journal.close();
+      this.journal = null;
+    }
+  }
+
+  @Override
+  public void inventoryDidStart() {
+    // only STARTING becomes RUNNING: a pause (or stop) may already have overtaken the start
+    if (!state.compareAndSet(STATE_STARTING, STATE_RUNNING) && isStopped()) return;
+    try {
+      JSONObject d = new JSONObject();
+      d.put("_cb", "didStart");
+      subscribers.publish(d);
+      PluginResult pluginResult = new PluginResult(Status.OK, d);
+      pluginResult.setKeepCallback(true);
+      send(pluginResult);
+    } catch (JSONException ex) {
+      Log.e(PluginLog.TAG, "inventoryDidStart", ex);
+    }
+  }
+
+  @Override
+  public void inventoryDidStop(int completedResult) {
+    try {
+      JSONObject d = new JSONObject();
+      d.put("_cb", "didStop");
+      d.put("result", completedResult);
+      PluginResult pluginResult = new PluginResult(Status.OK, d);
+      UgiInventory inventory = this.inventory;
+      boolean isFinalCall = ((inventory == null) || !inventory.isPaused()) &&
+              (completedResult != UGI_INVENTORY_COMPLETED_LOST_CONNECTION);
+      if (isFinalCall ? (state.getAndSet(STATE_STOPPED) == STATE_STOPPED) : isStopped()) return;
+      if (isFinalCall && (statsTimer != null)) {
+        statsTimer.cancel(false);
+        sendStats();
+      }
+      if (isFinalCall && (locateTimer != null)) locateTimer.cancel(false);
+      if (isFinalCall && (reconciliation != null)) {
+        if (reconcileTimer != null) reconcileTimer.cancel(false);
+        sendReconcileReport();
+      }
+      if (!isFinalCall) {
+        fileExecutor.execute(new Runnable() {
+          public void run() {
+            checkpoint();
+          }
+        });
+      } else if (snapshot != null) {
+        if (snapshotTimer != null) snapshotTimer.cancel(false);
+        final InventorySnapshot snapshot = this.snapshot;
+        fileExecutor.execute(new Runnable() {
+          public void run() {
+            try {
+              snapshot.close();
+            } catch (IOException ex) {
+              Log.e(PluginLog.TAG, "inventoryDidStop: snapshot", ex);
+            }
+          }
+        });
+      }
+      pluginResult.setKeepCallback(!isFinalCall);
+      send(pluginResult);
+      if (!isFinalCall) {
+        subscribers.publish(d);
+      } else {
+        subscribers.close(d);
+        if (eventQueue != null) eventQueue.close();
+        InventoryJournal journal = this.journal;
+        if (journal != null) journal.close();
+        for (TagAccessBatch batch : tagAccessBatches.values()) batch.cancel();
+        if (idForMap != null) inventoryInfos.remove(idForMap, this);
+      }
+    } catch (JSONException ex) {
+      Log.e(PluginLog.TAG, "inventoryDidStop: " + completedResult, ex);
+    }
+  }
+
+  @Override
+  public void inventoryTagChanged(UgiTag tag, boolean firstFind) {
+    long receivedNanos = System.nanoTime();
+    if (isStopped()) return;
+    if (history != null) history.changed(tag);
+    subscribers.publishTag(InventoryEventQueue.TAG_CHANGED, tag, firstFind, 0, null);
+    if (handlesUgiInventoryTagChanged) {
+      if (usesEvents()) {
+        deliver(event(InventoryEventQueue.TAG_CHANGED, tag, firstFind, 0, null, receivedNanos));
+        return;
+      }
+      try {
+        long start = System.nanoTime();
+        JSONObject d = new JSONObject();
+        d.put("_cb", "tagChanged");
+        d.put("firstFind", firstFind);
+        TagJson.tagToJson(d, tag);
+        PluginResult pluginResult = new PluginResult(Status.OK, d);
+        BridgeMetrics.instance.serialized(System.nanoTime() - start);
+        pluginResult.setKeepCallback(true);
+        if (!sendNow(pluginResult)) return;
+        BridgeMetrics.instance.sent(InventoryEventQueue.TAG_CHANGED, 1, pluginResult);
+        BridgeMetrics.instance.delivered(receivedNanos);
+      } catch (JSONException ex) {
+        Log.e(PluginLog.TAG, "inventoryTagChanged: " + tag, ex);
+      }
+    }
+  }
+
+  @Override
+  public void inventoryTagFound(UgiTag tag, UgiInventory.DetailedPerReadData details[]) {
+    long receivedNanos = System.nanoTime();
+    if (isStopped()) return;
+    if (tagStats != null) tagStats.add(tag, 1, details);
+    journal(tag, details);
+    LocateEngine locate = this.locate;
+    if (locate != null) locate.add(tag, 1, details);
+    if (reconciliation != null) reconciliation.add(tag.getEpc());
+    if (snapshot != null) snapshot.changed(tag);
+    if (history != null) history.reads(1, true);
+    subscribers.publishTag(InventoryEventQueue.TAG_FOUND, tag, false, 0, details);
+    if (handlesUgiInventoryTagFound) {
+      if (usesEvents()) {
+        deliver(event(InventoryEventQueue.TAG_FOUND, tag, false, 0, details, receivedNanos));
+        return;
+      }
+      try {
+        long start = System.nanoTime();
+        JSONObject d = new JSONObject();
+        d.put("_cb", "tagFound");
+        TagJson.tagToJson(d, tag);
+        TagJson.detailsToJson(d, details);
+        PluginResult pluginResult = new PluginResult(Status.OK, d);
+        BridgeMetrics.instance.serialized(System.nanoTime() - start);
+        pluginResult.setKeepCallback(true);
+        if (!sendNow(pluginResult)) return;
+        BridgeMetrics.instance.sent(InventoryEventQueue.TAG_FOUND, 1, pluginResult);
+        BridgeMetrics.instance.delivered(receivedNanos);
+      } catch (JSONException ex) {
+        Log.e(PluginLog.TAG, "inventoryTagFound: " + tag, ex);
+      }
+    }
+  }
+
+  @Override
+  public void inventoryTagSubsequentFinds(UgiTag tag, int count, UgiInventory.DetailedPerReadData details[]) {
+    long receivedNanos = System.nanoTime();
+    if (isStopped()) return;
+    if (tagStats != null) tagStats.add(tag, count, details);
+    journal(tag, details);
+    LocateEngine locate = this.locate;
+    if (locate != null) locate.add(tag, count, details);
+    if (snapshot != null) snapshot.changed(tag);
+    if (history != null) history.reads(count, false);
+    subscribers.publishTag(InventoryEventQueue.TAG_SUBSEQUENT_FINDS, tag, false, count, details);
+    if (handlesUgiInventoryTagSubsequentFinds) {
+      if (usesEvents()) {
+        deliver(event(InventoryEventQueue.TAG_SUBSEQUENT_FINDS, tag, false, count, details, receivedNanos));
+        return;
+      }
+      try {
+        long start = System.nanoTime();
+        JSONObject d = new JSONObject();
+        d.put("_cb", "tagSubsequentFinds");
+        d.put("count", count);
+        TagJson.tagToJson(d, tag);
+        TagJson.detailsToJson(d, details);
+        PluginResult pluginResult = new PluginResult(Status.OK, d);
+        BridgeMetrics.instance.serialized(System.nanoTime() - start);
+        pluginResult.setKeepCallback(true);
+        if (!sendNow(pluginResult)) return;
+        BridgeMetrics.instance.sent(InventoryEventQueue.TAG_SUBSEQUENT_FINDS, 1, pluginResult);
+        BridgeMetrics.instance.delivered(receivedNanos);
+      } catch (JSONException ex) {
+        Log.e(PluginLog.TAG, "inventoryTagSubsequentFinds: " + tag, ex);
+      }
+    }
+  }
+
+  @Override
+  public void inventoryHistoryInterval() {
+    if (isStopped()) return;
+    if (handlesUgiInventoryHistoryInterval || subscribers.wants("historyInterval")) {
+      try {
+        JSONObject d = new JSONObject();
+        d.put("_cb", "historyInterval");
+        if (history != null) d.put("interval", history.lastInterval());
+        subscribers.publish(d);
+        if (!handlesUgiInventoryHistoryInterval) return;
+        PluginResult pluginResult = new PluginResult(Status.OK, d);
+        pluginResult.setKeepCallback(true);
+        send(pluginResult);
+      } catch (JSONException ex) {
+        Log.e(PluginLog.TAG, "inventoryHistoryInterval", ex);
+      }
+    }
+  }
+
+}
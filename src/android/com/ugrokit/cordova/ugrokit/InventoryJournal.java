@@ -0,0 +1,546 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+import com.ugrokit.api.*;
+
+/**
+ * Append-only journal of tag reads (startInventory option "journal"), written natively
+ * so nothing goes through the bridge and reads already written survive the app being killed.
+ *
+ * A journal is a directory of segment files, each memory mapped while being written and
+ * holding a fixed number of fixed size records. When a segment is full the next one is
+ * started, and segments beyond maxSegments are deleted oldest first. Records are numbered
+ * from the start of the journal, so deleted segments leave a gap at the start.
+ *
+ * Records are appended from the SDK's callbacks on the UI thread, so everything slow is
+ * done on a background executor: the next segment is mapped ahead of time (under a name
+ * readers ignore until it is started), and a full segment is forced out, closed and old
+ * ones deleted after the switch.
+ *
+ * Segment header (HEADER_LENGTH bytes, little endian):
+ *   0  u32 MAGIC
+ *   4  u16 VERSION
+ *   6  u16 RECORD_LENGTH
+ *   8  u32 records per segment
+ *  12  u32 segment number
+ *  16  i64 time created (ms since epoch)
+ *
+ * Record (RECORD_LENGTH bytes):
+ *   0  i64 timestamp (ms since epoch)
+ *   8  f32 RSSI I
+ *  12  f32 RSSI Q
+ *  16  i32 frequency (0 if unknown)
+ *  20  u8  EPC length, written last: 0 marks the end of the journal
+ *  21  u8  flags (FLAG_xxx)
+ *  22  u16 0
+ *  24  EPC (up to UgiEpc.MAX_EPC_LENGTH bytes)
+ */
+class InventoryJournal
+{
+  static final int MAGIC = 0x4a4755;
+  static final int VERSION = 1;
+  static final int HEADER_LENGTH = 32;
+  static final int RECORD_LENGTH = 56;
+  static final int EPC_OFFSET = 24;
+
+  /** The record is from detailed per-read data, not the most recent read of a find */
+  static final int FLAG_DETAILED = 0x01;
+
+  static final int DEFAULT_SEGMENT_RECORDS = 65536;
+  static final int DEFAULT_MAX_SEGMENTS = 64;
+  static final int MAX_READ_RECORDS = 10000;
+
+  private static final String SEGMENT_SUFFIX = ".ugj";
+  private static final String NEXT_SUFFIX = ".next";
+  private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_\\-]{1,64}");
+
+  // journals being written, a journal can only be written by one inventory at a time
+  private static final HashSet<File> open = new HashSet<File>();
+
+  private final File dir;
+  private final int segmentRecords;
+  private final int maxSegments;
+  private final Executor background;
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+  private int segment;
+  private int position;
+  // the segment after this one, mapped ahead by prepare(), or null
+  private FileChannel nextChannel;
+  private MappedByteBuffer nextBuffer;
+
+  private InventoryJournal(File dir, int segmentRecords, int maxSegments, Executor background) {
+    this.dir = dir;
+    this.segmentRecords = segmentRecords;
+    this.maxSegments = maxSegments;
+    this.background = background;
+  }
+
+  /**
+   * Directory for a journal, or null if the name is not valid (letters, digits, _ and -)
+   */
+  static File directory(File filesDir, String name) {
+    if ((name == null) || !NAME.matcher(name).matches()) return null;
+    return new File(new File(filesDir, "ugrokit-journals"), name);
+  }
+
+  /**
+   * Open a journal for writing, creating it or appending to it
+   *
+   * @param segmentRecords Records per segment for a new journal, 0 for the default
+   * @param maxSegments Segments to keep, 0 for the default
+   * @param background Where segments are prepared and finished, off the thread appending
+   */
+  static InventoryJournal open(File dir, int segmentRecords, int maxSegments, Executor background) throws IOException {
+    synchronized (open) {
+      if (open.contains(dir)) throw new IOException("journal in use: " + dir.getName());
+      if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+      int[] segments = segments(dir);
+      InventoryJournal journal;
+      if (segments.length == 0) {
+        journal = new InventoryJournal(dir, segmentRecords > 0 ? segmentRecords : DEFAULT_SEGMENT_RECORDS,
+                                       maxSegments > 0 ? maxSegments : DEFAULT_MAX_SEGMENTS, background);
+        journal.map(0, true);
+      } else {
+        int last = segments[segments.length - 1];
+        journal = new InventoryJournal(dir, readHeader(segmentFile(dir, last)).getInt(8),
+                                       maxSegments > 0 ? maxSegments : DEFAULT_MAX_SEGMENTS, background);
+        journal.map(last, false);
+        while ((journal.position < journal.segmentRecords) && (journal.buffer.get(journal.offset(journal.position) + 20) != 0)) {
+          journal.position++;
+        }
+      }
+      open.add(dir);
+      journal.prepareNext();
+      return journal;
+    }
+  }
+
+  private int offset(int record) {
+    return HEADER_LENGTH + record * RECORD_LENGTH;
+  }
+
+  private void map(int segment, boolean create) throws IOException {
+    File file = segmentFile(dir, segment);
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      channel = raf.getChannel();
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, offset(segmentRecords));
+    } catch (IOException ex) {
+      raf.close();
+      throw ex;
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    this.segment = segment;
+    this.position = 0;
+    if (create) writeHeader();
+  }
+
+  private void writeHeader() {
+    buffer.putInt(0, MAGIC);
+    buffer.putShort(4, (short) VERSION);
+    buffer.putShort(6, (short) RECORD_LENGTH);
+    buffer.putInt(8, segmentRecords);
+    buffer.putInt(12, segment);
+    buffer.putLong(16, System.currentTimeMillis());
+  }
+
+  /**
+   * Start the next segment: the one mapped ahead if it is ready (a rename), otherwise map
+   * it here. The full segment is finished in the background.
+   */
+  private void nextSegment() throws IOException {
+    final FileChannel previousChannel = channel;
+    final MappedByteBuffer previousBuffer = buffer;
+    int next = segment + 1;
+    if ((nextBuffer != null) && nextFile(dir, next).renameTo(segmentFile(dir, next))) {
+      channel = nextChannel;
+      buffer = nextBuffer;
+      segment = next;
+      position = 0;
+      writeHeader();
+    } else {
+      discardNext();
+      map(next, true);
+    }
+    nextChannel = null;
+    nextBuffer = null;
+    background.execute(new Runnable() {
+      public void run() {
+        try {
+          previousBuffer.force();
+          previousChannel.close();
+        } catch (IOException ex) {
+          // the mapped data is written by the OS regardless
+        }
+        int[] segments = segments(dir);
+        for (int i = 0; i < segments.length - maxSegments; i++) {
+          segmentFile(dir, segments[i]).delete();
+        }
+      }
+    });
+    prepareNext();
+  }
+
+  /**
+   * Map the segment after the current one in the background, ready for nextSegment()
+   */
+  private void prepareNext() {
+    final int next = segment + 1;
+    background.execute(new Runnable() {
+      public void run() {
+        File file = nextFile(dir, next);
+        file.delete();
+        FileChannel nextChannel = null;
+        try {
+          nextChannel = new RandomAccessFile(file, "rw").getChannel();
+          MappedByteBuffer nextBuffer = nextChannel.map(FileChannel.MapMode.READ_WRITE, 0, offset(segmentRecords));
+          nextBuffer.order(ByteOrder.LITTLE_ENDIAN);
+          synchronized (InventoryJournal.this) {
+            if ((buffer != null) && (segment + 1 == next) && (InventoryJournal.this.nextBuffer == null)) {
+              InventoryJournal.this.nextChannel = nextChannel;
+              InventoryJournal.this.nextBuffer = nextBuffer;
+              return;
+            }
+          }
+        } catch (IOException ex) {
+          Log.e(PluginLog.TAG, "journal: " + file, ex);
+        }
+        // closed or moved on meanwhile, or failed: nextSegment() maps it itself
+        try {
+          if (nextChannel != null) nextChannel.close();
+        } catch (IOException ex) {
+          // nothing was written to it
+        }
+        file.delete();
+      }
+    });
+  }
+
+  /**
+   * Drop the segment mapped ahead, if any
+   */
+  private void discardNext() {
+    if (nextBuffer == null) return;
+    try {
+      nextChannel.close();
+    } catch (IOException ex) {
+      // nothing was written to it
+    }
+    nextFile(dir, segment + 1).delete();
+    nextChannel = null;
+    nextBuffer = null;
+  }
+
+  /**
+   * Append the reads of a find: one record per per-read entry, or one for the most recent read
+   */
+  synchronized void append(UgiTag tag, UgiInventory.DetailedPerReadData details[]) throws IOException {
+    if (buffer == null) return;
+    byte[] epc = tag.getEpc().toBytes();
+    if ((details != null) && (details.length > 0)) {
+      for (UgiInventory.DetailedPerReadData detail : details) {
+        append(epc, detail.getTimestamp().getTime(), detail.getRssiI(), detail.getRssiQ(), detail.getFrequency(), FLAG_DETAILED);
+      }
+    } else {
+      UgiTagReadState readState = tag.getTagReadState();
+      append(epc, readState.getMostRecentRead().getTime(), readState.getMostRecentRssiI(), readState.getMostRecentRssiQ(), 0, 0);
+    }
+  }
+
+  private void append(byte[] epc, long timestamp, double rssiI, double rssiQ, int frequency, int flags) throws IOException {
+    if (position == segmentRecords) nextSegment();
+    int offset = offset(position++);
+    buffer.putLong(offset, timestamp);
+    buffer.putFloat(offset + 8, (float) rssiI);
+    buffer.putFloat(offset + 12, (float) rssiQ);
+    buffer.putInt(offset + 16, frequency);
+    buffer.put(offset + 21, (byte) flags);
+    int length = Math.min(epc.length, UgiEpc.MAX_EPC_LENGTH);
+    for (int i = 0; i < length; i++) buffer.put(offset + EPC_OFFSET + i, epc[i]);
+    buffer.put(offset + 20, (byte) length);
+  }
+
+  /**
+   * Write everything out and stop writing
+   */
+  synchronized void close() {
+    if (buffer == null) return;
+    try {
+      buffer.force();
+      channel.close();
+    } catch (IOException ex) {
+      // the mapped data is written by the OS regardless
+    }
+    discardNext();
+    buffer = null;
+    synchronized (open) {
+      open.remove(dir);
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////
+  // Reading
+  ///////////////////////////////////////////////////////////////////////////////////////
+
+  private static File segmentFile(File dir, int segment) {
+    return new File(dir, String.format(Locale.US, "%08d", segment) + SEGMENT_SUFFIX);
+  }
+
+  /**
+   * A segment being mapped ahead, not part of the journal until it is renamed
+   */
+  private static File nextFile(File dir, int segment) {
+    return new File(dir, String.format(Locale.US, "%08d", segment) + SEGMENT_SUFFIX + NEXT_SUFFIX);
+  }
+
+  /**
+   * Segment numbers, in order
+   */
+  private static int[] segments(File dir) {
+    String[] names = dir.list();
+    if (names == null) return new int[0];
+    int[] segments = new int[names.length];
+    int n = 0;
+    for (String name : names) {
+      if (!name.endsWith(SEGMENT_SUFFIX)) continue;
+      try {
+        segments[n++] = Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+      } catch (NumberFormatException ex) {
+        // not a segment
+      }
+    }
+    segments = Arrays.copyOf(segments, n);
+    Arrays.sort(segments);
+    return segments;
+  }
+
+  private static ByteBuffer readHeader(File file) throws IOException {
+    ByteBuffer bb = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+    FileInputStream in = new FileInputStream(file);
+    try {
+      in.getChannel().read(bb, 0);
+    } finally {
+      in.close();
+    }
+    if ((bb.getInt(0) != MAGIC) || (bb.getShort(6) != RECORD_LENGTH)) throw new IOException("not a journal segment: " + file);
+    return bb;
+  }
+
+  /**
+   * Reads records in order, from any segment, stopping at the end of the journal.
+   * Each segment is mapped read-only, so reading a record is a copy rather than a read().
+   */
+  private static class Reader {
+    final File dir;
+    final int[] segments;
+    final int segmentRecords;
+    final ByteBuffer record = ByteBuffer.allocate(RECORD_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+    final byte[] epc = new byte[UgiEpc.MAX_EPC_LENGTH];
+    MappedByteBuffer mapped;
+    int segment = -1;
+    long index;
+
+    Reader(File dir) throws IOException {
+      this.dir = dir;
+      this.segments = segments(dir);
+      this.segmentRecords = segments.length > 0 ? readHeader(segmentFile(dir, segments[0])).getInt(8) : 1;
+    }
+
+    long first() {
+      return segments.length > 0 ? (long) segments[0] * segmentRecords : 0;
+    }
+
+    /**
+     * Read record index into record and epc, returning the EPC length or 0 at the end
+     */
+    int read(long index) throws IOException {
+      if (index < first()) return 0;
+      int s = (int) (index / segmentRecords);
+      if (s != segment) {
+        close();
+        File file = segmentFile(dir, s);
+        if (!file.exists()) return 0;
+        FileInputStream in = new FileInputStream(file);
+        try {
+          FileChannel channel = in.getChannel();
+          mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+          in.close();
+        }
+        segment = s;
+      }
+      int offset = HEADER_LENGTH + (int) (index % segmentRecords) * RECORD_LENGTH;
+      if (offset + RECORD_LENGTH > mapped.capacity()) return 0;
+      mapped.position(offset);
+      mapped.get(record.array(), 0, RECORD_LENGTH);
+      int length = record.get(20) & 0xff;
+      if (length > epc.length) return 0;
+      for (int i = 0; i < length; i++) epc[i] = record.get(EPC_OFFSET + i);
+      return length;
+    }
+
+    /**
+     * Index one past the last record
+     */
+    long end() throws IOException {
+      if (segments.length == 0) return 0;
+      long start = (long) segments[segments.length - 1] * segmentRecords;
+      long lo = start, hi = start + segmentRecords;
+      // records are written in order, so binary search for the first empty one
+      while (lo < hi) {
+        long mid = (lo + hi) >>> 1;
+        if (read(mid) != 0) lo = mid + 1; else hi = mid;
+      }
+      return lo;
+    }
+
+    void close() {
+      mapped = null;
+      segment = -1;
+    }
+  }
+
+  /**
+   * {records, first, end, segments, bytes}: record numbers first to end - 1 are in the journal
+   */
+  static JSONObject info(File dir) throws IOException, JSONException {
+    Reader reader = new Reader(dir);
+    try {
+      long first = reader.first();
+      long end = reader.end();
+      long bytes = 0;
+      for (int s : reader.segments) bytes += segmentFile(dir, s).length();
+      JSONObject d = new JSONObject();
+      d.put("records", end - first);
+      d.put("first", first);
+      d.put("end", end);
+      d.put("segments", reader.segments.length);
+      d.put("bytes", bytes);
+      return d;
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Records from start, at most count (and MAX_READ_RECORDS) of them, as columns:
+   * {start, epc[], timestamp[], rssiI[], rssiQ[], frequency[], detailed[]}
+   */
+  static JSONObject read(File dir, long start, int count) throws IOException, JSONException {
+    Reader reader = new Reader(dir);
+    try {
+      if (start < reader.first()) start = reader.first();
+      JSONArray epcs = new JSONArray();
+      JSONArray timestamps = new JSONArray();
+      JSONArray rssiIs = new JSONArray();
+      JSONArray rssiQs = new JSONArray();
+      JSONArray frequencies = new JSONArray();
+      JSONArray detailed = new JSONArray();
+      count = Math.min(count, MAX_READ_RECORDS);
+      int length;
+      for (int i = 0; (i < count) && ((length = reader.read(start + i)) != 0); i++) {
+        ByteBuffer r = reader.record;
+        epcs.put(HexCodec.encode(reader.epc, 0, length));
+        timestamps.put(r.getLong(0));
+        rssiIs.put((double) r.getFloat(8));
+        rssiQs.put((double) r.getFloat(12));
+        frequencies.put(r.getInt(16));
+        detailed.put((r.get(21) & FLAG_DETAILED) != 0);
+      }
+      JSONObject d = new JSONObject();
+      d.put("start", start);
+      d.put("epc", epcs);
+      d.put("timestamp", timestamps);
+      d.put("rssiI", rssiIs);
+      d.put("rssiQ", rssiQs);
+      d.put("frequency", frequencies);
+      d.put("detailed", detailed);
+      return d;
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Write records from start (at most count of them, or all if count is negative) to a CSV file
+   *
+   * @return Number of records written
+   */
+  static long exportCsv(File dir, long start, long count, File out) throws IOException {
+    Reader reader = new Reader(dir);
+    Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(out), "US-ASCII"), 65536);
+    try {
+      if (start < reader.first()) start = reader.first();
+      writer.write("record,epc,timestamp,rssiI,rssiQ,frequency,detailed\n");
+      long n = 0;
+      int length;
+      while (((count < 0) || (n < count)) && ((length = reader.read(start + n)) != 0)) {
+        ByteBuffer r = reader.record;
+        writer.write(Long.toString(start + n));
+        writer.write(',');
+        writer.write(HexCodec.encode(reader.epc, 0, length));
+        writer.write(',');
+        writer.write(Long.toString(r.getLong(0)));
+        writer.write(',');
+        writer.write(Float.toString(r.getFloat(8)));
+        writer.write(',');
+        writer.write(Float.toString(r.getFloat(12)));
+        writer.write(',');
+        writer.write(Integer.toString(r.getInt(16)));
+        writer.write(',');
+        writer.write((r.get(21) & FLAG_DETAILED) != 0 ? "1\n" : "0\n");
+        n++;
+      }
+      return n;
+    } finally {
+      writer.close();
+      reader.close();
+    }
+  }
+
+  /**
+   * Delete a journal that is not being written
+   */
+  static boolean delete(File dir) {
+    synchronized (open) {
+      if (open.contains(dir)) return false;
+      File[] files = dir.listFiles();
+      if (files != null) {
+        for (File file : files) file.delete();
+      }
+      dir.delete();
+      return true;
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.util.*;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.ugrokit.api.*;
+
+/**
+ * Reconciliation of an inventory against the EPCs expected to be found (startInventory
+ * options expected or expectedEpcSet), done natively for cycle counts of many thousands
+ * of items. The expected EPCs are copied once into an EpcSet and found ones are marked
+ * in a BitSet by position. Updates carry only what changed since the last one; the report
+ * when inventory finishes lists the missing and unexpected EPCs. EPCs are sent as
+ * UgiEpc.toString(), as in tag events.
+ */
+class InventoryReconciliation
+{
+  static final int DEFAULT_INTERVAL_MSEC = 1000;
+
+  private final EpcSet expected;
+  private final BitSet found;
+  private final HashSet<UgiEpc> foundOverflow = new HashSet<UgiEpc>();
+  private final EpcSet unexpected = new EpcSet();
+  private int numFound;
+
+  // since the last update
+  private int lastNumFound;
+  private int lastNumUnexpected;
+  private final ArrayList<String> newlyUnexpected = new ArrayList<String>();
+
+  final int intervalMSec;
+
+  InventoryReconciliation(EpcSet expected, int intervalMSec) {
+    this.expected = expected.copy();
+    this.found = new BitSet(this.expected.packedSize());
+    this.intervalMSec = intervalMSec;
+  }
+
+  /**
+   * @param options startInventory options
+   * @param epcSets Registered EPC sets, for expectedEpcSet
+   * @return The reconciliation, or null if neither expected nor expectedEpcSet is set
+   * @throws JSONException If expectedEpcSet is not a registered EPC set
+   */
+  static InventoryReconciliation fromOptions(JSONObject options, Map<Integer, EpcSet> epcSets) throws JSONException {
+    if (options == null) return null;
+    EpcSet expected;
+    if (options.has("expectedEpcSet")) {
+      expected = epcSets.get(options.getInt("expectedEpcSet"));
+      if (expected == null) throw new JSONException("unknown expectedEpcSet");
+    } else if (options.has("expected")) {
+      JSONArray ja = options.getJSONArray("expected");
+      expected = new EpcSet(ja.length());
+      for (int i = 0; i < ja.length(); i++) {
+        expected.add(ja.getString(i));
+      }
+    } else {
+      return null;
+    }
+    return new InventoryReconciliation(expected, options.optInt("reconcileIntervalMSec", DEFAULT_INTERVAL_MSEC));
+  }
+
+  /**
+   * A tag was found (for the first time)
+   */
+  synchronized void add(UgiEpc tagEpc) {
+    byte[] epc = tagEpc.toBytes();
+    int position = expected.position(epc);
+    if (position >= 0) {
+      if (!found.get(position)) {
+        found.set(position);
+        numFound++;
+      }
+    } else if (position == EpcSet.OVERFLOW) {
+      if (foundOverflow.add(tagEpc)) numFound++;
+    } else if (unexpected.add(epc) > 0) {
+      newlyUnexpected.add(tagEpc.toString());
+    }
+  }
+
+  private void putCounts(JSONObject d) throws JSONException {
+    d.put("expected", expected.size());
+    d.put("found", numFound);
+    d.put("missing", expected.size() - numFound);
+    d.put("unexpected", unexpected.size());
+  }
+
+  /**
+   * Changes since the last update: counts, how much they changed and the EPCs newly unexpected
+   *
+   * @return The update, or null if nothing has changed
+   */
+  synchronized JSONObject update() throws JSONException {
+    if ((numFound == lastNumFound) && (unexpected.size() == lastNumUnexpected)) return null;
+    JSONObject d = new JSONObject();
+    putCounts(d);
+    d.put("foundDelta", numFound - lastNumFound);
+    d.put("unexpectedDelta", unexpected.size() - lastNumUnexpected);
+    d.put("newlyUnexpected", new JSONArray(newlyUnexpected));
+    lastNumFound = numFound;
+    lastNumUnexpected = unexpected.size();
+    newlyUnexpected.clear();
+    return d;
+  }
+
+  /**
+   * Counts, and optionally the missing and unexpected EPCs
+   */
+  synchronized JSONObject report(boolean withEpcs) throws JSONException {
+    JSONObject d = new JSONObject();
+    putCounts(d);
+    if (withEpcs) {
+      JSONArray missing = new JSONArray();
+      for (int i = found.nextClearBit(0); i < expected.packedSize(); i = found.nextClearBit(i + 1)) {
+        missing.put(new UgiEpc(expected.epcAt(i)).toString());
+      }
+      for (UgiEpc epc : expected.overflowEpcs()) {
+        if (!foundOverflow.contains(epc)) missing.put(epc.toString());
+      }
+      d.put("missingEpcs", missing);
+      JSONArray unexpectedEpcs = new JSONArray();
+      for (UgiEpc epc : unexpected.toList()) {
+        unexpectedEpcs.put(epc.toString());
+      }
+      d.put("unexpectedEpcs", unexpectedEpcs);
+    }
+    return d;
+  }
+}
@@ -0,0 +1,386 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.ugrokit.api.*;
+
+/**
+ * Checkpoint of an inventory's tags (startInventory option snapshot), so that a long
+ * cycle count interrupted by a call, a reset or a lost connection can be picked up again
+ * (option resumeFromSnapshot) without scanning everything again.
+ *
+ * The file is a header and then one record per tag, appended at each checkpoint for the
+ * tags that changed since the last one; when read, the last record for an EPC wins. The
+ * file is rewritten with one record per tag once more than half of it is out of date,
+ * and when it is resumed from. A record cut short by the app being killed is ignored.
+ *
+ * Header (16 bytes, big endian): i32 MAGIC, u16 VERSION, u16 0, i64 created (ms since epoch)
+ *
+ * Record: u8 EPC length, EPC, u16 TID length (NONE = no TID), TID, u16 USER length, USER,
+ *         u16 RESERVED length, RESERVED, i64 first read, i64 most recent read,
+ *         i32 total reads, f32 most recent RSSI I, f32 most recent RSSI Q
+ */
+class InventorySnapshot
+{
+  static final int MAGIC = 0x534755;
+  static final int VERSION = 1;
+  static final int DEFAULT_INTERVAL_MSEC = 5000;
+
+  private static final int NONE = 0xffff;
+  private static final String SUFFIX = ".ugs";
+  private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_\\-]{1,64}");
+
+  // snapshots being written, a snapshot can only be written by one inventory at a time
+  private static final HashSet<File> open = new HashSet<File>();
+
+  /**
+   * A tag as of the last checkpoint
+   */
+  static class Entry {
+    UgiEpc epc;
+    byte[] tid;
+    byte[] user;
+    byte[] reserved;
+    long firstRead;
+    long mostRecentRead;
+    int totalReads;
+    float rssiI;
+    float rssiQ;
+
+    JSONObject toJson() throws JSONException {
+      JSONObject d = new JSONObject();
+      d.put("tag_epc", epc.toString());
+      d.put("tag_firstRead", firstRead);
+      d.put("tag_tidMemory", HexCodec.encode(tid));
+      d.put("tag_userMemory", HexCodec.encode(user));
+      d.put("tag_reservedMemory", HexCodec.encode(reserved));
+      d.put("tag_isVisible", false);
+      d.put("tag_totalReads", totalReads);
+      d.put("tag_mostRecentRead", mostRecentRead);
+      d.put("tag_mostRecentRssiI", rssiI);
+      d.put("tag_mostRecentRssiQ", rssiQ);
+      return d;
+    }
+  }
+
+  private final File file;
+  final int intervalMSec;
+  // held while writing, the monitor is only held to swap out the changed tags so that
+  // changed() (on the UI thread) never waits for the file
+  private final Object writeLock = new Object();
+  // tags restored by resumeFromSnapshot, the base for what inventory reads again
+  private final HashMap<UgiEpc, Entry> restored = new HashMap<UgiEpc, Entry>();
+  // every tag, as last written (writeLock)
+  private final LinkedHashMap<UgiEpc, Entry> entries = new LinkedHashMap<UgiEpc, Entry>();
+  private int records;
+  private long created = System.currentTimeMillis();
+  // tags changed since the last checkpoint, as they were then (monitor)
+  private LinkedHashMap<UgiEpc, Entry> changed = new LinkedHashMap<UgiEpc, Entry>();
+  private boolean closed;
+
+  private InventorySnapshot(File file, int intervalMSec) {
+    this.file = file;
+    this.intervalMSec = intervalMSec;
+  }
+
+  /**
+   * File for a snapshot, or null if the name is not valid (letters, digits, _ and -)
+   */
+  static File file(File filesDir, String name) {
+    if ((name == null) || !NAME.matcher(name).matches()) return null;
+    return new File(new File(filesDir, "ugrokit-snapshots"), name + SUFFIX);
+  }
+
+  /**
+   * Open a snapshot for writing
+   *
+   * @param resume True to start from the tags in the snapshot, otherwise it is started over
+   * @param intervalMSec Time between checkpoints, 0 for the default
+   */
+  static InventorySnapshot open(File file, boolean resume, int intervalMSec) throws IOException {
+    synchronized (open) {
+      if (open.contains(file)) throw new IOException("snapshot in use: " + file.getName());
+      File dir = file.getParentFile();
+      if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+      InventorySnapshot snapshot = new InventorySnapshot(file, intervalMSec > 0 ? intervalMSec : DEFAULT_INTERVAL_MSEC);
+      if (resume && file.exists()) {
+        read(file, snapshot.entries);
+        snapshot.restored.putAll(snapshot.entries);
+        snapshot.created = created(file);
+      }
+      // also after resuming: a record cut short at the end would garble everything appended after it
+      snapshot.rewrite();
+      open.add(file);
+      return snapshot;
+    }
+  }
+
+  /**
+   * The tags restored from the snapshot
+   */
+  Collection<Entry> getRestored() {
+    synchronized (writeLock) {
+      return new ArrayList<Entry>(restored.values());
+    }
+  }
+
+  /**
+   * A tag was found or read again. Called from the SDK's callbacks on the UI thread, the
+   * only place the tag may be read, so what is written later is copied here.
+   */
+  void changed(UgiTag tag) {
+    Entry entry = entry(tag);
+    synchronized (this) {
+      if (!closed) changed.put(entry.epc, entry);
+    }
+  }
+
+  /**
+   * Write the tags that changed since the last checkpoint
+   *
+   * @return The number of tags written
+   */
+  int checkpoint() throws IOException {
+    synchronized (writeLock) {
+      LinkedHashMap<UgiEpc, Entry> changed;
+      synchronized (this) {
+        if (closed || this.changed.isEmpty()) return 0;
+        changed = this.changed;
+        this.changed = new LinkedHashMap<UgiEpc, Entry>();
+      }
+      int n = changed.size();
+      ArrayList<Entry> updated = new ArrayList<Entry>(n);
+      for (Entry entry : changed.values()) {
+        addRestored(entry, restored.get(entry.epc));
+        entries.put(entry.epc, entry);
+        updated.add(entry);
+      }
+      if (records + n > 2 * entries.size()) {
+        rewrite();
+      } else {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        try {
+          for (Entry entry : updated) write(out, entry);
+        } finally {
+          out.close();
+        }
+        records += n;
+      }
+      return n;
+    }
+  }
+
+  /**
+   * Checkpoint and stop writing
+   */
+  void close() throws IOException {
+    synchronized (writeLock) {
+      synchronized (this) {
+        if (closed) return;
+      }
+      try {
+        checkpoint();
+      } finally {
+        synchronized (this) {
+          closed = true;
+        }
+        synchronized (open) {
+          open.remove(file);
+        }
+      }
+    }
+  }
+
+  /**
+   * The tag as it is now
+   */
+  private static Entry entry(UgiTag tag) {
+    UgiTagReadState readState = tag.getTagReadState();
+    Entry entry = new Entry();
+    entry.epc = tag.getEpc();
+    entry.tid = tag.getTidBytes();
+    entry.user = tag.getUserBytes();
+    entry.reserved = tag.getReservedBytes();
+    entry.firstRead = tag.getFirstRead().getTime();
+    entry.mostRecentRead = readState.getMostRecentRead().getTime();
+    entry.totalReads = readState.getTotalReads();
+    entry.rssiI = (float) readState.getMostRecentRssiI();
+    entry.rssiQ = (float) readState.getMostRecentRssiQ();
+    return entry;
+  }
+
+  /**
+   * Put a tag read since the resume on top of what was restored for it, if anything
+   */
+  private static void addRestored(Entry entry, Entry base) {
+    if (base == null) return;
+    if (entry.tid == null) entry.tid = base.tid;
+    if (entry.user == null) entry.user = base.user;
+    if (entry.reserved == null) entry.reserved = base.reserved;
+    entry.firstRead = Math.min(entry.firstRead, base.firstRead);
+    entry.totalReads += base.totalReads;
+  }
+
+  /**
+   * Write every tag to a new file and swap it in
+   */
+  private void rewrite() throws IOException {
+    File tmp = new File(file.getPath() + ".tmp");
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeShort(VERSION);
+      out.writeShort(0);
+      out.writeLong(created);
+      for (Entry entry : entries.values()) write(out, entry);
+    } finally {
+      out.close();
+    }
+    if (!tmp.renameTo(file)) throw new IOException("cannot rename " + tmp);
+    records = entries.size();
+  }
+
+  private static void write(DataOutputStream out, Entry entry) throws IOException {
+    byte[] epc = entry.epc.toBytes();
+    out.writeByte(epc.length);
+    out.write(epc);
+    writeBytes(out, entry.tid);
+    writeBytes(out, entry.user);
+    writeBytes(out, entry.reserved);
+    out.writeLong(entry.firstRead);
+    out.writeLong(entry.mostRecentRead);
+    out.writeInt(entry.totalReads);
+    out.writeFloat(entry.rssiI);
+    out.writeFloat(entry.rssiQ);
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] ba) throws IOException {
+    if (ba == null) {
+      out.writeShort(NONE);
+    } else {
+      out.writeShort(ba.length);
+      out.write(ba);
+    }
+  }
+
+  private static byte[] readBytes(DataInputStream in, int length) throws IOException {
+    if (length == NONE) return null;
+    byte[] ba = new byte[length];
+    in.readFully(ba);
+    return ba;
+  }
+
+  /**
+   * Read a snapshot into entries
+   *
+   * @return The number of records read
+   */
+  private static int read(File file, Map<UgiEpc, Entry> entries) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      if ((in.readInt() != MAGIC) || (in.readUnsignedShort() != VERSION)) throw new IOException("not a snapshot: " + file);
+      in.readUnsignedShort();
+      in.readLong();
+      int records = 0;
+      while (true) {
+        Entry entry = new Entry();
+        try {
+          int length = in.read();
+          if (length < 0) break;
+          entry.epc = new UgiEpc(readBytes(in, length));
+          entry.tid = readBytes(in, in.readUnsignedShort());
+          entry.user = readBytes(in, in.readUnsignedShort());
+          entry.reserved = readBytes(in, in.readUnsignedShort());
+          entry.firstRead = in.readLong();
+          entry.mostRecentRead = in.readLong();
+          entry.totalReads = in.readInt();
+          entry.rssiI = in.readFloat();
+          entry.rssiQ = in.readFloat();
+        } catch (EOFException ex) {
+          break; // cut short
+        }
+        entries.put(entry.epc, entry);
+        records++;
+      }
+      return records;
+    } finally {
+      in.close();
+    }
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////
+  // Snapshots by name
+  ///////////////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * {tags, records, bytes, created}
+   */
+  static JSONObject info(File file) throws IOException, JSONException {
+    LinkedHashMap<UgiEpc, Entry> entries = new LinkedHashMap<UgiEpc, Entry>();
+    int records = read(file, entries);
+    JSONObject d = new JSONObject();
+    d.put("tags", entries.size());
+    d.put("records", records);
+    d.put("bytes", file.length());
+    d.put("created", created(file));
+    return d;
+  }
+
+  /**
+   * When a snapshot was created, from its header
+   */
+  private static long created(File file) throws IOException {
+    DataInputStream in = new DataInputStream(new FileInputStream(file));
+    try {
+      in.readInt();
+      in.readInt();
+      return in.readLong();
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * The tags in a snapshot, as for tag events
+   */
+  static JSONArray tagsToJson(Collection<Entry> entries) throws JSONException {
+    JSONArray a = new JSONArray();
+    for (Entry entry : entries) a.put(entry.toJson());
+    return a;
+  }
+
+  /**
+   * Delete a snapshot
+   *
+   * @return False if it is being written
+   */
+  static boolean delete(File file) {
+    synchronized (open) {
+      if (open.contains(file)) return false;
+      file.delete();
+      return true;
+    }
+  }
+}
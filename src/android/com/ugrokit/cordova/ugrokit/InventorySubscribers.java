@@ -0,0 +1,311 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.apache.cordova.PluginResult.Status;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+import com.ugrokit.api.*;
+
+/**
+ * JavaScript callbacks subscribed to a running inventory (subscribeInventory) besides the
+ * one that started it, each with its own event types, tag fields and rate limit.
+ *
+ * A tag event is turned into JSON once per distinct set of fields however many subscribers
+ * want it, and subscribers with the same fields and no rate limit are sent the same
+ * PluginResult. A rate limited subscriber gets at most one message per intervalMSec,
+ * with the events since the last one as a batch.
+ */
+class InventorySubscribers
+{
+  static final int DEFAULT_MAX_QUEUED = 1000;
+
+  /**
+   * Event names for the subscribeInventory option "events", bit i is EVENT_NAMES[i].
+   * The tag events are in InventoryEventQueue.TAG_xxx order. The final didStop is
+   * always sent, it ends the subscription.
+   */
+  private static final String[] EVENT_NAMES = { "tagChanged", "tagFound", "tagSubsequentFinds", "historyInterval",
+                                                "didStart", "didStop", "stats", "locate" };
+  private static final int TAG_EVENTS = 0x07;
+
+  /**
+   * One subscriber
+   */
+  static class Subscriber {
+    final String id;
+    private final CallbackContext callbackContext;
+    private final ScheduledExecutorService scheduler;
+    final int events;
+    final int fields;
+    final int intervalMSec;
+    private final int maxQueued;
+
+    private final ArrayDeque<JSONObject> pending = new ArrayDeque<JSONObject>();
+    private ScheduledFuture<?> scheduledFlush;
+    private long lastSent;
+    private boolean closed;
+
+    // statistics
+    private long eventsSent;
+    private long eventsDropped;
+    private long messages;
+
+    private final Runnable flushRunnable = new Runnable() {
+      public void run() {
+        flush();
+      }
+    };
+
+    /**
+     * @param options {events, fields, intervalMSec, maxQueued}, or null for every event and field, unlimited
+     */
+    Subscriber(String id, JSONObject options, CallbackContext callbackContext, ScheduledExecutorService scheduler)
+            throws JSONException {
+      this.id = id;
+      this.callbackContext = callbackContext;
+      this.scheduler = scheduler;
+      this.fields = TagTable.fieldsFromOptions(options);
+      JSONArray names = options != null ? options.optJSONArray("events") : null;
+      if (names == null) {
+        this.events = (1 << EVENT_NAMES.length) - 1;
+      } else {
+        int events = 0;
+        for (int i = 0; i < names.length(); i++) {
+          int bit = Arrays.asList(EVENT_NAMES).indexOf(names.getString(i));
+          if (bit < 0) throw new JSONException("unknown event: " + names.getString(i));
+          events |= 1 << bit;
+        }
+        this.events = events;
+      }
+      this.intervalMSec = options != null ? Math.max(options.optInt("intervalMSec", 0), 0) : 0;
+      this.maxQueued = options != null ? Math.max(options.optInt("maxQueued", DEFAULT_MAX_QUEUED), 1) : DEFAULT_MAX_QUEUED;
+    }
+
+    /**
+     * Send a result right away (no rate limit)
+     */
+    synchronized void send(PluginResult pluginResult) {
+      if (closed) return;
+      eventsSent++;
+      messages++;
+      callbackContext.sendPluginResult(pluginResult);
+    }
+
+    /**
+     * Queue an event for the next message (rate limited), dropping the oldest if too many are waiting
+     */
+    synchronized void add(JSONObject d) {
+      if (closed) return;
+      if (pending.size() >= maxQueued) {
+        pending.poll();
+        eventsDropped++;
+      }
+      pending.add(d);
+      if (scheduledFlush == null) {
+        long delay = Math.max(lastSent + intervalMSec - System.currentTimeMillis(), 0);
+        scheduledFlush = scheduler.schedule(flushRunnable, delay, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    synchronized void flush() {
+      scheduledFlush = null;
+      if (closed || pending.isEmpty()) return;
+      try {
+        JSONArray a = new JSONArray();
+        for (JSONObject d : pending) a.put(d);
+        int numEvents = pending.size();
+        eventsSent += numEvents;
+        pending.clear();
+        JSONObject d = new JSONObject();
+        d.put("_cb", "batch");
+        d.put("events", a);
+        PluginResult pluginResult = new PluginResult(Status.OK, d);
+        pluginResult.setKeepCallback(true);
+        messages++;
+        lastSent = System.currentTimeMillis();
+        callbackContext.sendPluginResult(pluginResult);
+        BridgeMetrics.instance.sent(BridgeMetrics.BATCH, numEvents, pluginResult);
+      } catch (JSONException ex) {
+        Log.e(PluginLog.TAG, "InventorySubscribers.flush", ex);
+      }
+    }
+
+    /**
+     * Send what is waiting and then the final result, which ends the subscription
+     */
+    synchronized void close(PluginResult finalResult) {
+      if (closed) return;
+      if (scheduledFlush != null) {
+        scheduledFlush.cancel(false);
+      }
+      flush();
+      closed = true;
+      messages++;
+      callbackContext.sendPluginResult(finalResult);
+    }
+
+    synchronized JSONObject statsToJson() throws JSONException {
+      JSONObject d = new JSONObject();
+      d.put("sent", eventsSent);
+      d.put("dropped", eventsDropped);
+      d.put("waiting", pending.size());
+      d.put("messages", messages);
+      return d;
+    }
+  }
+
+  private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<Subscriber>();
+  private volatile int wanted;
+  private boolean closed;
+
+  /**
+   * Number of tag events turned into JSON (once per distinct set of fields)
+   */
+  private volatile long serialized;
+
+  /**
+   * @return False if the inventory has already finished
+   */
+  synchronized boolean add(Subscriber subscriber) {
+    if (closed) return false;
+    remove(subscriber.id);
+    subscribers.add(subscriber);
+    wanted |= subscriber.events;
+    return true;
+  }
+
+  synchronized Subscriber remove(String id) {
+    Subscriber removed = null;
+    int events = 0;
+    for (Subscriber subscriber : subscribers) {
+      if (subscriber.id.equals(id)) {
+        removed = subscriber;
+      } else {
+        events |= subscriber.events;
+      }
+    }
+    if (removed != null) subscribers.remove(removed);
+    wanted = events;
+    return removed;
+  }
+
+  boolean wants(String name) {
+    return (wanted & (1 << Arrays.asList(EVENT_NAMES).indexOf(name))) != 0;
+  }
+
+  long getSerialized() {
+    return serialized;
+  }
+
+  /**
+   * Publish a tag event (InventoryEventQueue.TAG_xxx)
+   */
+  void publishTag(int type, UgiTag tag, boolean firstFind, int count, UgiInventory.DetailedPerReadData details[]) {
+    int bit = 1 << (type - InventoryEventQueue.TAG_CHANGED);
+    if ((wanted & bit) == 0) return;
+    InventoryEventQueue.Event event = new InventoryEventQueue.Event(type, tag, firstFind, count, details);
+    // JSON and (for subscribers without a rate limit) PluginResult per distinct set of fields
+    int distinct = 0;
+    int[] fields = null;
+    JSONObject[] json = null;
+    PluginResult[] results = null;
+    try {
+      for (Subscriber subscriber : subscribers) {
+        if ((subscriber.events & bit) == 0) continue;
+        if (fields == null) {
+          int n = subscribers.size();
+          fields = new int[n];
+          json = new JSONObject[n];
+          results = new PluginResult[n];
+        }
+        int i = 0;
+        while ((i < distinct) && (fields[i] != subscriber.fields)) i++;
+        if (i == distinct) {
+          if (i == fields.length) break; // subscribed while publishing, it gets the next event
+          long start = System.nanoTime();
+          fields[i] = subscriber.fields;
+          event.fields = subscriber.fields;
+          json[i] = InventoryEventQueue.toJson(event);
+          BridgeMetrics.instance.serialized(System.nanoTime() - start);
+          serialized++;
+          distinct++;
+        }
+        if (subscriber.intervalMSec > 0) {
+          subscriber.add(json[i]);
+        } else {
+          if (results[i] == null) {
+            long start = System.nanoTime();
+            results[i] = new PluginResult(Status.OK, json[i]);
+            BridgeMetrics.instance.serialized(System.nanoTime() - start);
+            results[i].setKeepCallback(true);
+          }
+          subscriber.send(results[i]);
+          BridgeMetrics.instance.sent(type, 1, results[i]);
+          BridgeMetrics.instance.delivered(event.receivedNanos);
+        }
+      }
+    } catch (JSONException ex) {
+      Log.e(PluginLog.TAG, "InventorySubscribers.publishTag: " + tag, ex);
+    }
+  }
+
+  /**
+   * Publish a non-tag result (didStart, didStop while paused, historyInterval, stats, locate)
+   */
+  void publish(JSONObject d) {
+    int bit = 1 << Arrays.asList(EVENT_NAMES).indexOf(d.optString("_cb"));
+    if ((wanted & bit & ~TAG_EVENTS) == 0) return;
+    PluginResult pluginResult = null;
+    for (Subscriber subscriber : subscribers) {
+      if ((subscriber.events & bit) == 0) continue;
+      if (subscriber.intervalMSec > 0) {
+        subscriber.add(d);
+      } else {
+        if (pluginResult == null) {
+          pluginResult = new PluginResult(Status.OK, d);
+          pluginResult.setKeepCallback(true);
+        }
+        subscriber.send(pluginResult);
+      }
+    }
+  }
+
+  /**
+   * The inventory has finished: send every subscriber the final didStop
+   */
+  synchronized void close(JSONObject didStop) {
+    closed = true;
+    PluginResult pluginResult = new PluginResult(Status.OK, didStop);
+    for (Subscriber subscriber : subscribers) subscriber.close(pluginResult);
+    subscribers.clear();
+    wanted = 0;
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.cordova.CallbackContext;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+/**
+ * Journal actions: journals are written by inventories started with the journal
+ * option (see InventoryJournal) and read back here, by name. Reading and exporting
+ * run on Cordova's thread pool, so long exports do not hold up the other actions.
+ */
+class JournalActions
+{
+  static void register(UGrokIt plugin) {
+    //
+    // getJournalInfo (name)
+    //
+    plugin.registerAction("getJournalInfo", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        File dir = existingDirectory(plugin, args.getString(0), "getJournalInfo", callbackContext);
+        if (dir == null) return;
+        try {
+          callbackContext.success(InventoryJournal.info(dir));
+        } catch (IOException ex) {
+          Log.e(UGrokIt.TAG, "getJournalInfo", ex);
+          callbackContext.error("getJournalInfo: " + ex.getMessage());
+        }
+      }
+    });
+    //
+    // readJournal (name, start, count)
+    //
+    plugin.registerAction("readJournal", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        final File dir = existingDirectory(plugin, args.getString(0), "readJournal", callbackContext);
+        if (dir == null) return;
+        final long start = args.getLong(1);
+        final int count = args.getInt(2);
+        plugin.cordova.getThreadPool().execute(new Runnable() {
+          public void run() {
+            try {
+              callbackContext.success(InventoryJournal.read(dir, start, count));
+            } catch (IOException ex) {
+              Log.e(UGrokIt.TAG, "readJournal", ex);
+              callbackContext.error("readJournal: " + ex.getMessage());
+            } catch (JSONException ex) {
+              Log.e(UGrokIt.TAG, "readJournal", ex);
+              callbackContext.error("readJournal: " + ex.getMessage());
+            }
+          }
+        });
+      }
+    });
+    //
+    // exportJournalCsv (name, start, count)
+    //
+    plugin.registerAction("exportJournalCsv", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        final File dir = existingDirectory(plugin, args.getString(0), "exportJournalCsv", callbackContext);
+        if (dir == null) return;
+        final File out = new File(dir.getParentFile(), dir.getName() + ".csv");
+        final long start = args.optLong(1, 0);
+        final long count = args.isNull(2) ? -1 : args.getLong(2);
+        plugin.cordova.getThreadPool().execute(new Runnable() {
+          public void run() {
+            try {
+              long records = InventoryJournal.exportCsv(dir, start, count, out);
+              JSONObject d = new JSONObject();
+              d.put("path", out.getAbsolutePath());
+              d.put("records", records);
+              callbackContext.success(d);
+            } catch (IOException ex) {
+              Log.e(UGrokIt.TAG, "exportJournalCsv", ex);
+              callbackContext.error("exportJournalCsv: " + ex.getMessage());
+            } catch (JSONException ex) {
+              Log.e(UGrokIt.TAG, "exportJournalCsv", ex);
+              callbackContext.error("exportJournalCsv: " + ex.getMessage());
+            }
+          }
+        });
+      }
+    });
+    //
+    // deleteJournal (name)
+    //
+    plugin.registerAction("deleteJournal", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        File dir = directory(plugin, args.getString(0));
+        if (dir == null) {
+          callbackContext.error("deleteJournal called with an invalid name");
+        } else if (!InventoryJournal.delete(dir)) {
+          callbackContext.error("deleteJournal called for a journal being written");
+        } else {
+          new File(dir.getParentFile(), dir.getName() + ".csv").delete();
+          callbackContext.success();
+        }
+      }
+    });
+  }
+
+  /**
+   * Directory for a journal, or null if the name is not valid
+   */
+  static File directory(UGrokIt plugin, String name) {
+    return InventoryJournal.directory(plugin.cordova.getActivity().getFilesDir(), name);
+  }
+
+  private static File existingDirectory(UGrokIt plugin, String name, String action, CallbackContext callbackContext) {
+    File dir = directory(plugin, name);
+    if ((dir == null) || !dir.isDirectory()) {
+      callbackContext.error(action + " called with unknown journal");
+      return null;
+    }
+    return dir;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Lock-free latency histogram with log-linear buckets: each power of two is split
+ * into SUB_BUCKETS buckets, so reported percentiles are within 1/SUB_BUCKETS of the
+ * real value. Values are recorded in microseconds.
+ */
+class LatencyHistogram
+{
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_VALUE_BITS = 36;
+  private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+  private static final int NUM_BUCKETS = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) return (int) value;
+    int msb = 63 - Long.numberOfLeadingZeros(value);
+    int shift = msb - SUB_BUCKET_BITS;
+    return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  static long bucketLowerBound(int index) {
+    if (index < SUB_BUCKETS) return index;
+    int shift = (index >> SUB_BUCKET_BITS) - 1;
+    return (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+  }
+
+  static long bucketUpperBound(int index) {
+    return bucketLowerBound(index + 1) - 1;
+  }
+
+  void recordNanos(long nanos) {
+    record(nanos / 1000);
+  }
+
+  void record(long usec) {
+    if (usec < 0) usec = 0;
+    if (usec > MAX_VALUE) usec = MAX_VALUE;
+    counts.incrementAndGet(bucketIndex(usec));
+    count.incrementAndGet();
+    sum.addAndGet(usec);
+    long m;
+    while (usec > (m = max.get())) {
+      if (max.compareAndSet(m, usec)) break;
+    }
+  }
+
+  long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Value (in usec) that the given fraction (0...1) of the recorded values are at or below
+   */
+  long getValueAtPercentile(double fraction) {
+    long total = count.get();
+    if (total == 0) return 0;
+    long target = (long) Math.ceil(fraction * total);
+    if (target < 1) target = 1;
+    long seen = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= target) return Math.min(bucketUpperBound(i), max.get());
+    }
+    return max.get();
+  }
+
+  void reset() {
+    for (int i = 0; i < NUM_BUCKETS; i++) counts.set(i, 0);
+    count.set(0);
+    sum.set(0);
+    max.set(0);
+  }
+
+  JSONObject toJson() throws JSONException {
+    JSONObject d = new JSONObject();
+    long n = count.get();
+    d.put("count", n);
+    d.put("meanUsec", n > 0 ? sum.get() / n : 0);
+    d.put("p50Usec", getValueAtPercentile(0.50));
+    d.put("p90Usec", getValueAtPercentile(0.90));
+    d.put("p99Usec", getValueAtPercentile(0.99));
+    d.put("maxUsec", max.get());
+    return d;
+  }
+}
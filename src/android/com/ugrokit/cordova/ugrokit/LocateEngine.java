@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.util.*;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.ugrokit.api.*;
+
+/**
+ * Native locate ("geiger counter") for one or a few target EPCs (startInventory option "locate").
+ * Each read's RSSI magnitude, in dB, is smoothed with a one dimensional Kalman filter
+ * (a random walk, so the estimate follows the reader as it moves) or an exponential moving
+ * average. snapshot() is called at a fixed rate and gives a proximity score for each target:
+ * the smoothed RSSI scaled to 0...1 between locateMinRssi and locateMaxRssi (or the range seen
+ * so far), faded out over locateStaleMSec once the tag stops being read.
+ */
+class LocateEngine
+{
+  static final int DEFAULT_RATE_HZ = 20;
+  static final double DEFAULT_ALPHA = 0.3;
+  static final double DEFAULT_PROCESS_NOISE = 20;     // dB^2 per second
+  static final double DEFAULT_MEASUREMENT_NOISE = 16; // dB^2
+  static final int DEFAULT_STALE_MSEC = 1000;
+
+  /**
+   * Smallest range (dB) of RSSI seen that is used to scale the score
+   */
+  private static final double MIN_ADAPTIVE_RANGE = 1;
+
+  /**
+   * Filter state for one target
+   */
+  private static class Target {
+    final UgiEpc epc;
+    boolean seen;
+    double rssi;
+    double variance;
+    long lastRead;
+    int readsSinceSnapshot;
+    boolean sentZero;
+
+    Target(UgiEpc epc) {
+      this.epc = epc;
+    }
+  }
+
+  private final LinkedHashMap<UgiEpc, Target> targets = new LinkedHashMap<UgiEpc, Target>();
+  final int rateHz;
+  private final boolean kalman;
+  private final double alpha;
+  private final double processNoise;
+  private final double measurementNoise;
+  private final int staleMSec;
+  private final boolean fixedRange;
+  private double minRssi;
+  private double maxRssi;
+  private long lastSnapshot;
+
+  LocateEngine(JSONObject options) throws JSONException {
+    String filter = options.optString("locateFilter", "kalman");
+    if (!filter.equals("kalman") && !filter.equals("ema")) throw new JSONException("unknown locateFilter: " + filter);
+    this.kalman = filter.equals("kalman");
+    this.rateHz = Math.min(Math.max(options.optInt("locateRateHz", DEFAULT_RATE_HZ), 1), 100);
+    this.alpha = Math.min(Math.max(options.optDouble("locateAlpha", DEFAULT_ALPHA), 0.01), 1);
+    this.processNoise = Math.max(options.optDouble("locateProcessNoise", DEFAULT_PROCESS_NOISE), 0);
+    this.measurementNoise = Math.max(options.optDouble("locateMeasurementNoise", DEFAULT_MEASUREMENT_NOISE), 0.001);
+    this.staleMSec = Math.max(options.optInt("locateStaleMSec", DEFAULT_STALE_MSEC), 1);
+    this.fixedRange = options.has("locateMinRssi") && options.has("locateMaxRssi");
+    if (fixedRange) {
+      this.minRssi = options.getDouble("locateMinRssi");
+      this.maxRssi = options.getDouble("locateMaxRssi");
+      if (maxRssi <= minRssi) throw new JSONException("locateMaxRssi must be more than locateMinRssi");
+    } else {
+      this.minRssi = Double.MAX_VALUE;
+      this.maxRssi = -Double.MAX_VALUE;
+    }
+    setTargets(options.optJSONArray("locate"));
+  }
+
+  /**
+   * Create a locate engine from the startInventory options, or return null if it was not requested
+   */
+  static LocateEngine fromOptions(JSONObject options) throws JSONException {
+    if ((options == null) || !options.has("locate")) return null;
+    return new LocateEngine(options);
+  }
+
+  /**
+   * Replace the targets (array of EPC hex strings), keeping the state of targets that remain
+   */
+  synchronized void setTargets(JSONArray epcs) throws JSONException {
+    LinkedHashMap<UgiEpc, Target> old = new LinkedHashMap<UgiEpc, Target>(targets);
+    targets.clear();
+    if (epcs == null) return;
+    for (int i = 0; i < epcs.length(); i++) {
+      byte[] ba = HexCodec.decode(epcs.getString(i));
+      if ((ba == null) || (ba.length == 0)) throw new JSONException("invalid locate EPC: " + epcs.getString(i));
+      UgiEpc epc = new UgiEpc(ba);
+      Target target = old.get(epc);
+      targets.put(epc, target != null ? target : new Target(epc));
+    }
+  }
+
+  /**
+   * Add reads of a tag (tagFound or tagSubsequentFinds), ignored if it is not a target
+   *
+   * @param count Number of reads
+   * @param details Per-read data, or null
+   */
+  synchronized void add(UgiTag tag, int count, UgiInventory.DetailedPerReadData details[]) {
+    Target target = targets.get(tag.getEpc());
+    if (target == null) return;
+    target.readsSinceSnapshot += count;
+    if ((details != null) && (details.length > 0)) {
+      for (UgiInventory.DetailedPerReadData detail : details) {
+        addRssi(target, detail.getTimestamp().getTime(), detail.getRssiI(), detail.getRssiQ());
+      }
+    } else {
+      UgiTagReadState readState = tag.getTagReadState();
+      addRssi(target, readState.getMostRecentRead().getTime(), readState.getMostRecentRssiI(), readState.getMostRecentRssiQ());
+    }
+  }
+
+  private void addRssi(Target target, long time, double rssiI, double rssiQ) {
+    double magnitude = Math.sqrt(rssiI * rssiI + rssiQ * rssiQ);
+    if (magnitude <= 0) return;
+    double z = 20 * Math.log10(magnitude);
+    if (!target.seen) {
+      target.seen = true;
+      target.rssi = z;
+      target.variance = measurementNoise;
+    } else if (kalman) {
+      double dt = Math.max(time - target.lastRead, 0) / 1000.0;
+      target.variance += processNoise * dt;
+      double gain = target.variance / (target.variance + measurementNoise);
+      target.rssi += gain * (z - target.rssi);
+      target.variance *= 1 - gain;
+    } else {
+      target.rssi += alpha * (z - target.rssi);
+    }
+    target.lastRead = Math.max(target.lastRead, time);
+    if (!fixedRange) {
+      if (target.rssi < minRssi) minRssi = target.rssi;
+      if (target.rssi > maxRssi) maxRssi = target.rssi;
+    }
+  }
+
+  private double score(Target target, long now) {
+    if (!target.seen) return 0;
+    double freshness = 1 - (double) (now - target.lastRead) / staleMSec;
+    if (freshness <= 0) return 0;
+    double range = maxRssi - minRssi;
+    double proximity = range < MIN_ADAPTIVE_RANGE ? 1 : (target.rssi - minRssi) / range;
+    return Math.min(Math.max(proximity, 0), 1) * Math.min(freshness, 1);
+  }
+
+  /**
+   * Proximity of the targets: {time, targets: [{epc, score, rssi, readsPerSecond, lastSeen}]},
+   * or null if every target was out of range for the last snapshot too
+   *
+   * @param now Current time (ms since epoch)
+   */
+  synchronized JSONObject snapshot(long now) throws JSONException {
+    double seconds = lastSnapshot > 0 ? Math.max(now - lastSnapshot, 1) / 1000.0 : 1.0 / rateHz;
+    lastSnapshot = now;
+    JSONArray a = new JSONArray();
+    boolean allSentZero = true;
+    for (Target target : targets.values()) {
+      double score = score(target, now);
+      JSONObject t = new JSONObject();
+      t.put("epc", target.epc.toString());
+      t.put("score", score);
+      if (target.seen) {
+        t.put("rssi", target.rssi);
+        t.put("lastSeen", target.lastRead);
+      }
+      t.put("readsPerSecond", target.readsSinceSnapshot / seconds);
+      a.put(t);
+      boolean zero = (score == 0) && (target.readsSinceSnapshot == 0);
+      if (!zero || !target.sentZero) allSentZero = false;
+      target.sentZero = zero;
+      target.readsSinceSnapshot = 0;
+    }
+    if (allSentZero) return null;
+    JSONObject d = new JSONObject();
+    d.put("time", now);
+    d.put("targets", a);
+    return d;
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.apache.cordova.PluginResult.Status;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+import com.ugrokit.api.*;
+
+/**
+ * Reader information for the connection state callbacks (addConnectionStateCallback)
+ * and getReaderInfo.
+ *
+ * This is the only connection state listener registered with the SDK. On each change it
+ * reads the reader information once and sends it to every callback: in full the first
+ * time, after that only the fields that changed (JavaScript merges them), and nothing if
+ * nothing changed. The last snapshot is kept so getReaderInfo does not call the SDK.
+ */
+class ReaderInfo implements Ugi.ConnectionStateListener
+{
+  private static class Callback {
+    final CallbackContext callbackContext;
+    JSONObject lastSent;
+
+    Callback(CallbackContext callbackContext) {
+      this.callbackContext = callbackContext;
+    }
+  }
+
+  private final ConcurrentHashMap<Integer, Callback> callbacks = new ConcurrentHashMap<Integer, Callback>();
+  private volatile JSONObject snapshot;
+
+  void addCallback(int id, CallbackContext callbackContext) {
+    callbacks.put(id, new Callback(callbackContext));
+  }
+
+  void removeCallback(int id) {
+    callbacks.remove(id);
+  }
+
+  void removeAllCallbacks() {
+    callbacks.clear();
+  }
+
+  /**
+   * The reader information as of the last connection state change, or null before the first
+   */
+  JSONObject getLastSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * The reader information as of the last connection state change. Call on the UI thread:
+   * before the first change it is read from the SDK.
+   */
+  JSONObject getSnapshot() throws JSONException {
+    JSONObject d = snapshot;
+    if (d == null) {
+      d = read(UGrokIt.ugi.getConnectionState());
+      snapshot = d;
+    }
+    return d;
+  }
+
+  private static JSONObject read(Ugi.ConnectionStates connectionState) throws JSONException {
+    Ugi ugi = UGrokIt.ugi;
+    JSONObject d = new JSONObject();
+    d.put("state", connectionState.ordinal());
+    d.put("isAnythingPluggedIntoAudioJack", ugi.isAnythingPluggedIntoAudioJack());
+    d.put("requiredProtocolVersion", ugi.getRequiredProtocolVersion());
+    d.put("supportedProtocolVersion", ugi.getSupportedProtocolVersion());
+    d.put("readerProtocolVersion", ugi.getReaderProtocolVersion());
+    d.put("readerHardwareModel", ugi.getReaderHardwareModel());
+    d.put("readerSerialNumber", ugi.getReaderSerialNumber());
+    d.put("firmwareVersion", ugi.getFirmwareVersionMajor() + "." + ugi.getFirmwareVersionMinor() + "."
+                             + ugi.getFirmwareVersionBuild());
+    d.put("regionName", ugi.getRegionName());
+    d.put("numVolumeLevels", ugi.getNumVolumeLevels());
+    d.put("batteryCapacity", ugi.getBatteryCapacity());
+    d.put("batteryCapacity_mAh", ugi.getBatteryCapacity_mAh());
+    d.put("readerDescription", ugi.getReaderDescription());
+    return d;
+  }
+
+  /**
+   * The fields of current that differ from previous (with the state), or null if none do
+   */
+  static JSONObject diff(JSONObject previous, JSONObject current) throws JSONException {
+    JSONObject d = null;
+    for (Iterator<String> it = current.keys(); it.hasNext(); ) {
+      String key = it.next();
+      Object value = current.opt(key);
+      if (value.equals(previous.opt(key))) continue;
+      if (d == null) {
+        d = new JSONObject();
+        d.put("state", current.opt("state"));
+      }
+      d.put(key, value);
+    }
+    return d;
+  }
+
+  private static PluginResult result(JSONObject d) {
+    if (d == null) return null;
+    PluginResult pluginResult = new PluginResult(Status.OK, d);
+    pluginResult.setKeepCallback(true);
+    return pluginResult;
+  }
+
+  @Override
+  public synchronized void connectionStateChanged(Ugi.ConnectionStates connectionState) {
+    try {
+      JSONObject previous = snapshot;
+      JSONObject current = read(connectionState);
+      snapshot = current;
+      // callbacks mostly all last got the previous snapshot, so share the results
+      PluginResult full = null;
+      PluginResult changes = null;
+      boolean haveChanges = false;
+      for (Callback callback : callbacks.values()) {
+        PluginResult pluginResult;
+        if (callback.lastSent == null) {
+          if (full == null) full = result(current);
+          pluginResult = full;
+        } else if (callback.lastSent == previous) {
+          if (!haveChanges) {
+            changes = result(diff(previous, current));
+            haveChanges = true;
+          }
+          pluginResult = changes;
+        } else {
+          pluginResult = result(diff(callback.lastSent, current));
+        }
+        callback.lastSent = current;
+        if (pluginResult != null) callback.callbackContext.sendPluginResult(pluginResult);
+      }
+    } catch (JSONException ex) {
+      Log.e(UGrokIt.TAG, "connectionStateChanged", ex);
+    }
+  }
+}
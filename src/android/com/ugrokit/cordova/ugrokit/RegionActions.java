@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import org.apache.cordova.CallbackContext;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+import com.ugrokit.api.*;
+
+/**
+ * Region actions
+ */
+class RegionActions
+{
+  static void register(UGrokIt plugin) {
+    //
+    // userMustSetRegion
+    //
+    plugin.registerAction("userMustSetRegion", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        plugin.callSdk("userMustSetRegion", callbackContext, new UGrokIt.SdkCall<Boolean>() {
+          public Boolean call() {
+            return UGrokIt.ugi.getUserMustSetRegion();
+          }
+        }, valueResult(callbackContext));
+      }
+    });
+    //
+    // userCanSetRegion
+    //
+    plugin.registerAction("userCanSetRegion", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        plugin.callSdk("userCanSetRegion", callbackContext, new UGrokIt.SdkCall<Boolean>() {
+          public Boolean call() {
+            return UGrokIt.ugi.getUserCanSetRegion();
+          }
+        }, valueResult(callbackContext));
+      }
+    });
+    //
+    // getRegionNames
+    //
+    plugin.registerAction("getRegionNames", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        plugin.callSdk("getRegionNames", callbackContext, new UGrokIt.SdkCall<Void>() {
+          public Void call() {
+            UGrokIt.ugi.getRegionNames(new Ugi.GetRegionNamesCompletion() {
+              @Override
+              public void exec(String[] regionNames, int selectedIndex) {
+                if (regionNames != null) {
+                  try {
+                    JSONObject d = new JSONObject();
+                    JSONArray a = new JSONArray();
+                    for (String name : regionNames) {
+                      a.put(name);
+                    }
+                    d.put("regionNames", a);
+                    d.put("selectedIndex", selectedIndex);
+                    callbackContext.success(d);
+                  } catch (JSONException ex) {
+                    Log.e(UGrokIt.TAG, "getRegionNames callback", ex);
+                  }
+                } else {
+                  callbackContext.success();
+                }
+              }
+            });
+            return null;
+          }
+        }, null);
+      }
+    });
+    //
+    // setRegion (regionName)
+    //
+    plugin.registerAction("setRegion", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        final String regionName = args.getString(0);
+        plugin.callSdk("setRegion", callbackContext, new UGrokIt.SdkCall<Void>() {
+          public Void call() {
+            UGrokIt.ugi.setRegion(regionName, new Ugi.SetRegionCompletion() {
+              @Override
+              public void exec(boolean success) {
+                try {
+                  JSONObject d = new JSONObject();
+                  d.put("success", success);
+                  callbackContext.success(d);
+                } catch (JSONException ex) {
+                  Log.e(UGrokIt.TAG, "setRegion callback", ex);
+                }
+              }
+            });
+            return null;
+          }
+        }, null);
+      }
+    });
+  }
+
+  /**
+   * Result {value} from a boolean the SDK returned
+   */
+  private static UGrokIt.SdkResult<Boolean> valueResult(final CallbackContext callbackContext) {
+    return new UGrokIt.SdkResult<Boolean>() {
+      public void result(Boolean value) throws JSONException {
+        JSONObject d = new JSONObject();
+        d.put("value", value.booleanValue());
+        callbackContext.success(d);
+      }
+    };
+  }
+}
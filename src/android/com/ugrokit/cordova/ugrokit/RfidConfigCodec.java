@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import com.ugrokit.api.*;
+
+/**
+ * RFID configurations as the 37 positional values used by UgiRfidConfiguration
+ * in JavaScript (see UgiRfidConfiguration.values() in ugirfidconfiguration.js).
+ */
+class RfidConfigCodec
+{
+  private RfidConfigCodec() {
+  }
+
+  /**
+   * Build a configuration from the 37 positional values sent by UgiRfidConfiguration.values()
+   */
+  static UgiRfidConfiguration fromValues(JSONArray values) throws JSONException {
+    byte[] selectMask = null;
+    int selectMaskBitLength = 0;
+    String maskString = values.getString(28);
+    if (maskString.length() > 0) {
+      selectMask = HexCodec.decode(maskString);
+      if (selectMask == null) throw new JSONException("invalid selectMask: " + maskString);
+      selectMaskBitLength = values.getInt(29);
+      if (selectMaskBitLength == 0) {
+        selectMaskBitLength = selectMask.length * 8;
+      }
+    }
+    return new UgiRfidConfiguration.Builder().withInitialPowerLevel(values.getDouble(0))
+                                             .withMinPowerLevel(values.getDouble(1))
+                                             .withMaxPowerLevel(values.getDouble(2))
+                                             .withInitialQValue(values.getInt(3))
+                                             .withMinQValue(values.getInt(4))
+                                             .withMaxQValue(values.getInt(5))
+                                             .withSession(values.getInt(6))
+                                             .withRoundsWithNoFindsToToggleAB(values.getInt(7))
+                                             .withSensitivity(values.getInt(8))
+                                             .withPowerLevelWrite(values.getDouble(9))
+                                             .withSensitivityWrite(values.getInt(10))
+                                             .withSetListenBeforeTalk(values.getBoolean(11))
+                                             .withListenBeforeTalk(values.getBoolean(12))
+                                             .withMaxRoundsPerSecond(values.getInt(13))
+                                             .withMinTidBytes(values.getInt(14))
+                                             .withMaxTidBytes(values.getInt(15))
+                                             .withMinUserBytes(values.getInt(16))
+                                             .withMaxUserBytes(values.getInt(17))
+                                             .withMinReservedBytes(values.getInt(18))
+                                             .withMaxReservedBytes(values.getInt(19))
+                                             .withContinual(values.getBoolean(20))
+                                             .withReportRssi(values.getBoolean(21))
+                                             .withDetailedPerReadData(values.getBoolean(22))
+                                             .withReportSubsequentFinds(values.getBoolean(23))
+                                             .withSoundType(UgiRfidConfiguration.SoundTypes.values()[values.getInt(24)])
+                                             .withVolume(values.getDouble(25))
+                                             .withHistoryIntervalMSec(values.getInt(26))
+                                             .withHistoryDepth(values.getInt(27))
+                                             .withSelectMask(selectMask)
+                                             .withSelectMaskBitLength(selectMaskBitLength)
+                                             .withSelectOffset(values.getInt(30))
+                                             .withSelectBank(UgiRfidConfiguration.MemoryBank.values()[values.getInt(31)])
+                                             .withDetailedPerReadNumReads(values.getInt(32))
+                                             .withDetailedPerReadMemoryBank1(UgiRfidConfiguration.MemoryBank.values()[values.getInt(33)])
+                                             .withDetailedPerReadWordOffset1(values.getInt(34))
+                                             .withDetailedPerReadMemoryBank2(UgiRfidConfiguration.MemoryBank.values()[values.getInt(35)])
+                                             .withDetailedPerReadWordOffset2(values.getInt(36))
+                                             .build();
+  }
+
+  /**
+   * Append the 37 positional values for a configuration
+   */
+  static void toValues(UgiRfidConfiguration config, JSONArray a) throws JSONException {
+    a.put(config.getInitialPowerLevel());
+    a.put(config.getMinPowerLevel());
+    a.put(config.getMaxPowerLevel());
+    a.put(config.getInitialQValue());
+    a.put(config.getMinQValue());
+    a.put(config.getMaxQValue());
+    a.put(config.getSession());
+    a.put(config.getRoundsWithNoFindsToToggleAB());
+    a.put(config.getSensitivity());
+    a.put(config.getPowerLevelWrite());
+    a.put(config.getSensitivityWrite());
+    a.put(config.getSetListenBeforeTalk());
+    a.put(config.getListenBeforeTalk());
+    a.put(config.getMaxRoundsPerSecond());
+    a.put(config.getMinTidBytes());
+    a.put(config.getMaxTidBytes());
+    a.put(config.getMinUserBytes());
+    a.put(config.getMaxUserBytes());
+    a.put(config.getMinReservedBytes());
+    a.put(config.getMaxReservedBytes());
+    a.put(config.wantsContinual());
+    a.put(config.wantsReportRssi());
+    a.put(config.wantsDetailedPerReadData());
+    a.put(config.wantsReportSubsequentFinds());
+    a.put(config.getSoundType().ordinal());
+    a.put(config.getVolume());
+    a.put(config.getHistoryIntervalMSec());
+    a.put(config.getHistoryDepth());
+    byte[] mask = config.getSelectMask();
+    a.put(mask != null ? HexCodec.encode(mask) : "");
+    a.put(config.getSelectMaskBitLength());
+    a.put(config.getSelectOffset());
+    a.put(config.getSelectBank().getInternalCode());
+    a.put(config.getDetailedPerReadNumReads());
+    a.put(config.getDetailedPerReadMemoryBank1().getInternalCode());
+    a.put(config.getDetailedPerReadWordOffset1());
+    a.put(config.getDetailedPerReadMemoryBank2().getInternalCode());
+    a.put(config.getDetailedPerReadWordOffset2());
+  }
+
+  private static JSONArray standardConfigs;
+
+  /**
+   * The SDK's preset configurations for getRfidConfigs: [values of all presets, names].
+   * The presets never change, so they are encoded once and the same array is returned after that.
+   */
+  static synchronized JSONArray standardConfigs() throws JSONException {
+    if (standardConfigs == null) standardConfigs = encodeStandardConfigs();
+    return standardConfigs;
+  }
+
+  private static JSONArray encodeStandardConfigs() throws JSONException {
+    JSONArray a = new JSONArray();
+    JSONArray names = new JSONArray();
+    UgiRfidConfiguration[] configs = { UgiRfidConfiguration.LOCATE_DISTANCE, UgiRfidConfiguration.INVENTORY_SHORT_RANGE, UgiRfidConfiguration.INVENTORY_DISTANCE, UgiRfidConfiguration.LOCATE_SHORT_RANGE, UgiRfidConfiguration.LOCATE_VERY_SHORT_RANGE };
+    for (int i = 0; i < configs.length; i++) {
+      toValues(configs[i], a);
+      names.put(UgiRfidConfiguration.getNameForInventoryType(i+1));
+    }
+    JSONArray ret = new JSONArray();
+    ret.put(a);
+    ret.put(names);
+    return ret;
+  }
+}
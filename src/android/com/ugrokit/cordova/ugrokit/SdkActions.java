@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import org.apache.cordova.CallbackContext;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+import com.ugrokit.api.*;
+
+/**
+ * Actions for SDK information, RFID configurations, logging and plugin diagnostics
+ */
+class SdkActions
+{
+  static void register(UGrokIt plugin) {
+    //
+    // getSdkStaticInfo
+    //
+    plugin.registerAction("getSdkStaticInfo", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        plugin.callSdk("getSdkStaticInfo", callbackContext, new UGrokIt.SdkCall<long[]>() {
+          public long[] call() {
+            Ugi ugi = UGrokIt.ugi;
+            return new long[] { ugi.getSdkVersionMajor(), ugi.getSdkVersionMinor(), ugi.getSdkVersionBuild(),
+                                ugi.getSdkVersionDateTime().getTime() };
+          }
+        }, new UGrokIt.SdkResult<long[]>() {
+          public void result(long[] version) throws JSONException {
+            JSONObject d = new JSONObject();
+            d.put("sdkVersionMajor", version[0]);
+            d.put("sdkVersionMinor", version[1]);
+            d.put("sdkVersionBuild", version[2]);
+            d.put("sdkVersionDateTime", version[3]);
+            callbackContext.success(d);
+          }
+        });
+      }
+    });
+    //
+    // getRfidConfigs
+    //
+    plugin.registerAction("getRfidConfigs", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        callbackContext.success(RfidConfigCodec.standardConfigs());
+      }
+    });
+    //
+    // log
+    //
+    plugin.registerAction("log", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        Log.i(UGrokIt.TAG, args.getString(0));
+        callbackContext.success();
+      }
+    });
+    //
+    // setLogging (logging, metricsIntervalMSec)
+    //
+    plugin.registerAction("setLogging", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        final int logging = args.getInt(0);
+        plugin.callSdk("setLogging", callbackContext, new UGrokIt.SdkCall<Void>() {
+          public Void call() {
+            UGrokIt.ugi.setLoggingStatus(logging & ~BridgeMetrics.LOGGING_METRICS);
+            return null;
+          }
+        }, null);
+        int metricsIntervalMSec = args.optInt(1, BridgeMetrics.DEFAULT_LOG_INTERVAL_MSEC);
+        BridgeMetrics.instance.setLogInterval(plugin.scheduler,
+                                              (logging & BridgeMetrics.LOGGING_METRICS) != 0 ? metricsIntervalMSec : 0);
+        callbackContext.success();
+      }
+    });
+    //
+    // getActionLatencies (reset)
+    //
+    plugin.registerAction("getActionLatencies", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        boolean reset = args.optBoolean(0);
+        callbackContext.success(plugin.getActionStats(reset));
+      }
+    });
+    //
+    // getMetrics (reset)
+    //
+    plugin.registerAction("getMetrics", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        boolean reset = args.optBoolean(0);
+        callbackContext.success(BridgeMetrics.instance.toJson(reset));
+      }
+    });
+  }
+}
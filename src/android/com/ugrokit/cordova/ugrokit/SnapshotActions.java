@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.cordova.CallbackContext;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import android.util.Log;
+
+/**
+ * Snapshot actions: snapshots are written by inventories started with the snapshot
+ * option (see InventorySnapshot) and looked at or deleted here, by name
+ */
+class SnapshotActions
+{
+  static void register(UGrokIt plugin) {
+    //
+    // getSnapshotInfo (name)
+    //
+    plugin.registerAction("getSnapshotInfo", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        File file = file(plugin, args.getString(0));
+        if ((file == null) || !file.isFile()) {
+          callbackContext.error("getSnapshotInfo called with unknown snapshot");
+          return;
+        }
+        try {
+          callbackContext.success(InventorySnapshot.info(file));
+        } catch (IOException ex) {
+          Log.e(UGrokIt.TAG, "getSnapshotInfo", ex);
+          callbackContext.error("getSnapshotInfo: " + ex.getMessage());
+        }
+      }
+    });
+    //
+    // checkpointInventory (id) -- write the snapshot of a running inventory now
+    //
+    plugin.registerAction("checkpointInventory", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        InventorySnapshot snapshot = inventoryInfo != null ? inventoryInfo.snapshot : null;
+        if (snapshot == null) {
+          callbackContext.error("checkpointInventory called with no inventory writing a snapshot");
+          return;
+        }
+        try {
+          snapshot.checkpoint();
+          callbackContext.success();
+        } catch (IOException ex) {
+          Log.e(UGrokIt.TAG, "checkpointInventory", ex);
+          callbackContext.error("checkpointInventory: " + ex.getMessage());
+        }
+      }
+    });
+    //
+    // deleteSnapshot (name)
+    //
+    plugin.registerAction("deleteSnapshot", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        File file = file(plugin, args.getString(0));
+        if (file == null) {
+          callbackContext.error("deleteSnapshot called with an invalid name");
+        } else if (!InventorySnapshot.delete(file)) {
+          callbackContext.error("deleteSnapshot called for a snapshot being written");
+        } else {
+          callbackContext.success();
+        }
+      }
+    });
+  }
+
+  /**
+   * File for a snapshot, or null if the name is not valid
+   */
+  static File file(UGrokIt plugin, String name) {
+    return InventorySnapshot.file(plugin.cordova.getActivity().getFilesDir(), name);
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.util.*;
+
+import org.apache.cordova.CallbackContext;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+import com.ugrokit.api.*;
+
+/**
+ * Tag access actions: program, write, lock/unlock, read, custom commands and
+ * batches of accesses. These all need a running inventory. Arguments are parsed and
+ * results built on the executor thread; only the SDK calls are made on the UI thread.
+ */
+class TagAccessActions
+{
+  static void register(UGrokIt plugin) {
+    //
+    // programTag (id, oldEpc, newEpc, password)
+    //
+    plugin.registerAction("programTag", new ActionHandler() {
+      public void execute(final UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        if (inventoryInfo != null) {
+          final UgiEpc oldEpc = new UgiEpc(args.getString(1));
+          final UgiEpc newEpc = new UgiEpc(args.getString(2));
+          final int password = args.getInt(3);
+          inventoryInfo.withInventory("programTag", callbackContext, new InventoryInfo.InventoryCall() {
+            public void call(UgiInventory inventory) {
+              inventory.programTag(oldEpc, newEpc, password, tagAccessCompletion(plugin, callbackContext, "programTag"));
+            }
+          });
+        } else {
+          callbackContext.error("programTag called with no active inventory");
+        }
+      }
+    });
+    //
+    // writeTag (id, epc, memoryBank, offset, data, previousData, password)
+    //
+    plugin.registerAction("writeTag", new ActionHandler() {
+      public void execute(final UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        if (inventoryInfo != null) {
+          final UgiEpc epc = new UgiEpc(args.getString(1));
+          final UgiRfidConfiguration.MemoryBank memoryBank = UgiRfidConfiguration.MemoryBank.values()[args.getInt(2)];
+          final int offset = args.getInt(3);
+          final byte[] data = HexCodec.decode(args.getString(4));
+          final byte[] previousData = HexCodec.decode(args.getString(5));
+          final int password = args.getInt(6);
+          if ((data != null) && (data.length > 0)) {
+            inventoryInfo.withInventory("writeTag", callbackContext, new InventoryInfo.InventoryCall() {
+              public void call(UgiInventory inventory) {
+                inventory.writeTag(epc, memoryBank, offset, data, previousData, password, tagAccessCompletion(plugin, callbackContext, "writeTag"));
+              }
+            });
+          }
+        } else {
+          callbackContext.error("writeTag called with no active inventory");
+        }
+      }
+    });
+    //
+    // lockUnlockTag (id, epc, maskAndAction, password)
+    //
+    plugin.registerAction("lockUnlockTag", new ActionHandler() {
+      public void execute(final UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        if (inventoryInfo != null) {
+          final UgiEpc epc = new UgiEpc(args.getString(1));
+          final int maskAndAction = args.getInt(2);
+          final int password = args.getInt(3);
+          inventoryInfo.withInventory("lockUnlockTag", callbackContext, new InventoryInfo.InventoryCall() {
+            public void call(UgiInventory inventory) {
+              inventory.lockUnlockTag(epc, maskAndAction, password, tagAccessCompletion(plugin, callbackContext, "lockUnlockTag"));
+            }
+          });
+        } else {
+          callbackContext.error("lockUnlockTag called with no active inventory");
+        }
+      }
+    });
+    //
+    // readTag (id, epc, memoryBank, offset, minNumBytes, maxNumBytes)
+    //
+    plugin.registerAction("readTag", new ActionHandler() {
+      public void execute(final UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        if (inventoryInfo != null) {
+          final UgiEpc epc = new UgiEpc(args.getString(1));
+          final UgiRfidConfiguration.MemoryBank memoryBank = UgiRfidConfiguration.MemoryBank.values()[args.getInt(2)];
+          final int offset = args.getInt(3);
+          final int minNumBytes = args.getInt(4);
+          final int maxNumBytes = args.getInt(5);
+          inventoryInfo.withInventory("readTag", callbackContext, new InventoryInfo.InventoryCall() {
+            public void call(UgiInventory inventory) {
+              inventory.readTag(epc, memoryBank, offset, minNumBytes, maxNumBytes, new UgiInventory.TagReadCompletion() {
+                @Override
+                public void exec(final UgiTag tag, final byte[] data, final UgiInventory.TagAccessReturnValues result) {
+                  final UgiTagReadState readState = tag.getTagReadState();
+                  plugin.actionExecutor().execute(new Runnable() {
+                    public void run() {
+                      try {
+                        JSONObject d = new JSONObject();
+                        d.put("result", result.ordinal());
+                        d.put("data", HexCodec.encode(data));
+                        TagJson.tagToJson(d, tag, readState);
+                        callbackContext.success(d);
+                      } catch (JSONException ex) {
+                        Log.e(UGrokIt.TAG, "readTag callback", ex);
+                      }
+                    }
+                  });
+                }
+              });
+            }
+          });
+        } else {
+          callbackContext.error("readTag called with no active inventory");
+        }
+      }
+    });
+    //
+    // customCommandToTag (id, epc, command, commandBits, responseBitLengthNoHeaderBit,
+    //                     responseBitLengthWithHeaderBit, receiveTimeoutUsec)
+    //
+    plugin.registerAction("customCommandToTag", new ActionHandler() {
+      public void execute(final UGrokIt plugin, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        if (inventoryInfo != null) {
+          final UgiEpc epc = new UgiEpc(args.getString(1));
+          final byte[] commandBytes = HexCodec.decode(args.getString(2));
+          final int commandBits = args.getInt(3);
+          final int responseBitLengthNoHeaderBit = args.getInt(4);
+          final int responseBitLengthWithHeaderBit = args.getInt(5);
+          final int receiveTimeoutUsec = args.getInt(6);
+          inventoryInfo.withInventory("customCommandToTag", callbackContext, new InventoryInfo.InventoryCall() {
+            public void call(UgiInventory inventory) {
+              inventory.customCommandToTag(epc, commandBytes, commandBits, responseBitLengthNoHeaderBit, responseBitLengthWithHeaderBit,
+                                           receiveTimeoutUsec, new UgiInventory.TagCustomCommandCompletion() {
+                @Override
+                public void exec(final UgiTag tag, final boolean headerBit, final byte[] response,
+                                 final UgiInventory.TagAccessReturnValues result) {
+                  final UgiTagReadState readState = tag.getTagReadState();
+                  plugin.actionExecutor().execute(new Runnable() {
+                    public void run() {
+                      try {
+                        JSONObject d = new JSONObject();
+                        d.put("result", result.ordinal());
+                        d.put("headerBit", headerBit);
+                        d.put("response", HexCodec.encode(response));
+                        TagJson.tagToJson(d, tag, readState);
+                        callbackContext.success(d);
+                      } catch (JSONException ex) {
+                        Log.e(UGrokIt.TAG, "customCommandToTag callback", ex);
+                      }
+                    }
+                  });
+                }
+              });
+            }
+          });
+        } else {
+          callbackContext.error("customCommandToTag called with no active inventory");
+        }
+      }
+    });
+    //
+    // tagAccessBatch (id, batchId, operations, options)
+    //
+    plugin.registerAction("tagAccessBatch", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        if (inventoryInfo == null) {
+          callbackContext.error("tagAccessBatch called with no active inventory");
+          return;
+        }
+        JSONArray a = args.getJSONArray(2);
+        ArrayList<TagAccessBatch.Operation> operations = new ArrayList<TagAccessBatch.Operation>(a.length());
+        for (int i = 0; i < a.length(); i++) {
+          operations.add(TagAccessBatch.operationFromJson(i, a.getJSONObject(i)));
+        }
+        for (Iterator<TagAccessBatch> it = inventoryInfo.tagAccessBatches.values().iterator(); it.hasNext(); ) {
+          if (it.next().isDone()) it.remove();
+        }
+        final TagAccessBatch batch = new TagAccessBatch(operations, args.optJSONObject(3), callbackContext,
+                                                        plugin.uiThreadExecutor(), plugin.scheduler);
+        inventoryInfo.tagAccessBatches.put(args.getString(1), batch);
+        inventoryInfo.withInventory("tagAccessBatch", callbackContext, new InventoryInfo.InventoryCall() {
+          public void call(UgiInventory inventory) {
+            batch.start(inventory);
+          }
+        });
+      }
+    });
+    //
+    // cancelTagAccessBatch (id, batchId)
+    //
+    plugin.registerAction("cancelTagAccessBatch", new ActionHandler() {
+      public void execute(UGrokIt plugin, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        InventoryInfo inventoryInfo = plugin.inventoryInfos.get(args.getString(0));
+        TagAccessBatch batch = inventoryInfo != null ? inventoryInfo.tagAccessBatches.remove(args.getString(1)) : null;
+        if (batch != null) batch.cancel();
+        callbackContext.success();
+      }
+    });
+  }
+
+  /**
+   * Completion that reports the result and the tag, built on the executor thread
+   * from the read state as it was when the SDK completed the access
+   */
+  private static UgiInventory.TagAccessCompletion tagAccessCompletion(final UGrokIt plugin, final CallbackContext callbackContext,
+                                                                      final String action) {
+    return new UgiInventory.TagAccessCompletion() {
+      @Override
+      public void exec(final UgiTag tag, final UgiInventory.TagAccessReturnValues result) {
+        final UgiTagReadState readState = tag.getTagReadState();
+        plugin.actionExecutor().execute(new Runnable() {
+          public void run() {
+            try {
+              JSONObject d = new JSONObject();
+              d.put("result", result.ordinal());
+              TagJson.tagToJson(d, tag, readState);
+              callbackContext.success(d);
+            } catch (JSONException ex) {
+              Log.e(UGrokIt.TAG, action + " callback", ex);
+            }
+          }
+        });
+      }
+    };
+  }
+}
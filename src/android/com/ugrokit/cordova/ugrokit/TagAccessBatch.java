@@ -0,0 +1,395 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.apache.cordova.PluginResult.Status;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+import com.ugrokit.api.*;
+
+/**
+ * A list of tag accesses (read, write, program, lock/unlock) run through a running
+ * inventory, keeping up to maxOutstanding of them in progress so the reader is never
+ * idle waiting for JavaScript. The SDK tracks accesses by EPC, so there is never more
+ * than one access in progress for an EPC; accesses for the same EPC run in list order.
+ *
+ * An access that times out, or fails with TAG_NOT_FOUND or GENERAL_ERROR, is retried up
+ * to retries times. After a timeout the SDK's access is still outstanding, so its EPC
+ * stays blocked until the SDK completes it; if that late result is final (OK, say) it
+ * is used instead of the retry. Results are sent in batches as {_cb: "results", results: [...]},
+ * followed by {_cb: "done", ...} with totals and throughput.
+ *
+ * All SDK calls, and so all of the batch's state changes, happen on sdkThread, where
+ * the SDK calls completions.
+ */
+class TagAccessBatch
+{
+  static final int TYPE_READ = 0;
+  static final int TYPE_WRITE = 1;
+  static final int TYPE_PROGRAM = 2;
+  static final int TYPE_LOCK_UNLOCK = 3;
+
+  /** Results other than UgiInventory.TagAccessReturnValues */
+  static final int RESULT_TIMEOUT = -1;
+  static final int RESULT_CANCELLED = -2;
+
+  static final int DEFAULT_MAX_OUTSTANDING = 4;
+  static final int DEFAULT_RETRIES = 2;
+  static final int DEFAULT_TIMEOUT_MSEC = 5000;
+  static final int DEFAULT_RESULT_BATCH_SIZE = 50;
+  static final int DEFAULT_RESULT_INTERVAL_MSEC = 250;
+
+  /**
+   * One access
+   */
+  static class Operation {
+    final int index;
+    final int type;
+    final UgiEpc epc;
+    UgiRfidConfiguration.MemoryBank memoryBank;
+    int offset;
+    byte[] data;
+    byte[] previousData;
+    int password;
+    int minNumBytes;
+    int maxNumBytes;
+    UgiEpc newEpc;
+    int maskAndAction;
+
+    int attempts;
+    boolean active;
+    boolean accessOutstanding;
+    long startedAt;
+    ScheduledFuture<?> timeout;
+
+    Operation(int index, int type, UgiEpc epc) {
+      this.index = index;
+      this.type = type;
+      this.epc = epc;
+    }
+  }
+
+  /**
+   * Parse an operation: {type: "read"|"write"|"program"|"lock", epc, memoryBank, offset,
+   * data, previousData, password, minNumBytes, maxNumBytes, newEpc, maskAndAction}.
+   * The type defaults to "write" if there is data and "read" otherwise.
+   */
+  static Operation operationFromJson(int index, JSONObject o) throws JSONException {
+    String typeName = o.optString("type", o.has("data") ? "write" : "read");
+    int type;
+    if (typeName.equals("read")) type = TYPE_READ;
+    else if (typeName.equals("write")) type = TYPE_WRITE;
+    else if (typeName.equals("program")) type = TYPE_PROGRAM;
+    else if (typeName.equals("lock")) type = TYPE_LOCK_UNLOCK;
+    else throw new JSONException("operation " + index + ": unknown type: " + typeName);
+    byte[] epc = HexCodec.decode(o.getString("epc"));
+    if ((epc == null) || (epc.length == 0)) throw new JSONException("operation " + index + ": invalid epc");
+    Operation op = new Operation(index, type, new UgiEpc(epc));
+    op.password = o.optInt("password", UgiInventory.NO_PASSWORD);
+    switch (type) {
+      case TYPE_READ:
+      case TYPE_WRITE:
+        int memoryBank = o.getInt("memoryBank");
+        if ((memoryBank < 0) || (memoryBank >= UgiRfidConfiguration.MemoryBank.values().length)) {
+          throw new JSONException("operation " + index + ": invalid memoryBank");
+        }
+        op.memoryBank = UgiRfidConfiguration.MemoryBank.values()[memoryBank];
+        op.offset = o.optInt("offset", 0);
+        if (type == TYPE_READ) {
+          op.minNumBytes = o.getInt("minNumBytes");
+          op.maxNumBytes = o.optInt("maxNumBytes", op.minNumBytes);
+        } else {
+          op.data = HexCodec.decode(o.getString("data"));
+          if ((op.data == null) || (op.data.length == 0)) throw new JSONException("operation " + index + ": invalid data");
+          op.previousData = o.isNull("previousData") ? null : HexCodec.decode(o.getString("previousData"));
+        }
+        break;
+      case TYPE_PROGRAM:
+        byte[] newEpc = HexCodec.decode(o.getString("newEpc"));
+        if ((newEpc == null) || (newEpc.length == 0)) throw new JSONException("operation " + index + ": invalid newEpc");
+        op.newEpc = new UgiEpc(newEpc);
+        break;
+      case TYPE_LOCK_UNLOCK:
+        op.maskAndAction = o.getInt("maskAndAction");
+        break;
+    }
+    return op;
+  }
+
+  private UgiInventory inventory;
+  private final CallbackContext callbackContext;
+  private final Executor sdkThread;
+  private final ScheduledExecutorService scheduler;
+  private final int maxOutstanding;
+  private final int retries;
+  private final int timeoutMSec;
+  private final int resultBatchSize;
+  private final int resultIntervalMSec;
+
+  private final ArrayDeque<Operation> waiting;
+  private final HashSet<UgiEpc> inProgress = new HashSet<UgiEpc>();
+  private final int total;
+  private volatile int finished;
+  private boolean cancelled;
+  private long startedAt;
+
+  // statistics
+  private int ok;
+  private int failed;
+  private int timeouts;
+  private int retried;
+  private final LatencyHistogram latency = new LatencyHistogram();
+
+  // results waiting to be sent
+  private JSONArray results = new JSONArray();
+  private ScheduledFuture<?> scheduledSend;
+
+  TagAccessBatch(List<Operation> operations, JSONObject options, CallbackContext callbackContext,
+                 Executor sdkThread, ScheduledExecutorService scheduler) {
+    this.waiting = new ArrayDeque<Operation>(operations);
+    this.total = operations.size();
+    this.callbackContext = callbackContext;
+    this.sdkThread = sdkThread;
+    this.scheduler = scheduler;
+    if (options == null) options = new JSONObject();
+    this.maxOutstanding = Math.max(options.optInt("maxOutstanding", DEFAULT_MAX_OUTSTANDING), 1);
+    this.retries = Math.max(options.optInt("retries", DEFAULT_RETRIES), 0);
+    this.timeoutMSec = options.optInt("timeoutMSec", DEFAULT_TIMEOUT_MSEC);
+    this.resultBatchSize = Math.max(options.optInt("resultBatchSize", DEFAULT_RESULT_BATCH_SIZE), 1);
+    this.resultIntervalMSec = options.optInt("resultIntervalMSec", DEFAULT_RESULT_INTERVAL_MSEC);
+  }
+
+  /**
+   * Start the accesses, called on sdkThread once the inventory is running there
+   */
+  void start(UgiInventory inventory) {
+    this.inventory = inventory;
+    startedAt = System.nanoTime();
+    if (total == 0) {
+      sendDone();
+    } else {
+      pump();
+    }
+  }
+
+  /**
+   * Stop starting accesses; those not started are reported as RESULT_CANCELLED
+   */
+  void cancel() {
+    sdkThread.execute(new Runnable() {
+      public void run() {
+        cancelled = true;
+        pump();
+      }
+    });
+  }
+
+  /**
+   * Start as many waiting accesses as allowed
+   */
+  private void pump() {
+    if (cancelled) {
+      Operation op;
+      while ((op = waiting.poll()) != null) finish(op, RESULT_CANCELLED, null);
+      return;
+    }
+    Iterator<Operation> it = waiting.iterator();
+    while ((inProgress.size() < maxOutstanding) && it.hasNext()) {
+      Operation op = it.next();
+      if (inProgress.contains(op.epc)) continue;
+      it.remove();
+      begin(op);
+    }
+  }
+
+  private void begin(final Operation op) {
+    op.attempts++;
+    op.active = true;
+    op.accessOutstanding = true;
+    if (op.startedAt == 0) op.startedAt = System.nanoTime();
+    inProgress.add(op.epc);
+    final int attempt = op.attempts;
+    if (timeoutMSec > 0) {
+      op.timeout = scheduler.schedule(new Runnable() {
+        public void run() {
+          sdkThread.execute(new Runnable() {
+            public void run() {
+              completed(op, attempt, RESULT_TIMEOUT, null);
+            }
+          });
+        }
+      }, timeoutMSec, TimeUnit.MILLISECONDS);
+    }
+    UgiInventory.TagAccessCompletion completion = new UgiInventory.TagAccessCompletion() {
+      @Override
+      public void exec(UgiTag tag, UgiInventory.TagAccessReturnValues result) {
+        accessCompleted(op, attempt, result.ordinal(), null);
+      }
+    };
+    switch (op.type) {
+      case TYPE_READ:
+        inventory.readTag(op.epc, op.memoryBank, op.offset, op.minNumBytes, op.maxNumBytes, new UgiInventory.TagReadCompletion() {
+          @Override
+          public void exec(UgiTag tag, byte[] data, UgiInventory.TagAccessReturnValues result) {
+            accessCompleted(op, attempt, result.ordinal(), data);
+          }
+        });
+        break;
+      case TYPE_WRITE:
+        inventory.writeTag(op.epc, op.memoryBank, op.offset, op.data, op.previousData, op.password, completion);
+        break;
+      case TYPE_PROGRAM:
+        inventory.programTag(op.epc, op.newEpc, op.password, completion);
+        break;
+      case TYPE_LOCK_UNLOCK:
+        inventory.lockUnlockTag(op.epc, op.maskAndAction, op.password, completion);
+        break;
+    }
+  }
+
+  private static boolean retryable(int result) {
+    return (result == RESULT_TIMEOUT) || (result == UgiInventory.TagAccessReturnValues.TAG_NOT_FOUND.ordinal())
+           || (result == UgiInventory.TagAccessReturnValues.GENERAL_ERROR.ordinal());
+  }
+
+  /**
+   * The SDK completed an access. A retry cannot have started since the attempt timed
+   * out (the EPC was blocked), so a late completion is for the operation's last attempt.
+   */
+  private void accessCompleted(Operation op, int attempt, int result, byte[] data) {
+    op.accessOutstanding = false;
+    if (op.active) {
+      completed(op, attempt, result, data);
+      return;
+    }
+    inProgress.remove(op.epc);
+    // waiting to be retried after the timeout, but the access got there in the end
+    if (!retryable(result) && waiting.remove(op)) finish(op, result, data);
+    pump();
+  }
+
+  /**
+   * An attempt finished or timed out; a timeout after the attempt finished is ignored
+   */
+  private void completed(Operation op, int attempt, int result, byte[] data) {
+    if (!op.active || (attempt != op.attempts)) return;
+    op.active = false;
+    if (op.timeout != null) {
+      op.timeout.cancel(false);
+      op.timeout = null;
+    }
+    if (!op.accessOutstanding) inProgress.remove(op.epc);
+    if (result == RESULT_TIMEOUT) timeouts++;
+    if (retryable(result) && (op.attempts <= retries) && !cancelled) {
+      retried++;
+      waiting.addFirst(op);
+    } else {
+      finish(op, result, data);
+    }
+    pump();
+  }
+
+  private void finish(Operation op, int result, byte[] data) {
+    finished++;
+    if (result == UgiInventory.TagAccessReturnValues.OK.ordinal()) ok++; else failed++;
+    if (op.startedAt != 0) latency.recordNanos(System.nanoTime() - op.startedAt);
+    try {
+      JSONObject d = new JSONObject();
+      d.put("index", op.index);
+      d.put("epc", op.epc.toString());
+      d.put("result", result);
+      d.put("attempts", op.attempts);
+      if (data != null) d.put("data", HexCodec.encode(data));
+      addResult(d);
+    } catch (JSONException ex) {
+      Log.e(PluginLog.TAG, "finish", ex);
+    }
+    if (finished == total) {
+      sendResults();
+      sendDone();
+    }
+  }
+
+  private synchronized void addResult(JSONObject d) {
+    results.put(d);
+    if (results.length() >= resultBatchSize) {
+      sendResults();
+    } else if ((scheduledSend == null) && (resultIntervalMSec > 0)) {
+      scheduledSend = scheduler.schedule(new Runnable() {
+        public void run() {
+          sendResults();
+        }
+      }, resultIntervalMSec, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private synchronized void sendResults() {
+    if (scheduledSend != null) {
+      scheduledSend.cancel(false);
+      scheduledSend = null;
+    }
+    if (results.length() == 0) return;
+    try {
+      JSONObject d = new JSONObject();
+      d.put("_cb", "results");
+      d.put("results", results);
+      results = new JSONArray();
+      PluginResult pluginResult = new PluginResult(Status.OK, d);
+      pluginResult.setKeepCallback(true);
+      callbackContext.sendPluginResult(pluginResult);
+    } catch (JSONException ex) {
+      Log.e(PluginLog.TAG, "sendResults", ex);
+    }
+  }
+
+  private void sendDone() {
+    double seconds = (System.nanoTime() - startedAt) / 1e9;
+    try {
+      JSONObject d = new JSONObject();
+      d.put("_cb", "done");
+      d.put("total", total);
+      d.put("ok", ok);
+      d.put("failed", failed);
+      d.put("retries", retried);
+      d.put("timeouts", timeouts);
+      d.put("cancelled", cancelled);
+      d.put("seconds", seconds);
+      d.put("perSecond", seconds > 0 ? total / seconds : 0);
+      d.put("latency", latency.toJson());
+      callbackContext.sendPluginResult(new PluginResult(Status.OK, d));
+    } catch (JSONException ex) {
+      Log.e(PluginLog.TAG, "sendDone", ex);
+    }
+  }
+
+  boolean isDone() {
+    return finished == total;
+  }
+}
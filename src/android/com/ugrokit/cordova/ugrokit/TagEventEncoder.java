@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+
+import com.ugrokit.api.*;
+
+/**
+ * Binary encoding of tag events, sent to JavaScript as an ArrayBuffer and decoded
+ * with typed arrays in UgiInventory._objectsFromBinary(). Everything is little endian
+ * and every record starts on an 8 byte boundary so the per-read columns can be viewed
+ * in place as Float64Array/Int32Array.
+ *
+ * Message header (8 bytes):
+ *   0  u16 MAGIC
+ *   2  u8  VERSION
+ *   3  u8  0
+ *   4  u32 number of records
+ *
+ * Record header (64 bytes):
+ *   0  u8  event type (InventoryEventQueue.TAG_xxx)
+ *   1  u8  flags (FLAG_xxx)
+ *   2  u16 EPC length
+ *   4  u16 TID length (ABSENT = none, or unchanged with FLAG_DELTA)
+ *   6  u16 USER length (ABSENT = none, or unchanged with FLAG_DELTA)
+ *   8  u16 RESERVED length (ABSENT = none, or unchanged with FLAG_DELTA)
+ *  10  u16 read history length (ABSENT = none, or unchanged with FLAG_DELTA)
+ *  12  u16 number of per-read entries (ABSENT = no detailed per-read data)
+ *  14  u16 0
+ *  16  u32 record length in bytes, including this header
+ *  20  i32 count (tagSubsequentFinds)
+ *  24  i32 total reads
+ *  28  u32 0
+ *  32  f64 first read (ms since epoch)
+ *  40  f64 most recent read (ms since epoch)
+ *  48  f64 most recent RSSI I
+ *  56  f64 most recent RSSI Q
+ *
+ * Followed by, each section padded to 8 bytes:
+ *   per-read columns: f64 timestamp[n], f64 rssiI[n], f64 rssiQ[n],
+ *                     i32 frequency[n], i32 readData1[n], i32 readData2[n]
+ *     or with FLAG_COMPACT_PER_READ (startInventory option compactPerRead):
+ *                     f64 base timestamp, f32 RSSI scale, u8 number of frequencies k,
+ *                     u8 PER_READ_xxx flags, u16 0,
+ *                     i32 timestamp - previous timestamp[n] (the first from the base),
+ *                     i32 frequency[k],
+ *                     i16 rssiI / scale[n], i16 rssiQ / scale[n],
+ *                     with PER_READ_DATA: i32 readData1[n], i32 readData2[n],
+ *                     u8 index into frequency[n]
+ *   read history: i32[h]
+ *   bytes: EPC, TID, USER, RESERVED
+ */
+class TagEventEncoder
+{
+  // checked by UgiInventory._objectsFromBinary, change VERSION there too with the format
+  static final int MAGIC = 0x4755;
+  static final int VERSION = 2;
+
+  static final int MESSAGE_HEADER_LENGTH = 8;
+  static final int RECORD_HEADER_LENGTH = 64;
+
+  static final int FLAG_FIRST_FIND = 0x01;
+  static final int FLAG_IS_VISIBLE = 0x02;
+  static final int FLAG_DELTA = 0x04;
+  static final int FLAG_COMPACT_PER_READ = 0x08;
+
+  /** Compact per-read columns: readData1 and readData2 are there (otherwise all 0) */
+  static final int PER_READ_DATA = 0x01;
+
+  static final int COMPACT_HEADER_LENGTH = 16;
+  static final int MAX_FREQUENCIES = 255;
+  static final int MAX_TIMESTAMP_DELTA = Integer.MAX_VALUE;
+
+  static final int ABSENT = 0xffff;
+
+  private TagEventEncoder() {
+  }
+
+  /**
+   * Encode events into a single message
+   */
+  static byte[] encode(List<InventoryEventQueue.Event> events) {
+    int[] recordLengths = new int[events.size()];
+    CompactPerRead[] compact = new CompactPerRead[events.size()];
+    int length = MESSAGE_HEADER_LENGTH;
+    for (int i = 0; i < events.size(); i++) {
+      compact[i] = compactPerRead(events.get(i));
+      recordLengths[i] = recordLength(events.get(i), compact[i]);
+      length += recordLengths[i];
+    }
+    ByteBuffer bb = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    bb.putShort((short) MAGIC);
+    bb.put((byte) VERSION);
+    bb.put((byte) 0);
+    bb.putInt(events.size());
+    for (int i = 0; i < events.size(); i++) {
+      putRecord(bb, events.get(i), compact[i], recordLengths[i]);
+    }
+    return bb.array();
+  }
+
+  static byte[] encode(InventoryEventQueue.Event event) {
+    return encode(Collections.singletonList(event));
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////
+  // Records
+  ///////////////////////////////////////////////////////////////////////////////////////
+
+  private static int pad8(int n) {
+    return (n + 7) & ~7;
+  }
+
+  private static int length(byte[] ba) {
+    return ba != null ? ba.length : 0;
+  }
+
+  /**
+   * The array if the field is to be sent, otherwise null
+   */
+  private static byte[] field(InventoryEventQueue.Event event, int field, byte[] ba) {
+    return (event.fields & field) != 0 ? ba : null;
+  }
+
+  private static int[] field(InventoryEventQueue.Event event, int field, int[] ia) {
+    return (event.fields & field) != 0 ? ia : null;
+  }
+
+  /**
+   * Compact per-read columns for an event, or null if it has none or they do not fit
+   */
+  private static CompactPerRead compactPerRead(InventoryEventQueue.Event event) {
+    if (!event.compactPerRead || (event.details == null) || (event.details.length == 0)) return null;
+    return CompactPerRead.of(event.details);
+  }
+
+  private static int recordLength(InventoryEventQueue.Event event, CompactPerRead compact) {
+    int n = event.details != null ? event.details.length : 0;
+    int perRead = compact != null ? compact.length() : pad8(n * (3*8 + 3*4));
+    int[] history = field(event, TagTable.FIELD_READ_HISTORY, event.readState.getReadHistory());
+    int h = history != null ? history.length : 0;
+    UgiTag tag = event.tag;
+    int bytes = tag.getEpc().toBytes().length + length(field(event, TagTable.FIELD_TID, tag.getTidBytes()))
+                + length(field(event, TagTable.FIELD_USER, tag.getUserBytes()))
+                + length(field(event, TagTable.FIELD_RESERVED, tag.getReservedBytes()));
+    return RECORD_HEADER_LENGTH + perRead + pad8(h * 4) + pad8(bytes);
+  }
+
+  private static void putRecord(ByteBuffer bb, InventoryEventQueue.Event event, CompactPerRead compact, int recordLength) {
+    int start = bb.position();
+    UgiTag tag = event.tag;
+    UgiTagReadState readState = event.readState;
+    byte[] epc = tag.getEpc().toBytes();
+    byte[] tid = field(event, TagTable.FIELD_TID, tag.getTidBytes());
+    byte[] user = field(event, TagTable.FIELD_USER, tag.getUserBytes());
+    byte[] reserved = field(event, TagTable.FIELD_RESERVED, tag.getReservedBytes());
+    int[] history = field(event, TagTable.FIELD_READ_HISTORY, readState.getReadHistory());
+    UgiInventory.DetailedPerReadData details[] = event.details;
+
+    int flags = 0;
+    if (event.firstFind) flags |= FLAG_FIRST_FIND;
+    if (readState.isVisible()) flags |= FLAG_IS_VISIBLE;
+    if (event.fields != TagTable.ALL_FIELDS) flags |= FLAG_DELTA;
+    if (compact != null) flags |= FLAG_COMPACT_PER_READ;
+    bb.put((byte) event.type);
+    bb.put((byte) flags);
+    bb.putShort((short) epc.length);
+    bb.putShort((short) (tid != null ? tid.length : ABSENT));
+    bb.putShort((short) (user != null ? user.length : ABSENT));
+    bb.putShort((short) (reserved != null ? reserved.length : ABSENT));
+    bb.putShort((short) (history != null ? history.length : ABSENT));
+    bb.putShort((short) (details != null ? details.length : ABSENT));
+    bb.putShort((short) 0);
+    bb.putInt(recordLength);
+    bb.putInt(event.count);
+    bb.putInt(readState.getTotalReads());
+    bb.putInt(0);
+    bb.putDouble(tag.getFirstRead().getTime());
+    bb.putDouble(readState.getMostRecentRead().getTime());
+    bb.putDouble(readState.getMostRecentRssiI());
+    bb.putDouble(readState.getMostRecentRssiQ());
+
+    if (compact != null) {
+      compact.put(bb);
+      align(bb, start);
+    } else if (details != null) {
+      for (UgiInventory.DetailedPerReadData detail : details) bb.putDouble(detail.getTimestamp().getTime());
+      for (UgiInventory.DetailedPerReadData detail : details) bb.putDouble(detail.getRssiI());
+      for (UgiInventory.DetailedPerReadData detail : details) bb.putDouble(detail.getRssiQ());
+      for (UgiInventory.DetailedPerReadData detail : details) bb.putInt(detail.getFrequency());
+      for (UgiInventory.DetailedPerReadData detail : details) bb.putInt(detail.getReadData1());
+      for (UgiInventory.DetailedPerReadData detail : details) bb.putInt(detail.getReadData2());
+      align(bb, start);
+    }
+    if (history != null) {
+      for (int i : history) bb.putInt(i);
+      align(bb, start);
+    }
+    bb.put(epc);
+    if (tid != null) bb.put(tid);
+    if (user != null) bb.put(user);
+    if (reserved != null) bb.put(reserved);
+    bb.position(start + recordLength);
+  }
+
+  private static void align(ByteBuffer bb, int start) {
+    bb.position(start + pad8(bb.position() - start));
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////
+  // Compact per-read columns
+  ///////////////////////////////////////////////////////////////////////////////////////
+
+  /**
+   * Per-read data as compact columns: timestamps as deltas from the previous read, frequencies
+   * as indexes into the distinct frequencies, and RSSI as 16 bits scaled to the largest
+   * magnitude (so to within 1/32767 of it)
+   */
+  static class CompactPerRead {
+    final UgiInventory.DetailedPerReadData[] details;
+    final long baseTimestamp;
+    final float rssiScale;
+    final int[] frequencies;
+    final int numFrequencies;
+    final byte[] frequencyIndexes;
+    final boolean hasReadData;
+
+    private CompactPerRead(UgiInventory.DetailedPerReadData[] details, long baseTimestamp, float rssiScale,
+                           int[] frequencies, int numFrequencies, byte[] frequencyIndexes, boolean hasReadData) {
+      this.details = details;
+      this.baseTimestamp = baseTimestamp;
+      this.rssiScale = rssiScale;
+      this.frequencies = frequencies;
+      this.numFrequencies = numFrequencies;
+      this.frequencyIndexes = frequencyIndexes;
+      this.hasReadData = hasReadData;
+    }
+
+    /**
+     * @return The compact columns, or null if there are more than MAX_FREQUENCIES frequencies
+     *         or two successive timestamps are too far apart
+     */
+    static CompactPerRead of(UgiInventory.DetailedPerReadData[] details) {
+      int n = details.length;
+      long baseTimestamp = details[0].getTimestamp().getTime();
+      double maxRssi = 0;
+      int[] frequencies = new int[Math.min(n, MAX_FREQUENCIES)];
+      int numFrequencies = 0;
+      byte[] frequencyIndexes = new byte[n];
+      boolean hasReadData = false;
+      long previousTimestamp = baseTimestamp;
+      for (int i = 0; i < n; i++) {
+        UgiInventory.DetailedPerReadData detail = details[i];
+        long timestamp = detail.getTimestamp().getTime();
+        long delta = timestamp - previousTimestamp;
+        if ((delta < -MAX_TIMESTAMP_DELTA) || (delta > MAX_TIMESTAMP_DELTA)) return null;
+        previousTimestamp = timestamp;
+        maxRssi = Math.max(maxRssi, Math.max(Math.abs(detail.getRssiI()), Math.abs(detail.getRssiQ())));
+        int frequency = detail.getFrequency();
+        int index = 0;
+        while ((index < numFrequencies) && (frequencies[index] != frequency)) index++;
+        if (index == numFrequencies) {
+          if (numFrequencies == frequencies.length) return null;
+          frequencies[numFrequencies++] = frequency;
+        }
+        frequencyIndexes[i] = (byte) index;
+        if ((detail.getReadData1() != 0) || (detail.getReadData2() != 0)) hasReadData = true;
+      }
+      float rssiScale = maxRssi > 0 ? (float) (maxRssi / Short.MAX_VALUE) : 1;
+      return new CompactPerRead(details, baseTimestamp, rssiScale, frequencies, numFrequencies, frequencyIndexes, hasReadData);
+    }
+
+    int length() {
+      int n = details.length;
+      int length = COMPACT_HEADER_LENGTH + n * 4 + numFrequencies * 4 + n * 2 * 2;
+      if (hasReadData) length += n * 2 * 4;
+      return pad8(length + n);
+    }
+
+    private short scaled(double rssi) {
+      return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(rssi / rssiScale)));
+    }
+
+    void put(ByteBuffer bb) {
+      int n = details.length;
+      bb.putDouble(baseTimestamp);
+      bb.putFloat(rssiScale);
+      bb.put((byte) numFrequencies);
+      bb.put((byte) (hasReadData ? PER_READ_DATA : 0));
+      bb.putShort((short) 0);
+      long previousTimestamp = baseTimestamp;
+      for (UgiInventory.DetailedPerReadData detail : details) {
+        long timestamp = detail.getTimestamp().getTime();
+        bb.putInt((int) (timestamp - previousTimestamp));
+        previousTimestamp = timestamp;
+      }
+      for (int i = 0; i < numFrequencies; i++) bb.putInt(frequencies[i]);
+      for (UgiInventory.DetailedPerReadData detail : details) bb.putShort(scaled(detail.getRssiI()));
+      for (UgiInventory.DetailedPerReadData detail : details) bb.putShort(scaled(detail.getRssiQ()));
+      if (hasReadData) {
+        for (UgiInventory.DetailedPerReadData detail : details) bb.putInt(detail.getReadData1());
+        for (UgiInventory.DetailedPerReadData detail : details) bb.putInt(detail.getReadData2());
+      }
+      bb.put(frequencyIndexes);
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.ugrokit.api.*;
+
+/**
+ * JSON for tags and detailed per-read data, as read by UgiTag, UgiTagReadState and
+ * UgiDetailedPerReadData in JavaScript.
+ */
+class TagJson
+{
+  private TagJson() {
+  }
+
+  static void tagToJson(JSONObject d, UgiTag tag) throws JSONException {
+    tagToJson(d, tag, tag.getTagReadState());
+  }
+
+  static void tagToJson(JSONObject d, UgiTag tag, UgiTagReadState readState) throws JSONException {
+    tagToJson(d, tag, readState, TagTable.ALL_FIELDS);
+  }
+
+  /**
+   * Put only the given fields (TagTable.FIELD_xxx); with less than all fields the
+   * object is marked as a delta for JavaScript to merge into the tag it already has
+   */
+  static void tagToJson(JSONObject d, UgiTag tag, UgiTagReadState readState, int fields) throws JSONException {
+    d.put("tag_epc", tag.getEpc().toString());
+    if (fields != TagTable.ALL_FIELDS) d.put("tag_delta", true);
+    if ((fields & TagTable.FIELD_FIRST_READ) != 0) d.put("tag_firstRead", tag.getFirstRead().getTime());
+    if ((fields & TagTable.FIELD_TID) != 0) d.put("tag_tidMemory", HexCodec.encode(tag.getTidBytes()));
+    if ((fields & TagTable.FIELD_USER) != 0) d.put("tag_userMemory", HexCodec.encode(tag.getUserBytes()));
+    if ((fields & TagTable.FIELD_RESERVED) != 0) d.put("tag_reservedMemory", HexCodec.encode(tag.getReservedBytes()));
+    
+    if ((fields & TagTable.FIELD_IS_VISIBLE) != 0) d.put("tag_isVisible", readState.isVisible());
+    if ((fields & TagTable.FIELD_TOTAL_READS) != 0) d.put("tag_totalReads", readState.getTotalReads());
+    if ((fields & TagTable.FIELD_MOST_RECENT_READ) != 0) d.put("tag_mostRecentRead", readState.getMostRecentRead().getTime());
+    if ((fields & TagTable.FIELD_RSSI) != 0) {
+      d.put("tag_mostRecentRssiI", readState.getMostRecentRssiI());
+      d.put("tag_mostRecentRssiQ", readState.getMostRecentRssiQ());
+    }
+    int[] ia = readState.getReadHistory();
+    if ((ia != null) && ((fields & TagTable.FIELD_READ_HISTORY) != 0)) {
+      JSONArray numReads = new JSONArray();
+      for (int i : ia) numReads.put(i);
+      d.put("tag_readHistory", numReads);
+    }
+  }
+  
+  static void detailsToJson(JSONObject d, UgiInventory.DetailedPerReadData details[]) throws JSONException {
+    if (details != null) {
+      JSONArray timestamp = new JSONArray();
+      JSONArray frequency = new JSONArray();
+      JSONArray rssiI = new JSONArray();
+      JSONArray rssiQ = new JSONArray();
+      JSONArray readData1 = new JSONArray();
+      JSONArray readData2 = new JSONArray();
+      for (UgiInventory.DetailedPerReadData detail : details) {
+        timestamp.put(detail.getTimestamp().getTime());
+        frequency.put(detail.getFrequency());
+        rssiI.put(detail.getRssiI());
+        rssiQ.put(detail.getRssiQ());
+        readData1.put(detail.getReadData1());
+        readData2.put(detail.getReadData2());
+      }
+      d.put("perread_timestamp", timestamp);
+      d.put("perread_frequency", frequency);
+      d.put("perread_rssiI", rssiI);
+      d.put("perread_rssiQ", rssiQ);
+      d.put("perread_readData1", readData1);
+      d.put("perread_readData2", readData2);
+    }
+  }
+}
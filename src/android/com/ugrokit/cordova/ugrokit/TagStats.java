@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.util.*;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.ugrokit.api.*;
+
+/**
+ * Running read statistics for each tag of an inventory (startInventory option "stats"),
+ * so JavaScript gets snapshots instead of working them out from every tag event:
+ * number of reads, mean/standard deviation/maximum RSSI magnitude (Welford's algorithm,
+ * one sample per per-read entry, or the most recent RSSI when there is no per-read data),
+ * reads per second between the first and last read, and reads per frequency.
+ */
+class TagStats
+{
+  /**
+   * Statistics for one tag
+   */
+  private static class Entry {
+    final String epc;
+    long reads;
+    long rssiSamples;
+    double rssiMean;
+    double rssiM2;
+    double rssiMax;
+    long firstRead;
+    long lastRead;
+    int numFrequencies;
+    int[] frequencies = new int[4];
+    int[] frequencyReads = new int[4];
+    boolean changed;
+
+    Entry(UgiEpc epc, long now) {
+      this.epc = epc.toString();
+      this.firstRead = now;
+    }
+
+    void addRssi(double rssiI, double rssiQ) {
+      double x = Math.sqrt(rssiI * rssiI + rssiQ * rssiQ);
+      rssiSamples++;
+      double delta = x - rssiMean;
+      rssiMean += delta / rssiSamples;
+      rssiM2 += delta * (x - rssiMean);
+      if (x > rssiMax) rssiMax = x;
+    }
+
+    void addFrequency(int frequency) {
+      for (int i = 0; i < numFrequencies; i++) {
+        if (frequencies[i] == frequency) {
+          frequencyReads[i]++;
+          return;
+        }
+      }
+      if (numFrequencies == frequencies.length) {
+        frequencies = Arrays.copyOf(frequencies, numFrequencies * 2);
+        frequencyReads = Arrays.copyOf(frequencyReads, numFrequencies * 2);
+      }
+      frequencies[numFrequencies] = frequency;
+      frequencyReads[numFrequencies++] = 1;
+    }
+
+    JSONObject toJson() throws JSONException {
+      JSONObject d = new JSONObject();
+      d.put("epc", epc);
+      d.put("reads", reads);
+      d.put("rssiMean", rssiMean);
+      d.put("rssiStdDev", rssiSamples > 1 ? Math.sqrt(rssiM2 / (rssiSamples - 1)) : 0);
+      d.put("rssiMax", rssiMax);
+      d.put("readsPerSecond", lastRead > firstRead ? reads * 1000.0 / (lastRead - firstRead) : 0);
+      d.put("firstSeen", firstRead);
+      d.put("lastSeen", lastRead);
+      if (numFrequencies > 0) {
+        JSONObject f = new JSONObject();
+        for (int i = 0; i < numFrequencies; i++) f.put(Integer.toString(frequencies[i]), frequencyReads[i]);
+        d.put("frequencies", f);
+      }
+      return d;
+    }
+  }
+
+  private final HashMap<UgiEpc, Entry> entries = new HashMap<UgiEpc, Entry>();
+  private long totalReads;
+
+  /**
+   * Create statistics from the startInventory options, or return null if they were not requested
+   */
+  static TagStats fromOptions(JSONObject options) {
+    if ((options == null) || !(options.optBoolean("stats") || (options.optInt("statsIntervalMSec", 0) > 0))) return null;
+    return new TagStats();
+  }
+
+  /**
+   * Add reads of a tag (tagFound or tagSubsequentFinds)
+   *
+   * @param count Number of reads
+   * @param details Per-read data, or null
+   */
+  synchronized void add(UgiTag tag, int count, UgiInventory.DetailedPerReadData details[]) {
+    UgiTagReadState readState = tag.getTagReadState();
+    long now = readState.getMostRecentRead().getTime();
+    Entry entry = entries.get(tag.getEpc());
+    if (entry == null) {
+      entry = new Entry(tag.getEpc(), now);
+      entries.put(tag.getEpc(), entry);
+    }
+    entry.reads += count;
+    entry.lastRead = now;
+    entry.changed = true;
+    totalReads += count;
+    if ((details != null) && (details.length > 0)) {
+      for (UgiInventory.DetailedPerReadData detail : details) {
+        entry.addRssi(detail.getRssiI(), detail.getRssiQ());
+        entry.addFrequency(detail.getFrequency());
+      }
+    } else {
+      entry.addRssi(readState.getMostRecentRssiI(), readState.getMostRecentRssiQ());
+    }
+  }
+
+  /**
+   * Snapshot of the statistics: {totalReads, numTags, tags: [{epc, reads, rssiMean, ...}]}
+   *
+   * @param changedOnly True for only the tags read since the last changedOnly snapshot
+   * @param reset True to start over after the snapshot
+   */
+  synchronized JSONObject toJson(boolean changedOnly, boolean reset) throws JSONException {
+    JSONArray a = new JSONArray();
+    for (Entry entry : entries.values()) {
+      if (changedOnly) {
+        if (!entry.changed) continue;
+        entry.changed = false;
+      }
+      a.put(entry.toJson());
+    }
+    JSONObject d = new JSONObject();
+    d.put("totalReads", totalReads);
+    d.put("numTags", entries.size());
+    d.put("tags", a);
+    if (reset) {
+      entries.clear();
+      totalReads = 0;
+    }
+    return d;
+  }
+}
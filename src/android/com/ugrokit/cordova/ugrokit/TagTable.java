@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ugrokit.cordova.ugrokit;
+
+import java.util.*;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.ugrokit.api.*;
+
+/**
+ * What was last sent to JavaScript for each tag of an inventory, so later events
+ * only carry the fields that changed (startInventory option "deltas").
+ * JavaScript merges the delta into the UgiTag it already has in tagsByEpc.
+ */
+class TagTable
+{
+  static final int FIELD_FIRST_READ = 0x001;
+  static final int FIELD_TID = 0x002;
+  static final int FIELD_USER = 0x004;
+  static final int FIELD_RESERVED = 0x008;
+  static final int FIELD_IS_VISIBLE = 0x010;
+  static final int FIELD_TOTAL_READS = 0x020;
+  static final int FIELD_MOST_RECENT_READ = 0x040;
+  static final int FIELD_RSSI = 0x080;
+  static final int FIELD_READ_HISTORY = 0x100;
+  static final int ALL_FIELDS = 0x1ff;
+
+  /**
+   * Names of the fields for the startInventory option "fields", in FIELD_xxx bit order
+   */
+  private static final String[] FIELD_NAMES = { "firstRead", "tidMemory", "userMemory", "reservedMemory", "isVisible",
+                                                "totalReads", "mostRecentRead", "mostRecentRssi", "readHistory" };
+
+  /**
+   * Last values sent for one tag
+   */
+  private static class Entry {
+    byte[] tid;
+    byte[] user;
+    byte[] reserved;
+    boolean isVisible;
+    int totalReads;
+    long mostRecentRead;
+    double rssiI;
+    double rssiQ;
+    int[] readHistory;
+  }
+
+  private final HashMap<UgiEpc, Entry> entries = new HashMap<UgiEpc, Entry>();
+
+  /**
+   * Create a table from the startInventory options, or return null if deltas were not requested
+   */
+  static TagTable fromOptions(JSONObject options) {
+    if ((options == null) || !options.optBoolean("deltas")) return null;
+    return new TagTable();
+  }
+
+  /**
+   * The fields to send from the startInventory option "fields" (array of field names, the
+   * EPC is always sent), or ALL_FIELDS if there is no projection
+   */
+  static int fieldsFromOptions(JSONObject options) throws JSONException {
+    JSONArray names = options != null ? options.optJSONArray("fields") : null;
+    if (names == null) return ALL_FIELDS;
+    int fields = 0;
+    for (int i = 0; i < names.length(); i++) {
+      int bit = Arrays.asList(FIELD_NAMES).indexOf(names.getString(i));
+      if (bit < 0) throw new JSONException("unknown field: " + names.getString(i));
+      fields |= 1 << bit;
+    }
+    return fields;
+  }
+
+  /**
+   * Record the tag's state as sent, and return the fields (FIELD_xxx) that differ
+   * from what was sent before: ALL_FIELDS for a tag not sent before.
+   * Memory banks and read history that become null are reported as unchanged.
+   */
+  synchronized int update(UgiTag tag, UgiTagReadState readState) {
+    Entry entry = entries.get(tag.getEpc());
+    int fields = 0;
+    if (entry == null) {
+      entry = new Entry();
+      entries.put(tag.getEpc(), entry);
+      fields = ALL_FIELDS;
+    }
+    byte[] tid = tag.getTidBytes();
+    if ((tid != null) && !Arrays.equals(tid, entry.tid)) {
+      entry.tid = tid.clone();
+      fields |= FIELD_TID;
+    }
+    byte[] user = tag.getUserBytes();
+    if ((user != null) && !Arrays.equals(user, entry.user)) {
+      entry.user = user.clone();
+      fields |= FIELD_USER;
+    }
+    byte[] reserved = tag.getReservedBytes();
+    if ((reserved != null) && !Arrays.equals(reserved, entry.reserved)) {
+      entry.reserved = reserved.clone();
+      fields |= FIELD_RESERVED;
+    }
+    if (readState.isVisible() != entry.isVisible) {
+      entry.isVisible = readState.isVisible();
+      fields |= FIELD_IS_VISIBLE;
+    }
+    if (readState.getTotalReads() != entry.totalReads) {
+      entry.totalReads = readState.getTotalReads();
+      fields |= FIELD_TOTAL_READS;
+    }
+    long mostRecentRead = readState.getMostRecentRead().getTime();
+    if (mostRecentRead != entry.mostRecentRead) {
+      entry.mostRecentRead = mostRecentRead;
+      fields |= FIELD_MOST_RECENT_READ;
+    }
+    if ((readState.getMostRecentRssiI() != entry.rssiI) || (readState.getMostRecentRssiQ() != entry.rssiQ)) {
+      entry.rssiI = readState.getMostRecentRssiI();
+      entry.rssiQ = readState.getMostRecentRssiQ();
+      fields |= FIELD_RSSI;
+    }
+    int[] readHistory = readState.getReadHistory();
+    if ((readHistory != null) && !Arrays.equals(readHistory, entry.readHistory)) {
+      entry.readHistory = readHistory.clone();
+      fields |= FIELD_READ_HISTORY;
+    }
+    return fields;
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+}
@@ -68,7 +68,9 @@ function Ugi() {
     /** Inventory activity */
     INVENTORY: 0x2000,
     /** Inventory details */
-    INVENTORY_DETAIL: 0x4000
+    INVENTORY_DETAIL: 0x4000,
+    /** Bridge metrics (see getMetrics) every metricsIntervalMSec (Android only) */
+    METRICS: 0x8000
   };
   
   //
@@ -336,11 +338,41 @@ Ugi.prototype.log = function() {
 
 /**
  * Set logging (to native log)
- * @param logging    ugi.LoggingTypes.XXX
+ * @param logging               ugi.LoggingTypes.XXX
+ * @param metricsIntervalMSec   How often to log metrics with ugi.LoggingTypes.METRICS (default 10000)
  */
-Ugi.prototype.setLogging = function(logging) {
-  argscheck.checkArgs("n", "setLogging", arguments);
-  exec(null, null, "ugrokit", "setLogging", [logging]);
+Ugi.prototype.setLogging = function(logging, metricsIntervalMSec) {
+  argscheck.checkArgs("nN", "setLogging", arguments);
+  exec(null, null, "ugrokit", "setLogging", metricsIntervalMSec ? [logging, metricsIntervalMSec] : [logging]);
+};
+
+/**
+ * Get execution latency statistics for each native action (Android only). The callback gets
+ * an object keyed by action name, each with "queueWait" (time waiting for the plugin thread)
+ * and "run" (time running) entries: count, meanUsec, p50Usec, p90Usec, p99Usec and maxUsec.
+ * @param callback  Called with the statistics object
+ * @param reset     true to clear the statistics after reading them
+ */
+Ugi.prototype.getActionLatencies = function(callback, reset) {
+  argscheck.checkArgs("f*", "getActionLatencies", arguments);
+  exec(callback, null, "ugrokit", "getActionLatencies", [!!reset]);
+};
+
+/**
+ * Get plugin-wide bridge metrics (Android only). The callback gets an object with:
+ * - elapsedMSec: time since the metrics were last reset<br>
+ * - callbacks: for each kind of tag message sent ("tagChanged", "tagFound", "tagSubsequentFinds"
+ *   and "batch"): messages, events, bytes, eventsPerSecond and bytesPerSecond<br>
+ * - serialize: time to turn tag events into a message<br>
+ * - callbackToSend: time from the reader reporting a tag event to it being sent to JavaScript<br>
+ * - executorQueueWait, uiThreadQueueWait: time actions waited to run<br>
+ * Times are count, meanUsec, p50Usec, p90Usec, p99Usec and maxUsec.
+ * @param callback  Called with the metrics object
+ * @param reset     true to clear the metrics after reading them
+ */
+Ugi.prototype.getMetrics = function(callback, reset) {
+  argscheck.checkArgs("f*", "getMetrics", arguments);
+  exec(callback, null, "ugrokit", "getMetrics", [!!reset]);
 };
 
 //------------------------------------
@@ -380,8 +412,17 @@ Ugi.callbackId = 0;
 Ugi.prototype.addConnectionStateCallback = function(callback) {
   argscheck.checkArgs("f", "Ugi.addConnectionStateCallback", arguments);
   callback._callbackId = Ugi.callbackId;
+  // Android sends only what changed since the last call, merge it into what we have
+  var info = {};
   exec(function(o) {
-    callback(o.state, o);
+    for (var key in o) {
+      info[key] = o[key];
+    }
+    var copy = {};
+    for (var key in info) {
+      copy[key] = info[key];
+    }
+    callback(copy.state, copy);
   }, null, "ugrokit", "addConnectionStateCallback", [Ugi.callbackId]);
   Ugi.callbackId++;
   return callback;
@@ -395,6 +436,16 @@ Ugi.prototype.removeConnectionStateCallback = function(callback) {
   exec(null, null, "ugrokit", "removeConnectionStateCallback", [callback._callbackId]);
 }
 
+/**
+ * Get the reader information as of the last connection state change (the same fields
+ * passed to connection state callbacks), without asking the reader. Android only.
+ * @param callback Called with the reader information
+ */
+Ugi.prototype.getReaderInfo = function(callback) {
+  argscheck.checkArgs("f", "Ugi.getReaderInfo", arguments);
+  exec(callback, null, "ugrokit", "getReaderInfo", []);
+};
+
 /**
  * Set whether screen rotation should be handled
  * @param handleScreenRotation  true to handle screen rotation
@@ -425,18 +476,240 @@ Ugi.prototype.setHandleScreenRotation = function(handleScreenRotation) {
  * The inventoryType allows using a preset mode based on the type of operation being performed,
  * or using the manually configured values.
  *
+ * <br><br>
+ * The optional options object tunes how events are delivered (Android only, other
+ * platforms ignore it):<br>
+ * - batchIntervalMSec: collect tag events for up to this many milliseconds and deliver them together<br>
+ * - batchMaxEvents: deliver a batch as soon as it has this many events (default 100 when batching)<br>
+ * - binary: send tag events in a compact binary format instead of JSON (decoded automatically)<br>
+ * - compactPerRead: with binary, send detailed per-read data as compact columns (RSSI to 16 bits)
+ *   and pass it to delegates as a UgiDetailedPerReadData.Columns instead of an array<br>
+ * - deltas: after a tag is first sent, only send the tag fields that changed (merged automatically)<br>
+ * - fields: tag fields to send with tag events, the EPC is always sent: any of "firstRead",
+ *   "tidMemory", "userMemory", "reservedMemory", "isVisible", "totalReads", "mostRecentRead",
+ *   "mostRecentRssi" and "readHistory" (default all). Fields not sent are left undefined (dates
+ *   are invalid); UgiInventory.getTagDetails() gets all of them for one tag when needed<br>
+ * - epcSet: EPC set (from createEpcSet) to use instead of the epcs array, epcs must be null<br>
+ * - maxInFlight: send at most this many messages before JavaScript has handled them, tag events
+ *   wait natively in the meantime (sent as batches when possible)<br>
+ * - queueMaxEvents: maximum number of tag events waiting (default 1000 with maxInFlight)<br>
+ * - overflow: what to do with a tag event when the queue is full: "dropOldest" (default) drops
+ *   the oldest waiting tag event, "coalesce" merges into any waiting event of the same type
+ *   for the same tag (always, not just when full; counts are added up), and drops the oldest
+ *   when still full<br>
+ * - journal: name of a journal (letters, digits, _ and -) to append every tag read to, natively
+ *   (see Ugi.getJournalInfo); one record per detailed per-read entry, otherwise per find<br>
+ * - journalSegmentRecords: records per journal file for a new journal (default 65536)<br>
+ * - journalMaxSegments: journal files to keep, older ones are deleted (default 64)<br>
+ * - stats: keep read statistics for each tag natively, see UgiInventory.getInventoryStats()<br>
+ * - statsIntervalMSec: (implies stats) also pass the statistics of the tags read recently to
+ *   delegate.ugiInventoryStats every this many milliseconds<br>
+ * - locate: EPCs (strings of hex digits) to locate natively: each read's RSSI is smoothed and
+ *   delegate.ugiInventoryLocate is passed a 0...1 proximity score for each at a fixed rate
+ *   (see also UgiInventory.setLocateTargets)<br>
+ * - locateRateHz: proximity updates per second (default 20)<br>
+ * - locateFilter: "kalman" (default) or "ema" (exponential moving average)<br>
+ * - locateAlpha: weight of each read for "ema" (default 0.3)<br>
+ * - locateProcessNoise, locateMeasurementNoise: for "kalman", how fast the RSSI (dB) is expected
+ *   to change (variance per second, default 20) and how noisy each read is (variance, default 16)<br>
+ * - locateMinRssi, locateMaxRssi: RSSI (dB) for scores of 0 and 1 (default the range seen so far)<br>
+ * - locateStaleMSec: the score fades to 0 over this long once a target is no longer read (default 1000)<br>
+ * - expected: EPCs expected to be found, for a cycle count: found, missing and unexpected tags are
+ *   tracked natively, delegate.ugiInventoryReconcile is passed what changed and
+ *   delegate.ugiInventoryReconcileReport the missing and unexpected EPCs at the end (see also
+ *   UgiInventory.getReconciliation). Usually used without epcs, so unexpected tags are seen<br>
+ * - expectedEpcSet: EPC set (from createEpcSet) to use as expected, copied when inventory starts<br>
+ * - reconcileIntervalMSec: how often to call delegate.ugiInventoryReconcile (default 1000, 0 for never)<br>
+ * - snapshot: name of a snapshot (letters, digits, _ and -) to checkpoint the tags found to, natively:
+ *   every snapshotIntervalMSec, when inventory is paused, stops or loses the connection, when the
+ *   app is paused and when the page is reset (see also UgiInventory.checkpoint, Ugi.deleteSnapshot)<br>
+ * - snapshotIntervalMSec: time between checkpoints (default 5000)<br>
+ * - resumeFromSnapshot: start with the tags in the snapshot instead of starting it over: they are
+ *   put in tagsByEpc and passed to delegate.ugiInventoryResumed before inventory starts, and count
+ *   as found for expected. A resumed tag read again is reported as found again, with its reads
+ *   counted from 0 (the snapshot keeps adding them up)<br>
+ * - history: keep natively the reads, new tags and visible tags for each history interval (see
+ *   UgiInventory.getHistory), also passed to delegate.ugiInventoryHistoryInterval. With this,
+ *   fields can leave out readHistory<br>
+ * - historyCapacity: history intervals kept (default an hour's worth)<br>
+ * Batched events are passed to the delegate methods one at a time, in the order they happened.
+ * UgiInventory.getEventQueueStats() reports queue depth and coalesced/dropped events.
+ *
  * @param {Object} delegate  Delegate object to report back to
- * @param {Object} config    UgiRfidConfiguration object
+ * @param {Object} config    UgiRfidConfiguration object, or handle from registerConfiguration
  * @param {Array} epcs       EPCs to find, all other EPCs are ignored (or null to find all EPCs)
  @ @param {Boolean} epcsAreIgnoreList  TRUE to ingore all the EPCs passed, FALSE to search for them only
+ * @param {Object} [options] Delivery options (see above)
  * @return   UgiInventory object
  */
-Ugi.prototype.startInventory = function(delegate, config, epcs, epcsAreIgnoreList) {
-  argscheck.checkArgs("ooA*", "Ugi.startInventory", arguments);
-  this.activeInventory = new UgiInventory(delegate, config, epcs, epcsAreIgnoreList);
+Ugi.prototype.startInventory = function(delegate, config, epcs, epcsAreIgnoreList, options) {
+  argscheck.checkArgs("o*A*O", "Ugi.startInventory", arguments);
+  this.activeInventory = new UgiInventory(delegate, config, epcs, epcsAreIgnoreList, options);
   return this.activeInventory;
 };
 
+//------------------------------------
+// EPC sets
+//------------------------------------
+
+Ugi.epcSetId = 0;
+
+/**
+ * Create a set of EPCs, kept natively, to find or ignore with startInventory (options.epcSet).
+ * Large EPC lists are then sent once and reused by any number of inventories. Android only.
+ * @param {Array} epcs  EPCs (strings of hex digits)
+ * @param {Function} [callback]  Called with {size, invalid}: number of EPCs in the set and
+ *                               number of strings that were not valid EPCs
+ * @return handle for the set
+ */
+Ugi.prototype.createEpcSet = function(epcs, callback) {
+  argscheck.checkArgs("aF", "Ugi.createEpcSet", arguments);
+  var epcSet = Ugi.epcSetId++;
+  exec(callback, null, "ugrokit", "createEpcSet", [epcSet, epcs]);
+  return epcSet;
+};
+
+/**
+ * Add EPCs to a set. Inventories already running are not changed.
+ * @param epcSet  Handle from createEpcSet
+ * @param {Array} epcs  EPCs to add (strings of hex digits)
+ * @param {Function} [callback]  Called with {size, invalid}
+ */
+Ugi.prototype.addToEpcSet = function(epcSet, epcs, callback) {
+  argscheck.checkArgs("naF", "Ugi.addToEpcSet", arguments);
+  exec(callback, null, "ugrokit", "addToEpcSet", [epcSet, epcs]);
+};
+
+/**
+ * Remove EPCs from a set. Inventories already running are not changed.
+ * @param epcSet  Handle from createEpcSet
+ * @param {Array} epcs  EPCs to remove (strings of hex digits)
+ * @param {Function} [callback]  Called with {size, invalid}
+ */
+Ugi.prototype.removeFromEpcSet = function(epcSet, epcs, callback) {
+  argscheck.checkArgs("naF", "Ugi.removeFromEpcSet", arguments);
+  exec(callback, null, "ugrokit", "removeFromEpcSet", [epcSet, epcs]);
+};
+
+/**
+ * Free a set. Sets are also freed when the page is unloaded.
+ * @param epcSet  Handle from createEpcSet
+ */
+Ugi.prototype.releaseEpcSet = function(epcSet) {
+  argscheck.checkArgs("n", "Ugi.releaseEpcSet", arguments);
+  exec(null, null, "ugrokit", "releaseEpcSet", [epcSet]);
+};
+
+//------------------------------------
+// Configurations
+//------------------------------------
+
+Ugi.configurationId = 0;
+
+/**
+ * Build a configuration natively once, to pass to startInventory by handle instead of
+ * sending and parsing all its values every time. Later changes to config are not seen
+ * by the handle. Android only.
+ * @param {Object} config  UgiRfidConfiguration object
+ * @param {Function} [callback]  Called once the configuration has been built
+ * @return handle for the configuration
+ */
+Ugi.prototype.registerConfiguration = function(config, callback) {
+  argscheck.checkArgs("oF", "Ugi.registerConfiguration", arguments);
+  var handle = Ugi.configurationId++;
+  exec(callback || null, null, "ugrokit", "registerConfiguration", [handle, config.values()]);
+  return handle;
+};
+
+/**
+ * Free a configuration. Configurations are also freed when the page is unloaded.
+ * @param handle  Handle from registerConfiguration
+ */
+Ugi.prototype.releaseConfiguration = function(handle) {
+  argscheck.checkArgs("n", "Ugi.releaseConfiguration", arguments);
+  exec(null, null, "ugrokit", "releaseConfiguration", [handle]);
+};
+
+//------------------------------------
+// Journals
+//------------------------------------
+
+/**
+ * Get information about a journal written by inventories started with the journal option.
+ * Journals are kept natively, records are numbered from the start of the journal and the
+ * oldest are deleted as the journal grows (journalMaxSegments). Android only.
+ * @param {String} name  Journal name
+ * @param {Function} callback  Called with {records, first, end, segments, bytes}: records
+ *                             first to end - 1 are in the journal
+ */
+Ugi.prototype.getJournalInfo = function(name, callback) {
+  argscheck.checkArgs("sf", "Ugi.getJournalInfo", arguments);
+  exec(callback, null, "ugrokit", "getJournalInfo", [name]);
+};
+
+/**
+ * Read journal records. Android only.
+ * @param {String} name  Journal name
+ * @param {Number} start  First record to read
+ * @param {Number} count  Number of records to read (at most 10000 are returned)
+ * @param {Function} callback  Called with {start, epc, timestamp, rssiI, rssiQ, frequency, detailed},
+ *                             each an array with one entry per record: EPC (string of hex
+ *                             digits), read time (ms since 1970), RSSI, frequency (0 if
+ *                             unknown) and whether the record is from detailed per-read data
+ */
+Ugi.prototype.readJournal = function(name, start, count, callback) {
+  argscheck.checkArgs("snnf", "Ugi.readJournal", arguments);
+  exec(callback, null, "ugrokit", "readJournal", [name, start, count]);
+};
+
+/**
+ * Write journal records to a CSV file, natively. Android only.
+ * @param {String} name  Journal name
+ * @param {Number} [start]  First record to write (default: the first in the journal)
+ * @param {Number} [count]  Number of records to write (default: all)
+ * @param {Function} callback  Called with {path, records}: the CSV file and number of records written
+ */
+Ugi.prototype.exportJournalCsv = function(name, start, count, callback) {
+  argscheck.checkArgs("sNNf", "Ugi.exportJournalCsv", arguments);
+  exec(callback, null, "ugrokit", "exportJournalCsv", [name, start || 0, (count === undefined) ? null : count]);
+};
+
+/**
+ * Delete a journal (and its CSV export). A journal being written cannot be deleted. Android only.
+ * @param {String} name  Journal name
+ * @param {Function} [callback]  Called when done
+ */
+Ugi.prototype.deleteJournal = function(name, callback) {
+  argscheck.checkArgs("sF", "Ugi.deleteJournal", arguments);
+  exec(callback, null, "ugrokit", "deleteJournal", [name]);
+};
+
+//------------------------------------
+// Snapshots
+//------------------------------------
+
+/**
+ * Get information about a snapshot written by inventories started with the snapshot option.
+ * Android only.
+ * @param {String} name  Snapshot name
+ * @param {Function} callback  Called with {tags, records, bytes, created}
+ */
+Ugi.prototype.getSnapshotInfo = function(name, callback) {
+  argscheck.checkArgs("sf", "Ugi.getSnapshotInfo", arguments);
+  exec(callback, null, "ugrokit", "getSnapshotInfo", [name]);
+};
+
+/**
+ * Delete a snapshot, for example once a cycle count is complete. A snapshot being written
+ * cannot be deleted. Android only.
+ * @param {String} name  Snapshot name
+ * @param {Function} [callback]  Called when done
+ */
+Ugi.prototype.deleteSnapshot = function(name, callback) {
+  argscheck.checkArgs("sF", "Ugi.deleteSnapshot", arguments);
+  exec(callback, null, "ugrokit", "deleteSnapshot", [name]);
+};
+
 //------------------------------------
 // Battery
 //------------------------------------
@@ -476,18 +749,25 @@ Ugi.prototype.loadUpdateWithName = function(name, callback) {
 
 /**
  * Update firmware that has been previously loaded with loadUpdateWithName
- * @param progressCallback Called with (amountDone, amountTotal, canCancel)
- * @param completedCallback Called with (success, seconds)
+ * @param progressCallback Called with (amountDone, amountTotal, canCancel, progress). On
+ *                         Android progress reports are coalesced (see options) and progress
+ *                         is {percent, amountPerSecond, etaMSec (-1 if not known yet)}
+ * @param completedCallback Called with (success, seconds, timing). On Android timing is
+ *                          {prepareMSec, transferMSec, verifyMSec, totalMSec,
+ *                          progressReports, progressSent}
+ * @param [options] Android only:
+ * - progressIntervalMSec: report progress at most this often (default: 250)
+ * - progressStepPercent: also report progress when it is up by this much (default: 0, off)
  */
-Ugi.prototype.firmwareUpdate = function(progressCallback, completedCallback) {
-  argscheck.checkArgs("f", "firmwareUpdate", arguments);
+Ugi.prototype.firmwareUpdate = function(progressCallback, completedCallback, options) {
+  argscheck.checkArgs("fFO", "firmwareUpdate", arguments);
   exec(function(o) {
-    if (o.seconds) {
-      if(completedCallback) completedCallback(o.success, o.seconds);
+    if (o.success !== undefined) {
+      if (completedCallback) completedCallback(o.success, o.seconds, o.timing);
     } else {
-      if (progressCallback) progressCallback(o.amountDone, o.amountTotal, o.canCancel);
+      if (progressCallback) progressCallback(o.amountDone, o.amountTotal, o.canCancel, o);
     }
-  }, null, "ugrokit", "firmwareUpdate", []);
+  }, null, "ugrokit", "firmwareUpdate", [options || null]);
 };
 
 /**
@@ -48,6 +48,100 @@ UgiDetailedPerReadData.prototype.toString = function() {
   return "[" + (new Date().getTime() - this.timestamp.getTime()) + " ms ago, " + this.frequency + " Hz, " + this.rssiI + "/" + this.rssiQ + "]";
 };
 
+//------------------------------------
+
+/**
+ * @class Data for each tag read in columns, passed instead of an array of
+ * UgiDetailedPerReadData if the compactPerRead startInventory option is set.
+ * Reads are only turned into objects if asked for with get().
+ * RSSI is to within 1/32767 of the largest RSSI magnitude of the tag event.
+ * @readonly
+ */
+UgiDetailedPerReadData.Columns = function(columns) {
+  this._c = columns;
+  /**
+   * Number of reads
+   * @type {Number}
+   * @readonly
+   */
+  this.length = columns.length;
+};
+
+/**
+ * When a find happened
+ * @param {Number} i Read index
+ * @return {Number} Time in msec since the epoch
+ */
+UgiDetailedPerReadData.Columns.prototype.timestamp = function(i) {
+  var c = this._c;
+  if (!c.timestamp) {
+    // timestamps are sent as deltas from the previous read, add them up on first use
+    c.timestamp = new Float64Array(c.length);
+    var t = c.baseTimestamp;
+    for (var j = 0; j < c.length; j++) {
+      t += c.timestampDelta[j];
+      c.timestamp[j] = t;
+    }
+  }
+  return c.timestamp[i];
+};
+
+/**
+ * Frequency a find happened at
+ * @param {Number} i Read index
+ * @return {Number} Frequency
+ */
+UgiDetailedPerReadData.Columns.prototype.frequency = function(i) {
+  return this._c.frequencies[this._c.frequencyIndex[i]];
+};
+
+/**
+ * RSSI of a find, I channel
+ * @param {Number} i Read index
+ * @return {Number} RSSI
+ */
+UgiDetailedPerReadData.Columns.prototype.rssiI = function(i) {
+  return this._c.rssiI[i] * this._c.rssiScale;
+};
+
+/**
+ * RSSI of a find, Q channel
+ * @param {Number} i Read index
+ * @return {Number} RSSI
+ */
+UgiDetailedPerReadData.Columns.prototype.rssiQ = function(i) {
+  return this._c.rssiQ[i] * this._c.rssiScale;
+};
+
+/**
+ * First word read by a find, if any
+ * @param {Number} i Read index
+ * @return {Number} Word read
+ */
+UgiDetailedPerReadData.Columns.prototype.readData1 = function(i) {
+  return this._c.readData1 ? this._c.readData1[i] : 0;
+};
+
+/**
+ * Second word read by a find, if any
+ * @param {Number} i Read index
+ * @return {Number} Word read
+ */
+UgiDetailedPerReadData.Columns.prototype.readData2 = function(i) {
+  return this._c.readData2 ? this._c.readData2[i] : 0;
+};
+
+/**
+ * A find as an object
+ * @param {Number} i Read index
+ * @return {UgiDetailedPerReadData} The find
+ */
+UgiDetailedPerReadData.Columns.prototype.get = function(i) {
+  return new UgiDetailedPerReadData(new Date(this.timestamp(i)), this.frequency(i),
+                                    this.rssiI(i), this.rssiQ(i),
+                                    this.readData1(i), this.readData2(i));
+};
+
 //------------------------------------
  
 module.exports = UgiDetailedPerReadData;
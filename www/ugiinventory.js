@@ -10,7 +10,7 @@ var argscheck = require('cordova/argscheck'),
 /**
  * @class An inventory session
  */ 
-function UgiInventory(delegate, config, epcs, epcsAreIgnoreList) {
+function UgiInventory(delegate, config, epcs, epcsAreIgnoreList, options) {
   /**
    * Time the inventory was started
    * @type {Date}
@@ -37,53 +37,102 @@ function UgiInventory(delegate, config, epcs, epcsAreIgnoreList) {
   
   this.internalId = "" + UgiInventory.nextId++;
   var _this = this;
+  var acks = !!(options && (options.maxInFlight > 0));
   exec(function(o) {
-    if (o._cb == "didStart") {
-      _this.isScanning = true;
-      if (delegate.ugiInventoryDidStart) {
-        delegate.ugiInventoryDidStart();
-      }
-    } else if (o._cb == "didStop") {
-      _this.isScanning = false;
-      if (!_this.isPaused &&
-          (o.result != UgiInventoryDelegate.InventoryCompletedReturnValues.LOST_CONNECTION)) {
-        ugi.activeInventory = null;
-        delete _this.internalId;
-      }
-      if (delegate.ugiInventoryDidStop) {
-        delegate.ugiInventoryDidStop(o.result);
-      }
-    } else if (o._cb == "tagChanged") {
-      if (delegate.ugiInventoryTagChanged) {
-        delegate.ugiInventoryTagChanged(_this._tagFromObject(o), o.firstFind);
-      }
-    } else if (o._cb == "tagFound") {
-      if (delegate.ugiInventoryTagFound) {
-        delegate.ugiInventoryTagFound(_this._tagFromObject(o), _this._detailsFromObject(o));
-      }
-    } else if (o._cb == "tagSubsequentFinds") {
-      if (delegate.ugiInventoryTagSubsequentFinds) {
-        delegate.ugiInventoryTagSubsequentFinds(_this._tagFromObject(o), o.count, _this._detailsFromObject(o));
-      }
-    } else if (o._cb == "historyInterval") {
-      if (delegate.ugiInventoryHistoryInterval) {
-        delegate.ugiInventoryHistoryInterval();
+    try {
+      _this._dispatch(delegate, o);
+    } finally {
+      // flow control: tell the native side this message has been handled
+      if (acks && (_this.internalId !== undefined)) {
+        exec(null, null, "ugrokit", "ackInventoryEvents", [_this.internalId, 1]);
       }
     }
   }, null, "ugrokit", "startInventory",
-  [this.internalId, config.values(), epcs, epcsAreIgnoreList,
+  [this.internalId, typeof config == "number" ? config : config.values(), epcs, epcsAreIgnoreList,
   !!delegate.ugiInventoryTagChanged, !!delegate.ugiInventoryTagFound,
   !!delegate.ugiInventoryTagSubsequentFinds, !!delegate.ugiInventoryTagForgotten,
-  !!delegate.ugiInventoryHistoryInterval]
+  !!delegate.ugiInventoryHistoryInterval, options || null]
   );
 }
 
 UgiInventory.nextId = 0;
 
+UgiInventory.prototype._dispatch = function(delegate, o) {
+  if (o instanceof ArrayBuffer) {
+    var events = UgiInventory._objectsFromBinary(o);
+    for (var i = 0; i < events.length; i++) {
+      this._dispatch(delegate, events[i]);
+    }
+  } else if (o._cb == "batch") {
+    for (var i = 0; i < o.events.length; i++) {
+      this._dispatch(delegate, o.events[i]);
+    }
+  } else if (o._cb == "didStart") {
+    this.isScanning = true;
+    if (delegate.ugiInventoryDidStart) {
+      delegate.ugiInventoryDidStart();
+    }
+  } else if (o._cb == "didStop") {
+    this.isScanning = false;
+    if (!this._isSubscription && !this.isPaused &&
+        (o.result != UgiInventoryDelegate.InventoryCompletedReturnValues.LOST_CONNECTION)) {
+      ugi.activeInventory = null;
+      delete this.internalId;
+    }
+    if (delegate.ugiInventoryDidStop) {
+      delegate.ugiInventoryDidStop(o.result);
+    }
+  } else if (o._cb == "tagChanged") {
+    if (delegate.ugiInventoryTagChanged) {
+      delegate.ugiInventoryTagChanged(this._tagFromObject(o), o.firstFind);
+    }
+  } else if (o._cb == "tagFound") {
+    if (delegate.ugiInventoryTagFound) {
+      delegate.ugiInventoryTagFound(this._tagFromObject(o), this._detailsFromObject(o));
+    }
+  } else if (o._cb == "tagSubsequentFinds") {
+    if (delegate.ugiInventoryTagSubsequentFinds) {
+      delegate.ugiInventoryTagSubsequentFinds(this._tagFromObject(o), o.count, this._detailsFromObject(o));
+    }
+  } else if (o._cb == "historyInterval") {
+    if (delegate.ugiInventoryHistoryInterval) {
+      delegate.ugiInventoryHistoryInterval(o.interval);
+    }
+  } else if (o._cb == "stats") {
+    if (delegate.ugiInventoryStats) {
+      delete o._cb;
+      delegate.ugiInventoryStats(o);
+    }
+  } else if (o._cb == "locate") {
+    if (delegate.ugiInventoryLocate) {
+      delegate.ugiInventoryLocate(o.targets, o.time);
+    }
+  } else if (o._cb == "resumed") {
+    var tags = [];
+    for (var i = 0; i < o.tags.length; i++) {
+      tags.push(this._tagFromObject(o.tags[i]));
+    }
+    if (delegate.ugiInventoryResumed) {
+      delegate.ugiInventoryResumed(tags);
+    }
+  } else if (o._cb == "reconcile") {
+    if (delegate.ugiInventoryReconcile) {
+      delete o._cb;
+      delegate.ugiInventoryReconcile(o);
+    }
+  } else if (o._cb == "reconcileReport") {
+    if (delegate.ugiInventoryReconcileReport) {
+      delete o._cb;
+      delegate.ugiInventoryReconcileReport(o);
+    }
+  }
+};
+
 UgiInventory.prototype._tagFromObject = function(o) {
   if (o.tag_epc) {
     var tag = this.tagsByEpc[o.tag_epc];
     if (tag) {
+      if (o.tag_delta) UgiInventory._mergeDelta(o, tag);
       tag.readState = new UgiTagReadState(o, tag);
     } else {
       tag = new UgiTag(o);
@@ -95,8 +144,30 @@ UgiInventory.prototype._tagFromObject = function(o) {
   }
 };
 
+//
+// Fill in the tag fields a delta event (startInventory option "deltas") left out
+// because they did not change, and update changed memory banks on the tag
+//
+UgiInventory._mergeDelta = function(o, tag) {
+  var readState = tag.readState;
+  if (o.tag_firstRead !== undefined) tag.firstRead = new Date(o.tag_firstRead);
+  if (o.tag_tidMemory !== undefined) tag.tidMemory = o.tag_tidMemory;
+  if (o.tag_userMemory !== undefined) tag.userMemory = o.tag_userMemory;
+  if (o.tag_reservedMemory !== undefined) tag.reservedMemory = o.tag_reservedMemory;
+  if (o.tag_isVisible === undefined) o.tag_isVisible = readState.isVisible;
+  if (o.tag_totalReads === undefined) o.tag_totalReads = readState.totalReads;
+  if (o.tag_mostRecentRead === undefined) o.tag_mostRecentRead = readState.mostRecentRead.getTime();
+  if (o.tag_mostRecentRssiI === undefined) {
+    o.tag_mostRecentRssiI = readState.mostRecentRssiI;
+    o.tag_mostRecentRssiQ = readState.mostRecentRssiQ;
+  }
+  if (o.tag_readHistory === undefined) o.tag_readHistory = readState.readHistory;
+};
+
 UgiInventory.prototype._detailsFromObject = function(o) {
-  if (o.perread_timestamp) {
+  if (o.perread_columns) {
+    return new UgiDetailedPerReadData.Columns(o.perread_columns);
+  } else if (o.perread_timestamp) {
     var d = [];
     for (var i = 0; i < o.perread_timestamp.length; i++) {
       d.push(new UgiDetailedPerReadData(new Date(o.perread_timestamp[i]),
@@ -112,6 +183,116 @@ UgiInventory.prototype._detailsFromObject = function(o) {
   }
 };
 
+//
+// Binary tag events (startInventory option "binary"), see TagEventEncoder.java for the layout
+//
+UgiInventory._BINARY_CALLBACKS = [null, "tagChanged", "tagFound", "tagSubsequentFinds"];
+UgiInventory._BINARY_ABSENT = 0xffff;
+// must match TagEventEncoder.MAGIC and VERSION
+UgiInventory._BINARY_MAGIC = 0x4755;
+UgiInventory._BINARY_VERSION = 2;
+UgiInventory._HEX = [];
+for (var _b = 0; _b < 256; _b++) {
+  UgiInventory._HEX.push((_b < 16 ? "0" : "") + _b.toString(16));
+}
+
+UgiInventory._hexFromBytes = function(bytes, offset, length) {
+  var s = "";
+  for (var i = 0; i < length; i++) {
+    s += UgiInventory._HEX[bytes[offset + i]];
+  }
+  return s;
+};
+
+//
+// Decode a binary message into objects with the same properties as JSON tag events.
+// Per-read data and read history are typed array views into the message, not copies.
+// Throws if the message is not in the format this decodes (the native side and
+// JavaScript are from different plugin versions).
+//
+UgiInventory._objectsFromBinary = function(buffer) {
+  var ABSENT = UgiInventory._BINARY_ABSENT;
+  var view = new DataView(buffer);
+  var bytes = new Uint8Array(buffer);
+  var magic = view.getUint16(0, true);
+  var version = view.getUint8(2);
+  if ((magic != UgiInventory._BINARY_MAGIC) || (version != UgiInventory._BINARY_VERSION)) {
+    throw new Error("UgiInventory: unsupported binary tag events (magic 0x" + magic.toString(16) +
+                    ", version " + version + ", expected version " + UgiInventory._BINARY_VERSION + ")");
+  }
+  var numRecords = view.getUint32(4, true);
+  var events = [];
+  var offset = 8;
+  for (var r = 0; r < numRecords; r++) {
+    var flags = view.getUint8(offset + 1);
+    var epcLength = view.getUint16(offset + 2, true);
+    var tidLength = view.getUint16(offset + 4, true);
+    var userLength = view.getUint16(offset + 6, true);
+    var reservedLength = view.getUint16(offset + 8, true);
+    var historyLength = view.getUint16(offset + 10, true);
+    var numReads = view.getUint16(offset + 12, true);
+    var o = {
+      _cb: UgiInventory._BINARY_CALLBACKS[view.getUint8(offset)],
+      firstFind: (flags & 0x01) != 0,
+      count: view.getInt32(offset + 20, true),
+      tag_isVisible: (flags & 0x02) != 0,
+      tag_totalReads: view.getInt32(offset + 24, true),
+      tag_firstRead: view.getFloat64(offset + 32, true),
+      tag_mostRecentRead: view.getFloat64(offset + 40, true),
+      tag_mostRecentRssiI: view.getFloat64(offset + 48, true),
+      tag_mostRecentRssiQ: view.getFloat64(offset + 56, true)
+    };
+    if (flags & 0x04) o.tag_delta = true;
+    var p = offset + 64;
+    if ((numReads != ABSENT) && (flags & 0x08)) {
+      var numFrequencies = view.getUint8(p + 12);
+      var hasReadData = (view.getUint8(p + 13) & 0x01) != 0;
+      var c = {
+        length: numReads,
+        baseTimestamp: view.getFloat64(p, true),
+        rssiScale: view.getFloat32(p + 8, true)
+      };
+      p += 16;
+      c.timestampDelta = new Int32Array(buffer, p, numReads); p += numReads * 4;
+      c.frequencies = new Int32Array(buffer, p, numFrequencies); p += numFrequencies * 4;
+      c.rssiI = new Int16Array(buffer, p, numReads); p += numReads * 2;
+      c.rssiQ = new Int16Array(buffer, p, numReads); p += numReads * 2;
+      if (hasReadData) {
+        c.readData1 = new Int32Array(buffer, p, numReads); p += numReads * 4;
+        c.readData2 = new Int32Array(buffer, p, numReads); p += numReads * 4;
+      }
+      c.frequencyIndex = new Uint8Array(buffer, p, numReads); p += numReads;
+      o.perread_columns = c;
+      p = (p + 7) & ~7;
+    } else if (numReads != ABSENT) {
+      o.perread_timestamp = new Float64Array(buffer, p, numReads); p += numReads * 8;
+      o.perread_rssiI = new Float64Array(buffer, p, numReads); p += numReads * 8;
+      o.perread_rssiQ = new Float64Array(buffer, p, numReads); p += numReads * 8;
+      o.perread_frequency = new Int32Array(buffer, p, numReads); p += numReads * 4;
+      o.perread_readData1 = new Int32Array(buffer, p, numReads); p += numReads * 4;
+      o.perread_readData2 = new Int32Array(buffer, p, numReads); p += numReads * 4;
+      p = (p + 7) & ~7;
+    }
+    if (historyLength != ABSENT) {
+      o.tag_readHistory = new Int32Array(buffer, p, historyLength);
+      p = (p + historyLength * 4 + 7) & ~7;
+    }
+    o.tag_epc = UgiInventory._hexFromBytes(bytes, p, epcLength); p += epcLength;
+    if (tidLength != ABSENT) {
+      o.tag_tidMemory = UgiInventory._hexFromBytes(bytes, p, tidLength); p += tidLength;
+    }
+    if (userLength != ABSENT) {
+      o.tag_userMemory = UgiInventory._hexFromBytes(bytes, p, userLength); p += userLength;
+    }
+    if (reservedLength != ABSENT) {
+      o.tag_reservedMemory = UgiInventory._hexFromBytes(bytes, p, reservedLength); p += reservedLength;
+    }
+    events.push(o);
+    offset += view.getUint32(offset + 16, true);
+  }
+  return events;
+};
+
 /**
  * Stop running inventory
  */
@@ -140,6 +321,147 @@ UgiInventory.prototype.resumeInventory = function() {
   exec(null, null, "ugrokit", "resumeInventory", [this.internalId]);
 };
 
+/**
+ * Get statistics for the native queue tag events wait in before being sent (used with
+ * the startInventory options batchIntervalMSec, batchMaxEvents and maxInFlight). Android only.
+ * @param {Function} callback  Called with an object (empty if there is no queue):<br>
+ * - depth, maxDepth: number of tag events waiting now, and at most<br>
+ * - inFlight: messages sent and not yet handled (with maxInFlight)<br>
+ * - queued, sent: number of tag events queued and sent<br>
+ * - coalesced, dropped: number of tag events replaced by a later event for the same tag,
+ *   and dropped because the queue was full<br>
+ * - messages: number of messages sent
+ */
+UgiInventory.prototype.getEventQueueStats = function(callback) {
+  argscheck.checkArgs("f", "getEventQueueStats", arguments);
+  exec(callback, null, "ugrokit", "getEventQueueStats", [this.internalId]);
+};
+
+/**
+ * Get read statistics for every tag found so far (startInventory option stats or
+ * statsIntervalMSec). Android only.
+ * @param {Function} callback  Called with {totalReads, numTags, tags}, each tag being:<br>
+ * - epc: EPC (string of hex digits)<br>
+ * - reads: number of reads<br>
+ * - rssiMean, rssiStdDev, rssiMax: RSSI magnitude (sqrt(I*I + Q*Q)) over every read with
+ *   detailed per-read data, otherwise over the most recent RSSI of each find<br>
+ * - readsPerSecond: between the first and last read<br>
+ * - firstSeen, lastSeen: time of the first and last read (ms since 1970)<br>
+ * - frequencies: reads per frequency, with detailed per-read data
+ * @param {Boolean} [reset]  True to start the statistics over
+ */
+UgiInventory.prototype.getInventoryStats = function(callback, reset) {
+  argscheck.checkArgs("f*", "getInventoryStats", arguments);
+  exec(callback, null, "ugrokit", "getInventoryStats", [this.internalId, !!reset]);
+};
+
+/**
+ * Get every field of a tag, including those left out of tag events by the startInventory
+ * option fields. The tag in tagsByEpc is updated. Android only.
+ * @param {String} epc         EPC of the tag (string of hex digits)
+ * @param {Function} callback  Called with the UgiTag, or null if inventory has not found the tag
+ */
+UgiInventory.prototype.getTagDetails = function(epc, callback) {
+  argscheck.checkArgs("sf", "getTagDetails", arguments);
+  var _this = this;
+  exec(function(o) {
+    // merged as a delta so that a tag already in tagsByEpc gets the memory banks too
+    if (o.tag_epc) o.tag_delta = true;
+    callback(_this._tagFromObject(o));
+  }, null, "ugrokit", "getTagDetails", [this.internalId, epc]);
+};
+
+/**
+ * Get the inventory's read counts over time (startInventory option history), downsampled
+ * to at most the given number of points, for example for a chart. Android only.
+ * @param {Number} points      Most points wanted
+ * @param {Function} callback  Called with {intervalMSec (per point), time, reads, newTags,
+ *                             visibleTags}: arrays with the start of each point (ms since
+ *                             epoch), the reads and tags found for the first time in it,
+ *                             and the most tags visible at once in it
+ * @param {Number} [windowMSec]  Only the most recent windowMSec (default all that is kept)
+ */
+UgiInventory.prototype.getHistory = function(points, callback, windowMSec) {
+  argscheck.checkArgs("nfN", "getHistory", arguments);
+  exec(callback, null, "ugrokit", "getHistory", [this.internalId, points, windowMSec || 0]);
+};
+
+/**
+ * Write the tags that changed since the last checkpoint to the snapshot now (startInventory
+ * option snapshot). Android only.
+ * @param {Function} [callback]  Called when done
+ * @param {Function} [errorCallback]  Called with a message if the snapshot could not be written
+ */
+UgiInventory.prototype.checkpoint = function(callback, errorCallback) {
+  argscheck.checkArgs("FF", "checkpoint", arguments);
+  exec(callback || null, errorCallback || null, "ugrokit", "checkpointInventory", [this.internalId]);
+};
+
+/**
+ * Get the reconciliation against the expected EPCs (startInventory option expected or
+ * expectedEpcSet). Android only.
+ * @param {Function} callback  Called with {expected, found, missing, unexpected} (counts),
+ *                             and with withEpcs the arrays missingEpcs and unexpectedEpcs
+ * @param {Boolean} [withEpcs]  True to include the missing and unexpected EPCs
+ */
+UgiInventory.prototype.getReconciliation = function(callback, withEpcs) {
+  argscheck.checkArgs("f*", "getReconciliation", arguments);
+  exec(callback, null, "ugrokit", "getReconciliation", [this.internalId, !!withEpcs]);
+};
+
+/**
+ * Change the EPCs located natively (startInventory option locate), starting locate if the
+ * inventory was started without it. Targets that remain keep their smoothed RSSI. Android only.
+ * @param {Array} epcs       EPCs to locate (strings of hex digits), empty to stop reporting
+ * @param {Function} [callback]  Called when the targets have been changed
+ */
+UgiInventory.prototype.setLocateTargets = function(epcs, callback) {
+  argscheck.checkArgs("aF", "setLocateTargets", arguments);
+  exec(callback || null, null, "ugrokit", "setLocateTargets", [this.internalId, epcs]);
+};
+
+UgiInventory.nextSubscriptionId = 0;
+
+/**
+ * Subscribe another delegate to this inventory, for example a second view of the same
+ * scan. Each subscription chooses its own events, tag fields and rate limit; the tags it
+ * is passed are its own, separate from tagsByEpc. The subscription ends with
+ * ugiInventoryDidStop when the inventory finishes. Android only.
+ * @param {UgiInventoryDelegate} delegate  Delegate for this subscription
+ * @param {Object} [options]  Subscription options:
+ * - events: array of event names to send: tagChanged, tagFound, tagSubsequentFinds,
+ *   historyInterval, didStart, didStop, stats, locate (default: all). The final didStop
+ *   is always sent.
+ * - fields: tag fields to send, as the startInventory option fields (default: all)
+ * - intervalMSec: send at most one batch of events every intervalMSec (default: 0, no limit)
+ * - maxQueued: with intervalMSec, the most events waiting before the oldest are
+ *   dropped (default: 1000)
+ * @return {String} Subscription id, for unsubscribe
+ */
+UgiInventory.prototype.subscribe = function(delegate, options) {
+  argscheck.checkArgs("oO", "subscribe", arguments);
+  var subscriptionId = "" + UgiInventory.nextSubscriptionId++;
+  // this inventory with a tagsByEpc of its own, so its fields do not mix with the delegate's
+  var subscription = Object.create(this);
+  subscription.tagsByEpc = {};
+  subscription._isSubscription = true;
+  exec(function(o) {
+    subscription._dispatch(delegate, o);
+  }, null, "ugrokit", "subscribeInventory", [this.internalId, subscriptionId, options || null]);
+  return subscriptionId;
+};
+
+/**
+ * End a subscription
+ * @param {String} subscriptionId  Id returned by subscribe
+ * @param {Function} [callback]  Called with the subscription's statistics: sent, dropped,
+ *                               waiting (events) and messages
+ */
+UgiInventory.prototype.unsubscribe = function(subscriptionId, callback) {
+  argscheck.checkArgs("sF", "unsubscribe", arguments);
+  exec(callback || null, null, "ugrokit", "unsubscribeInventory", [this.internalId, subscriptionId]);
+};
+
 /**
  * Values returned by programTag, writeTag, lockUnlockTag and readTag
  * @readonly
@@ -304,6 +626,68 @@ UgiInventory.prototype.customCommandToTag = function(epc, command, commandBits,
   }, null, "ugrokit", "customCommandToTag", [this.internalId, epc, command, commandBits, responseBitLengthNoHeaderBit,
                                              responseBitLengthWithHeaderBit, receiveTimeoutUsec]);
 };
+
+/**
+ * Result of a tagAccessBatch operation that got no completion within options.timeoutMSec
+ */
+UgiInventory.TAG_ACCESS_TIMEOUT = -1;
+
+/**
+ * Result of a tagAccessBatch operation that was not attempted because the batch was cancelled
+ */
+UgiInventory.TAG_ACCESS_CANCELLED = -2;
+
+UgiInventory.nextTagAccessBatchId = 0;
+
+/**
+ Read, write, program or lock/unlock many tags
+ 
+ This must be called while inventory is running. This method call returns immediately,
+ the operations are run natively with several outstanding at once (but never two on the
+ same EPC), and operations that time out or fail with TAG_NOT_FOUND or GENERAL_ERROR are retried.
+ 
+ Each operation is an object:
+   {type: "read"|"write"|"program"|"lock", epc, password, memoryBank, offset,
+    minNumBytes, maxNumBytes (read), data, previousData (write), newEpc (program), maskAndAction (lock)}
+ type defaults to "write" if there is data and "read" otherwise.
+ 
+ Options:
+   maxOutstanding:     Operations outstanding at once (default 4)
+   retries:            Retries for an operation that timed out or was not found (default 2)
+   timeoutMSec:        Time to wait for a completion (default 5000, 0 for no timeout)
+   resultBatchSize:    Results per resultsCallback (default 50)
+   resultIntervalMSec: Longest a result waits before being sent (default 250)
+ 
+ @param operations      Array of operations
+ @param options         Options, or null for the defaults
+ @param resultsCallback Called with an array of results: {index, epc, result, attempts, data}, where
+                        result is a UgiInventory.TagAccessReturnValues value, TAG_ACCESS_TIMEOUT or TAG_ACCESS_CANCELLED
+ @param doneCallback    Called once all operations are finished with
+                        {total, ok, failed, retries, timeouts, cancelled, seconds, perSecond, latency}
+ @return Batch id, for cancelTagAccessBatch
+ */
+UgiInventory.prototype.tagAccessBatch = function(operations, options, resultsCallback, doneCallback) {
+  argscheck.checkArgs("aOFF", "tagAccessBatch", arguments);
+  var batchId = "" + UgiInventory.nextTagAccessBatchId++;
+  exec(function(o) {
+    if (o._cb == "results") {
+      if (resultsCallback) resultsCallback(o.results);
+    } else if (o._cb == "done") {
+      if (doneCallback) doneCallback(o);
+    }
+  }, null, "ugrokit", "tagAccessBatch", [this.internalId, batchId, operations, options || null]);
+  return batchId;
+};
+
+/**
+ Cancel a tagAccessBatch: outstanding operations finish, the rest are reported as TAG_ACCESS_CANCELLED
+ 
+ @param batchId   Batch id returned by tagAccessBatch
+ */
+UgiInventory.prototype.cancelTagAccessBatch = function(batchId) {
+  argscheck.checkArgs("s", "cancelTagAccessBatch", arguments);
+  exec(null, null, "ugrokit", "cancelTagAccessBatch", [this.internalId, batchId]);
+};
                
 /**
  Change power
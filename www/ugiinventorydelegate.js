@@ -65,6 +65,7 @@ UgiInventoryDelegate.prototype.ugiInventoryTagChanged = function(tag, firstFind)
  * A new tag has been found
  * @param tag The tag that was found
  * @param detailedPerReadData   Array of UgiDetailedPerReadData obejcts, if detailed per-read data was requested
+ *                              (a UgiDetailedPerReadData.Columns with the compactPerRead option)
  */
 UgiInventoryDelegate.prototype.ugiInventoryTagFound = function(tag, detailedPerReadData) {};
 
@@ -73,6 +74,7 @@ UgiInventoryDelegate.prototype.ugiInventoryTagFound = function(tag, detailedPerR
  * @param tag     The tag
  * @param count   The number of finds since ugiInventoryTagSubsequentFinds was last called
  * @param detailedPerReadData   Array of UgiDetailedPerReadData obejcts, if detailed per-read data was requested
+ *                              (a UgiDetailedPerReadData.Columns with the compactPerRead option)
  */
 UgiInventoryDelegate.prototype.ugiInventoryTagSubsequentFinds = function(tag, count, detailedPerReadData) {};
 
@@ -80,8 +82,50 @@ UgiInventoryDelegate.prototype.ugiInventoryTagSubsequentFinds = function(tag, co
  * A history interval has passed.
  * This method is called at the end of each history interval IF one or more
  * tags are currently visible
+ * @param interval   With the startInventory option history (Android only), the last complete
+ *                   interval: {time, reads, newTags, visibleTags}
  */
-UgiInventoryDelegate.prototype.ugiInventoryHistoryInterval = function() {};
+UgiInventoryDelegate.prototype.ugiInventoryHistoryInterval = function(interval) {};
+
+/**
+ * Tag statistics (startInventory options stats and statsIntervalMSec, Android only).
+ * Called every statsIntervalMSec, and when inventory finishes, with the tags read since the last call.
+ * @param stats   {totalReads, numTags, tags}, each tag is {epc, reads, rssiMean, rssiStdDev,
+ *                rssiMax, readsPerSecond, firstSeen, lastSeen, frequencies} (see UgiInventory.getInventoryStats)
+ */
+UgiInventoryDelegate.prototype.ugiInventoryStats = function(stats) {};
+
+/**
+ * Proximity of the tags being located (startInventory option locate, Android only).
+ * Called locateRateHz times a second while any target is in range, and once more when
+ * they have all faded out.
+ * @param targets   Array of {epc, score (0...1), rssi (smoothed, dB), readsPerSecond, lastSeen}
+ *                  (rssi and lastSeen are missing for a target that has not been read)
+ * @param time      Time of the update (ms since epoch)
+ */
+UgiInventoryDelegate.prototype.ugiInventoryLocate = function(targets, time) {};
+
+/**
+ * Tags restored from a snapshot (startInventory options snapshot and resumeFromSnapshot,
+ * Android only), called before inventory starts. The tags are already in tagsByEpc.
+ * @param tags   Array of UgiTag
+ */
+UgiInventoryDelegate.prototype.ugiInventoryResumed = function(tags) {};
+
+/**
+ * Progress of the reconciliation against the expected EPCs (startInventory option expected
+ * or expectedEpcSet, Android only). Called every reconcileIntervalMSec if anything changed.
+ * @param update   {expected, found, missing, unexpected} (counts), {foundDelta, unexpectedDelta}
+ *                 (changes since the last call) and newlyUnexpected (EPCs)
+ */
+UgiInventoryDelegate.prototype.ugiInventoryReconcile = function(update) {};
+
+/**
+ * Final reconciliation against the expected EPCs, called when inventory finishes
+ * (before ugiInventoryDidStop; Android only)
+ * @param report   {expected, found, missing, unexpected} (counts), missingEpcs and unexpectedEpcs
+ */
+UgiInventoryDelegate.prototype.ugiInventoryReconcileReport = function(report) {};
 
 //------------------------------------
 